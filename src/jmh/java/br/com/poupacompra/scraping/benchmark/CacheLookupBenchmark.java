@@ -0,0 +1,100 @@
+package br.com.poupacompra.scraping.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import br.com.poupacompra.scraping.config.CacheConfig;
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.service.DiskNotaStore;
+import br.com.poupacompra.scraping.service.NfceUrlParser;
+import br.com.poupacompra.scraping.service.NotaJsonCodec;
+import br.com.poupacompra.scraping.service.TieredNfeCache;
+
+/**
+ * Caminho de uma requisição com a nota em cache: chave a partir da URL e
+ * leitura do nfeCache, com acerto no L1 (memória) ou só no L2 (disco).
+ * acertoL1Resposta é o caminho do /dados-nota, com o JSON escrito na saída
+ * sem passar pelo DTO.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheLookupBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int itens;
+
+    private final NfceUrlParser nfceUrlParser = new NfceUrlParser();
+
+    private Path diretorio;
+    private TieredNfeCache cache;
+    private String url;
+    private String chave;
+    private final OutputStream descarte = OutputStream.nullOutputStream();
+
+    @Setup
+    public void setup() throws IOException {
+        diretorio = Files.createTempDirectory("jmh-nfe-cache");
+        // Codec como o do CacheConfig: ObjectMapper das respostas e dictionaryRebuildEvery padrão
+        NotaJsonCodec codec = new NotaJsonCodec(Fixtures.objectMapper(),
+            new ScrapingProperties().getCache().getDictionaryRebuildEvery());
+        cache = new TieredNfeCache(
+            new CaffeineCache(CacheConfig.NFE_CACHE, Caffeine.newBuilder().maximumSize(1000).recordStats().build(), false),
+            new DiskNotaStore(diretorio, 64L * 1024 * 1024), null, codec);
+
+        url = Fixtures.urls().get(0);
+        chave = nfceUrlParser.parse(url).chaveAcesso();
+        cache.put(chave, Fixtures.nota(itens));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> arquivos = Files.walk(diretorio)) {
+            arquivos.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public DadosNotaResponseDTO acertoL1() {
+        return cache.get(nfceUrlParser.parse(url).chaveAcesso(), DadosNotaResponseDTO.class);
+    }
+
+    @Benchmark
+    public void acertoL1Resposta() throws IOException {
+        cache.getCodec().escrever(cache.getSerializada(nfceUrlParser.parse(url).chaveAcesso()), descarte);
+    }
+
+    /**
+     * Leitura do disco e promoção para o L1; o L1 é esvaziado antes de cada leitura.
+     */
+    @Benchmark
+    public DadosNotaResponseDTO acertoL2() {
+        cache.getL1().evict(chave);
+        return cache.get(nfceUrlParser.parse(url).chaveAcesso(), DadosNotaResponseDTO.class);
+    }
+}
@@ -0,0 +1,90 @@
+package br.com.poupacompra.scraping.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.service.NotaJsonCodec;
+import br.com.poupacompra.scraping.service.NotaJsonCodec.NotaSerializada;
+
+/**
+ * Acerto de cache até o corpo da resposta, nas duas representações do L1:
+ * o DTO serializado pelo Jackson a cada acerto (formato anterior) e o JSON
+ * comprimido com dicionário, só descomprimido na saída.
+ *
+ * Os bytes por entrada de cada formato saem no log do setup. Os itens do
+ * fixture se repetem, então a compressão aqui é mais favorável que com
+ * notas reais; o /cache/stats mostra os números de produção.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheValueFormatBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int itens;
+
+    private final ObjectMapper objectMapper = Fixtures.objectMapper();
+    /**
+     * Descarta os bytes e ignora o close, que o writeValue faz no fim (o de
+     * OutputStream.nullOutputStream() passaria a falhar).
+     */
+    private final OutputStream descarte = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private DadosNotaResponseDTO nota;
+    private NotaJsonCodec codec;
+    private NotaSerializada serializada;
+
+    @Setup
+    public void setup() throws IOException {
+        nota = Fixtures.nota(itens);
+
+        // Algumas gravações da mesma nota para o dicionário aprender o estabelecimento e os itens
+        codec = new NotaJsonCodec(objectMapper, 2);
+        for (int i = 0; i < 4; i++) {
+            codec.serializar(nota);
+        }
+        serializada = codec.serializar(nota);
+        NotaSerializada semDicionario = new NotaJsonCodec(objectMapper, Integer.MAX_VALUE).serializar(nota);
+
+        System.out.printf("%n[%d itens] bytes por entrada: objetos ~%d, json %d, deflate %d, deflate com dicionário %d%n",
+            itens, NotaJsonCodec.estimarBytesObjetos(nota), serializada.tamanho(),
+            semDicionario.comprimido().length, serializada.comprimido().length);
+    }
+
+    @Benchmark
+    public void dtoJackson() throws IOException {
+        objectMapper.writeValue(descarte, nota);
+    }
+
+    @Benchmark
+    public void serializadaDicionario() throws IOException {
+        codec.escrever(serializada, descarte);
+    }
+}
@@ -0,0 +1,70 @@
+package br.com.poupacompra.scraping.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compara dois resultados JSON do JMH (-rf json), por exemplo de dois commits:
+ *
+ * mvn -Pbenchmarks test-compile exec:exec@comparar -Djmh.base=base.json -Djmh.atual=target/jmh-result.json
+ *
+ * Para cada benchmark e combinação de parâmetros presente nos dois arquivos,
+ * mostra os scores e a variação percentual do atual em relação à base.
+ */
+public final class ComparaResultados {
+
+    private ComparaResultados() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Uso: ComparaResultados <base.json> <atual.json>");
+            System.exit(2);
+        }
+
+        Map<String, JsonNode> base = ler(new File(args[0]));
+        Map<String, JsonNode> atual = ler(new File(args[1]));
+
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "Base", "Atual", "Variação");
+        for (Map.Entry<String, JsonNode> entrada : atual.entrySet()) {
+            JsonNode anterior = base.get(entrada.getKey());
+            if (anterior == null) {
+                continue;
+            }
+            double scoreBase = anterior.get("score").asDouble();
+            double scoreAtual = entrada.getValue().get("score").asDouble();
+            String unidade = entrada.getValue().get("scoreUnit").asText();
+
+            System.out.printf("%-70s %14s %14s %+8.1f%%%n",
+                entrada.getKey(),
+                String.format("%.3f %s", scoreBase, unidade),
+                String.format("%.3f %s", scoreAtual, unidade),
+                (scoreAtual - scoreBase) * 100 / scoreBase);
+        }
+    }
+
+    /**
+     * Indexa o primaryMetric de cada execução por "benchmark [param=valor, ...]".
+     */
+    private static Map<String, JsonNode> ler(File arquivo) throws IOException {
+        Map<String, JsonNode> resultados = new LinkedHashMap<>();
+        for (JsonNode execucao : new ObjectMapper().readTree(arquivo)) {
+            String nome = execucao.get("benchmark").asText();
+            nome = nome.substring(nome.lastIndexOf('.', nome.lastIndexOf('.') - 1) + 1);
+
+            Map<String, String> params = new TreeMap<>();
+            JsonNode nodeParams = execucao.get("params");
+            if (nodeParams != null) {
+                nodeParams.fields().forEachRemaining(p -> params.put(p.getKey(), p.getValue().asText()));
+            }
+            resultados.put(params.isEmpty() ? nome : nome + " " + params, execucao.get("primaryMetric"));
+        }
+        return resultados;
+    }
+}
@@ -0,0 +1,140 @@
+package br.com.poupacompra.scraping.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.dto.EstabelecimentoDTO;
+import br.com.poupacompra.scraping.dto.ItemNotaDTO;
+import br.com.poupacompra.scraping.dto.NotaDTO;
+import br.com.poupacompra.scraping.service.NfeDataMapper;
+
+/**
+ * Extração via browser: dois page.evaluate com mapas genéricos e parse por regex
+ * (legado) contra um único payload compactado decodificado por {@link NfeDataMapper#fromPacked},
+ * sobre os campos de página do fixture campos-pagina.json.
+ *
+ * O trânsito pelo driver do Playwright é aproximado por um round-trip Gson do
+ * resultado de cada script, que é como o cliente Java desserializa o retorno.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractionBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int itens;
+
+    private final Gson gson = new Gson();
+    private final NfeDataMapper mapper = new NfeDataMapper();
+    private final String url = Fixtures.urls().get(0);
+
+    private String jsonPrincipal;
+    private String jsonProdutos;
+    private String jsonPacked;
+
+    @Setup
+    public void setup() {
+        Fixtures.CamposPagina campos = Fixtures.camposPagina(itens);
+
+        List<String> packed = new ArrayList<>();
+        packed.add(String.valueOf(itens));
+        for (String chave : List.of("qtdItens", "valorTotal", "chaveAcesso", "nomeEstab", "cpfCnpj", "endereco")) {
+            packed.add((String) campos.principal().get(chave));
+        }
+        for (String coluna : List.of("nome", "qtd", "un", "vlUnit", "vlTotal")) {
+            campos.produtos().forEach(produto -> packed.add(produto.get(coluna)));
+        }
+
+        jsonPrincipal = gson.toJson(campos.principal());
+        jsonProdutos = gson.toJson(campos.produtos());
+        jsonPacked = gson.toJson(String.join(String.valueOf(NfeDataMapper.SEPARADOR), packed));
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public DadosNotaResponseDTO legado() {
+        Map<String, Object> principal = gson.fromJson(jsonPrincipal, Map.class);
+        List<Map<String, String>> produtos = gson.fromJson(jsonProdutos, List.class);
+        return LegacyMapper.toResponse(principal, produtos, url);
+    }
+
+    @Benchmark
+    public DadosNotaResponseDTO compactado() {
+        String payload = gson.fromJson(jsonPacked, String.class);
+        return mapper.fromPacked(payload, url);
+    }
+
+    /**
+     * Mapeamento como era antes do payload compactado, com o parse numérico por regex.
+     */
+    static final class LegacyMapper {
+
+        static DadosNotaResponseDTO toResponse(Map<String, Object> dadosPrincipais, List<Map<String, String>> produtosData, String url) {
+            String cpfCnpj = NfeDataMapper.extractAfterColon((String) dadosPrincipais.get("cpfCnpj")).replaceAll("[.\\-/]", "");
+
+            EstabelecimentoDTO estabelecimento = EstabelecimentoDTO.builder()
+                .nomeEstabelecimento((String) dadosPrincipais.get("nomeEstab"))
+                .cpfCnpj(cpfCnpj)
+                .endereco(NfeDataMapper.clearAddress((String) dadosPrincipais.get("endereco")))
+                .build();
+
+            List<ItemNotaDTO> itensNota = new ArrayList<>();
+            for (Map<String, String> prod : produtosData) {
+                itensNota.add(ItemNotaDTO.builder()
+                    .descricao(prod.get("nome"))
+                    .quantidade(extractNumeric(NfeDataMapper.extractAfterColon(prod.get("qtd"))))
+                    .tipoUnidade(NfeDataMapper.extractAfterColon(prod.get("un")))
+                    .valorUnitario(extractNumeric(NfeDataMapper.extractAfterColon(prod.get("vlUnit"))))
+                    .valorTotal(extractNumeric(prod.get("vlTotal")))
+                    .build());
+            }
+
+            NotaDTO nota = NotaDTO.builder()
+                .quantidadeItens((int) extractNumeric((String) dadosPrincipais.get("qtdItens")))
+                .valorTotal(extractNumeric((String) dadosPrincipais.get("valorTotal")))
+                .usuario(3)
+                .ufCfe(NfeDataMapper.extractUf(url))
+                .urlCfe(url + " via scrapping docker")
+                .chaveAcesso(dadosPrincipais.get("chaveAcesso") + " via scrapping docker")
+                .build();
+
+            return DadosNotaResponseDTO.builder()
+                .estabelecimento(estabelecimento)
+                .itensNota(itensNota)
+                .nota(nota)
+                .build();
+        }
+
+        static double extractNumeric(String text) {
+            if (text == null || text.isBlank()) {
+                return 0;
+            }
+            String cleaned = text.replaceAll("[^\\d.,]", "").replace(",", ".");
+            try {
+                return Double.parseDouble(cleaned);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
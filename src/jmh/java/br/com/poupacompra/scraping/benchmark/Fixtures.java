@@ -0,0 +1,112 @@
+package br.com.poupacompra.scraping.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.dto.ItemNotaDTO;
+import br.com.poupacompra.scraping.dto.NotaDTO;
+
+/**
+ * Dados gravados em src/test/resources/fixtures (os mesmos dos testes), para os benchmarks rodarem offline.
+ *
+ * - nota-supermercado.json: nota mapeada de um supermercado, com 20 itens
+ * - campos-pagina.json: os mesmos dados como saem do page.evaluate, antes do mapeamento
+ * - urls.txt: URLs de NFC-e de várias UFs, com chaves de acesso válidas
+ */
+final class Fixtures {
+
+    /**
+     * Como o ObjectMapper que o Spring Boot cria para a aplicação.
+     */
+    private static final ObjectMapper MAPPER = Jackson2ObjectMapperBuilder.json()
+        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS)
+        .build();
+
+    private Fixtures() {
+    }
+
+    static ObjectMapper objectMapper() {
+        return MAPPER;
+    }
+
+    static List<String> urls() {
+        return ler("urls.txt").lines().filter(l -> !l.isBlank()).toList();
+    }
+
+    /**
+     * Nota do fixture com os itens repetidos até a quantidade pedida.
+     */
+    static DadosNotaResponseDTO nota(int itens) {
+        DadosNotaResponseDTO base = lerJson("nota-supermercado.json", new TypeReference<>() {});
+
+        List<ItemNotaDTO> itensNota = new ArrayList<>(itens);
+        for (int i = 0; i < itens; i++) {
+            itensNota.add(base.itensNota().get(i % base.itensNota().size()));
+        }
+
+        NotaDTO nota = NotaDTO.builder()
+            .quantidadeItens(itens)
+            .valorTotal(itensNota.stream().mapToDouble(ItemNotaDTO::valorTotal).sum())
+            .usuario(base.nota().usuario())
+            .ufCfe(base.nota().ufCfe())
+            .urlCfe(base.nota().urlCfe())
+            .chaveAcesso(base.nota().chaveAcesso())
+            .build();
+
+        return new DadosNotaResponseDTO(base.estabelecimento(), itensNota, nota);
+    }
+
+    /**
+     * Campos brutos da página: "principal" (mapa de campos) e "produtos" (um mapa por item),
+     * com os itens repetidos até a quantidade pedida.
+     */
+    static CamposPagina camposPagina(int itens) {
+        Map<String, Object> raiz = lerJson("campos-pagina.json", new TypeReference<>() {});
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> principal = new LinkedHashMap<>((Map<String, Object>) raiz.get("principal"));
+        principal.put("qtdItens", String.valueOf(itens));
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, String>> base = (List<Map<String, String>>) raiz.get("produtos");
+        List<Map<String, String>> produtos = new ArrayList<>(itens);
+        for (int i = 0; i < itens; i++) {
+            produtos.add(base.get(i % base.size()));
+        }
+        return new CamposPagina(principal, produtos);
+    }
+
+    record CamposPagina(Map<String, Object> principal, List<Map<String, String>> produtos) {}
+
+    private static <T> T lerJson(String nome, TypeReference<T> tipo) {
+        try {
+            return MAPPER.readValue(ler(nome), tipo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String ler(String nome) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + nome)) {
+            if (in == null) {
+                throw new IllegalStateException("Fixture não encontrado: " + nome);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package br.com.poupacompra.scraping.benchmark;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Gerador de carga para o POST /dados-nota, para dimensionar o pool e os
+ * timeouts contra o replay local (scraping.replay.enabled=true):
+ *
+ * mvn -Pbenchmarks test-compile exec:exec@carga -Dcarga.rps=20 -Dcarga.duracao=60
+ *
+ * A carga é em malha aberta: as requisições saem na taxa pedida mesmo que as
+ * anteriores ainda não tenham respondido, então a fila do pool aparece na
+ * latência. Com "sinteticas", cada requisição usa uma chave nova (sem acerto
+ * de cache); com "fixtures", as URLs de urls.txt são repetidas.
+ *
+ * O /stats é amostrado durante a execução para medir a saturação do pool
+ * e contar eventos de pinning de virtual threads (ver PinningMonitor). Se
+ * algum aparecer durante a carga, as origens são listadas e o processo
+ * termina com código 1: o caminho do scraping não deve prender carriers.
+ */
+public final class LoadDriver {
+
+    private static final String[] UFS = {"41", "35", "43", "31", "42", "33"};
+    private static final String[] PORTAIS = {
+        "https://www.fazenda.pr.gov.br/nfce/qrcode?p=",
+        "https://www.nfce.fazenda.sp.gov.br/NFCeConsultaPublica/Paginas/ConsultaQRCode.aspx?p=",
+        "https://www.sefaz.rs.gov.br/NFCE/NFCE-COM.aspx?p=",
+        "https://portalsped.fazenda.mg.gov.br/portalnfce/sistema/qrcode.xhtml?p=",
+        "https://sat.sef.sc.gov.br/nfce/consulta?p=",
+        "https://consultadfe.fazenda.rj.gov.br/consultaNFCe/QRCode?p="
+    };
+    private static final long AMOSTRAGEM_MS = 500;
+
+    private final String base;
+    private final HttpClient client = HttpClient.newBuilder()
+        .executor(Executors.newVirtualThreadPerTaskExecutor())
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+
+    private final ConcurrentLinkedQueue<Long> latencias = new ConcurrentLinkedQueue<>();
+    private final Map<String, LongAdder> porStatus = new ConcurrentHashMap<>();
+
+    private final AtomicLong amostras = new AtomicLong();
+    private final AtomicLong amostrasSemLivre = new AtomicLong();
+    private final AtomicLong maxAguardando = new AtomicLong();
+    private final AtomicLong maxTamanho = new AtomicLong();
+    private double somaUtilizacao;
+    private long pinningInicial = -1;
+    private volatile JsonNode ultimoPinning;
+    private volatile long rejeitadasAdmissao;
+
+    private LoadDriver(String base) {
+        this.base = base;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Uso: LoadDriver <url-base> <rps> <duracao-segundos> [fixtures|sinteticas]");
+            System.exit(2);
+        }
+
+        String base = args[0].endsWith("/") ? args[0].substring(0, args[0].length() - 1) : args[0];
+        double rps = Double.parseDouble(args[1]);
+        int duracao = Integer.parseInt(args[2]);
+        boolean sinteticas = args.length < 4 || "sinteticas".equals(args[3]);
+
+        new LoadDriver(base).executar(rps, duracao, sinteticas);
+    }
+
+    private void executar(double rps, int duracaoSegundos, boolean sinteticas) throws InterruptedException {
+        List<String> fixtures = sinteticas ? List.of() : Fixtures.urls();
+        long intervalo = (long) (TimeUnit.SECONDS.toNanos(1) / rps);
+        long total = (long) (rps * duracaoSegundos);
+
+        System.out.printf("Carga: %.1f req/s por %ds contra %s (%s)%n",
+            rps, duracaoSegundos, base, sinteticas ? "chaves sintéticas" : "urls.txt");
+
+        AtomicBoolean rodando = new AtomicBoolean(true);
+        Thread amostrador = Thread.ofVirtual().start(() -> amostrar(rodando));
+
+        long inicio = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                // Horário absoluto de cada disparo, para atrasos não acumularem
+                long disparo = inicio + i * intervalo;
+                long espera = disparo - System.nanoTime();
+                if (espera > 0) {
+                    LockSupport.parkNanos(espera);
+                }
+
+                String url = sinteticas ? urlSintetica() : fixtures.get((int) (i % fixtures.size()));
+                executor.submit(() -> enviar(url));
+            }
+        }
+        double decorrido = (System.nanoTime() - inicio) / 1e9;
+
+        rodando.set(false);
+        amostrador.join();
+
+        relatorio(total, decorrido);
+        if (pinningDuranteCarga() > 0) {
+            System.exit(1);
+        }
+    }
+
+    private void enviar(String url) {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create(base + "/dados-nota?url=" + URLEncoder.encode(url, StandardCharsets.UTF_8)))
+            .timeout(Duration.ofMinutes(2))
+            .POST(HttpRequest.BodyPublishers.noBody())
+            .build();
+
+        long inicio = System.nanoTime();
+        String status;
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            status = String.valueOf(response.statusCode());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = "interrompida";
+        } catch (Exception e) {
+            status = e.getClass().getSimpleName();
+        }
+        latencias.add(System.nanoTime() - inicio);
+        porStatus.computeIfAbsent(status, k -> new LongAdder()).increment();
+    }
+
+    private void amostrar(AtomicBoolean rodando) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/stats"))
+            .timeout(Duration.ofSeconds(5))
+            .build();
+
+        while (rodando.get()) {
+            try {
+                String corpo = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+                JsonNode pool = Fixtures.objectMapper().readTree(corpo).path("browserPool");
+                long tamanho = pool.path("size").asLong();
+                long livres = pool.path("available").asLong();
+
+                amostras.incrementAndGet();
+                if (livres == 0) {
+                    amostrasSemLivre.incrementAndGet();
+                }
+                maxAguardando.accumulateAndGet(pool.path("waiting").asLong(), Math::max);
+                maxTamanho.accumulateAndGet(tamanho, Math::max);
+                if (tamanho > 0) {
+                    somaUtilizacao += (double) (tamanho - livres) / tamanho;
+                }
+                JsonNode pinning = pool.path("pinning");
+                if (pinningInicial < 0 && pinning.has("eventos")) {
+                    pinningInicial = pinning.path("eventos").asLong();
+                }
+                ultimoPinning = pinning;
+                rejeitadasAdmissao = pool.path("admissao").path("rejeitadas").asLong();
+
+                Thread.sleep(AMOSTRAGEM_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Servidor sobrecarregado também é resultado; segue amostrando
+            }
+        }
+    }
+
+    private void relatorio(long total, double decorrido) {
+        List<Long> ordenadas = new ArrayList<>(latencias);
+        ordenadas.sort(null);
+
+        System.out.printf("%nRequisições: %d em %.1fs (%.1f req/s concluídas)%n",
+            ordenadas.size(), decorrido, ordenadas.size() / decorrido);
+        if (!ordenadas.isEmpty()) {
+            System.out.printf("Latência: p50 %dms | p99 %dms | máx %dms%n",
+                percentil(ordenadas, 0.50), percentil(ordenadas, 0.99), ordenadas.getLast() / 1_000_000);
+        }
+
+        System.out.println("Respostas:");
+        new TreeMap<>(porStatus).forEach((status, qtd) ->
+            System.out.printf("  %-24s %d (%.1f%%)%n", status, qtd.sum(), qtd.sum() * 100.0 / total));
+
+        long n = amostras.get();
+        if (n > 0) {
+            System.out.printf("Pool: até %d browsers | utilização média %.0f%% | sem slot livre em %.0f%% das amostras | até %d aguardando%n",
+                maxTamanho.get(), somaUtilizacao * 100 / n, amostrasSemLivre.get() * 100.0 / n, maxAguardando.get());
+            System.out.printf("Admissão: %d rejeitadas desde o início do servidor%n", rejeitadasAdmissao);
+        }
+
+        JsonNode pinning = ultimoPinning;
+        if (pinning == null || !pinning.path("ativo").asBoolean()) {
+            System.out.println("Pinning: monitor desativado no servidor (scraping.pinning.enabled)");
+        } else if (pinningDuranteCarga() == 0) {
+            System.out.println("Pinning: nenhum evento durante a carga");
+        } else {
+            System.out.printf("Pinning: %d eventos durante a carga. Origens (acumulado):%n", pinningDuranteCarga());
+            pinning.path("porOrigem").properties().forEach(origem ->
+                System.out.printf("  %-60s %d%n", origem.getKey(), origem.getValue().asLong()));
+        }
+    }
+
+    private long pinningDuranteCarga() {
+        JsonNode pinning = ultimoPinning;
+        if (pinning == null || pinningInicial < 0) {
+            return 0;
+        }
+        return pinning.path("eventos").asLong() - pinningInicial;
+    }
+
+    private static long percentil(List<Long> ordenadas, double p) {
+        int indice = (int) Math.ceil(p * ordenadas.size()) - 1;
+        return ordenadas.get(Math.max(0, indice)) / 1_000_000;
+    }
+
+    /**
+     * URL de uma UF qualquer com chave de acesso nova e dígito verificador válido.
+     */
+    private static String urlSintetica() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int uf = random.nextInt(UFS.length);
+
+        StringBuilder chave = new StringBuilder(44).append(UFS[uf]).append("2501");
+        while (chave.length() < 20) {
+            chave.append(random.nextInt(10));
+        }
+        chave.append("65");
+        while (chave.length() < 43) {
+            chave.append(random.nextInt(10));
+        }
+        chave.append(digitoVerificador(chave));
+
+        return PORTAIS[uf] + chave + "|2|1|1|" + Long.toHexString(random.nextLong()).toUpperCase();
+    }
+
+    private static int digitoVerificador(CharSequence chave) {
+        int soma = 0;
+        int peso = 2;
+        for (int i = 42; i >= 0; i--) {
+            soma += (chave.charAt(i) - '0') * peso;
+            peso = peso == 9 ? 2 : peso + 1;
+        }
+        int resto = soma % 11;
+        return resto < 2 ? 0 : 11 - resto;
+    }
+}
@@ -0,0 +1,122 @@
+package br.com.poupacompra.scraping.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import br.com.poupacompra.scraping.service.NfceUrlParser;
+import br.com.poupacompra.scraping.service.NfeDataMapper;
+
+/**
+ * Funções de parse do caminho quente, sobre os campos e URLs dos fixtures.
+ * Cada operação percorre o conjunto inteiro de entradas do fixture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+
+    private final NfceUrlParser nfceUrlParser = new NfceUrlParser();
+
+    private List<String> urls;
+    private List<String> numericos;
+    private List<String> comDoisPontos;
+    private List<String> enderecos;
+
+    @Setup
+    public void setup() {
+        urls = Fixtures.urls();
+
+        Fixtures.CamposPagina campos = Fixtures.camposPagina(20);
+        numericos = new ArrayList<>();
+        comDoisPontos = new ArrayList<>();
+        for (Map<String, String> produto : campos.produtos()) {
+            numericos.add(produto.get("vlTotal"));
+            numericos.add(NfeDataMapper.extractAfterColon(produto.get("vlUnit")));
+            comDoisPontos.add(produto.get("qtd"));
+            comDoisPontos.add(produto.get("un"));
+            comDoisPontos.add(produto.get("vlUnit"));
+        }
+        enderecos = List.of((String) campos.principal().get("endereco"));
+    }
+
+    /**
+     * Chave de cache atual: chave de acesso validada extraída da URL.
+     */
+    @Benchmark
+    public void cacheKey(Blackhole bh) {
+        for (String url : urls) {
+            bh.consume(nfceUrlParser.parse(url).chaveAcesso());
+        }
+    }
+
+    /**
+     * Chave de cache original: MD5 da URL com String.format por byte.
+     */
+    @Benchmark
+    public void cacheKeyMd5Legado(Blackhole bh) throws NoSuchAlgorithmException {
+        for (String url : urls) {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            bh.consume(sb.toString());
+        }
+    }
+
+    @Benchmark
+    public void extractUf(Blackhole bh) {
+        for (String url : urls) {
+            bh.consume(NfeDataMapper.extractUf(url));
+        }
+    }
+
+    @Benchmark
+    public void extractNumeric(Blackhole bh) {
+        for (String valor : numericos) {
+            bh.consume(NfeDataMapper.extractNumeric(valor));
+        }
+    }
+
+    @Benchmark
+    public void extractNumericRegexLegado(Blackhole bh) {
+        for (String valor : numericos) {
+            bh.consume(ExtractionBenchmark.LegacyMapper.extractNumeric(valor));
+        }
+    }
+
+    @Benchmark
+    public void extractAfterColon(Blackhole bh) {
+        for (String valor : comDoisPontos) {
+            bh.consume(NfeDataMapper.extractAfterColon(valor));
+        }
+    }
+
+    @Benchmark
+    public void clearAddress(Blackhole bh) {
+        for (String endereco : enderecos) {
+            bh.consume(NfeDataMapper.clearAddress(endereco));
+        }
+    }
+}
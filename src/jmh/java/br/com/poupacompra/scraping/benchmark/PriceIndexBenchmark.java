@@ -0,0 +1,120 @@
+package br.com.poupacompra.scraping.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.dto.EstabelecimentoDTO;
+import br.com.poupacompra.scraping.dto.ItemNotaDTO;
+import br.com.poupacompra.scraping.dto.NotaDTO;
+import br.com.poupacompra.scraping.dto.OfertaPrecoDTO;
+import br.com.poupacompra.scraping.service.PriceIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Consultas ao {@link PriceIndex} com milhões de ofertas, de notas sintéticas
+ * (semente fixa): 5.000 estabelecimentos em 5 UFs, 80.000 produtos de
+ * categoria, marca, variante e tamanho, 50 itens por nota.
+ *
+ * Um termo de categoria casa com 1/40 dos produtos; categoria e tamanho, com 1/400.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PriceIndexBenchmark {
+
+    private static final String[] CATEGORIAS = {
+        "ARROZ", "FEIJAO", "LEITE", "CAFE", "ACUCAR", "OLEO", "MACARRAO", "FARINHA", "SAL", "MANTEIGA",
+        "IOGURTE", "QUEIJO", "PRESUNTO", "PAO", "BISCOITO", "SUCO", "REFRIGERANTE", "AGUA", "CERVEJA", "DETERGENTE",
+        "SABAO", "AMACIANTE", "SHAMPOO", "SABONETE", "CREME DENTAL", "PAPEL HIGIENICO", "ATUM", "SARDINHA", "MILHO", "ERVILHA",
+        "MOLHO TOMATE", "MAIONESE", "KETCHUP", "VINAGRE", "ACHOCOLATADO", "GELATINA", "AVEIA", "GRANOLA", "CHA", "LEITE CONDENSADO"
+    };
+    private static final String[] MARCAS = {
+        "BOA SAFRA", "TIO JOAO", "CAMIL", "PRATICO", "PILAO", "MELITTA", "UNIAO", "LIZA", "SOYA", "RENATA",
+        "ITALAC", "PIRACANJUBA", "NESTLE", "DANONE", "SADIA", "PERDIGAO", "SEARA", "YPE", "OMO", "COLGATE"
+    };
+    private static final String[] VARIANTES = {
+        "TRADICIONAL", "INTEGRAL", "LIGHT", "ZERO", "EXTRA", "PREMIUM", "ORIGINAL", "SACHE", "PET", "LATA"
+    };
+    private static final String[] TAMANHOS = {"1KG", "5KG", "500G", "200G", "1L", "2L", "350ML", "900ML", "LEVE3", "PAC6"};
+    private static final String[] UFS = {"SP", "RJ", "MG", "PR", "RS"};
+
+    private static final int ESTABELECIMENTOS = 5_000;
+    private static final int ITENS_POR_NOTA = 50;
+
+    @Param({"1000000", "4000000"})
+    private int ofertas;
+
+    private PriceIndex indice;
+    private String cnpj;
+
+    @Setup
+    public void setup() {
+        indice = new PriceIndex(new ScrapingProperties(), new SimpleMeterRegistry());
+        Random random = new Random(42);
+        for (int nota = 0; nota < ofertas / ITENS_POR_NOTA; nota++) {
+            indice.registrar(nota(random, random.nextInt(ESTABELECIMENTOS)));
+        }
+        cnpj = cnpj(0);
+        System.out.printf("%n%s%n", indice.getStats());
+    }
+
+    private static DadosNotaResponseDTO nota(Random random, int estabelecimento) {
+        List<ItemNotaDTO> itens = new ArrayList<>(ITENS_POR_NOTA);
+        for (int i = 0; i < ITENS_POR_NOTA; i++) {
+            String descricao = CATEGORIAS[random.nextInt(CATEGORIAS.length)] + " "
+                + MARCAS[random.nextInt(MARCAS.length)] + " "
+                + VARIANTES[random.nextInt(VARIANTES.length)] + " "
+                + TAMANHOS[random.nextInt(TAMANHOS.length)];
+            double preco = Math.round((1 + random.nextDouble() * 49) * 100) / 100.0;
+            itens.add(new ItemNotaDTO(descricao, 1, "UN", preco, preco));
+        }
+        String uf = UFS[estabelecimento % UFS.length];
+        return new DadosNotaResponseDTO(
+            new EstabelecimentoDTO("MERCADO " + estabelecimento, cnpj(estabelecimento), "RUA " + estabelecimento + ", " + uf),
+            itens,
+            new NotaDTO(ITENS_POR_NOTA, 0, 0, uf, "", ""));
+    }
+
+    private static String cnpj(int estabelecimento) {
+        return String.format("%014d", 10_000_000_000L + estabelecimento);
+    }
+
+    @Benchmark
+    public List<OfertaPrecoDTO> buscaUmTermo() {
+        return indice.maisBaratas("leite", null, 20);
+    }
+
+    @Benchmark
+    public List<OfertaPrecoDTO> buscaDoisTermos() {
+        return indice.maisBaratas("arroz 5kg", null, 20);
+    }
+
+    @Benchmark
+    public List<OfertaPrecoDTO> buscaComUf() {
+        return indice.maisBaratas("café pilão", "sp", 20);
+    }
+
+    @Benchmark
+    public List<OfertaPrecoDTO> estabelecimento() {
+        return indice.doEstabelecimento(cnpj, "leite", 20);
+    }
+}
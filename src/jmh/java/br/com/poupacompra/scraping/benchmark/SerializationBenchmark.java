@@ -0,0 +1,71 @@
+package br.com.poupacompra.scraping.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.service.NotaBinaryCodec;
+import br.com.poupacompra.scraping.service.NotaBinaryCodec.NotaDatada;
+
+/**
+ * Serialização do {@link DadosNotaResponseDTO}: JSON (resposta HTTP e outbox) e
+ * o formato binário do cache em disco, em notas de 10, 100 e 500 itens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int itens;
+
+    private final ObjectMapper objectMapper = Fixtures.objectMapper();
+
+    private DadosNotaResponseDTO nota;
+    private byte[] json;
+    private byte[] binario;
+
+    @Setup
+    public void setup() throws IOException {
+        nota = Fixtures.nota(itens);
+        json = objectMapper.writeValueAsBytes(nota);
+        binario = NotaBinaryCodec.encode(nota, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public byte[] jsonEscrita() throws IOException {
+        return objectMapper.writeValueAsBytes(nota);
+    }
+
+    @Benchmark
+    public DadosNotaResponseDTO jsonLeitura() throws IOException {
+        return objectMapper.readValue(json, DadosNotaResponseDTO.class);
+    }
+
+    @Benchmark
+    public byte[] binarioEscrita() throws IOException {
+        return NotaBinaryCodec.encode(nota, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public NotaDatada binarioLeitura() throws IOException {
+        return NotaBinaryCodec.decode(binario);
+    }
+}
@@ -0,0 +1,236 @@
+package br.com.poupacompra.scraping.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Mede a partida da aplicação: do início do processo até a prontidão
+ * (/actuator/health/readiness) e até o primeiro POST /dados-nota com 200.
+ *
+ * mvn -Pbenchmarks test-compile exec:exec@partida -Dpartida.execucoes=5
+ *
+ * Cada execução sobe o jar em um diretório temporário vazio (sem cache em
+ * disco, índice de preços ou scripts de execuções anteriores), com portas
+ * livres e o replay no lugar da SEFAZ, latência fixa e sem falhas injetadas.
+ * O caminho HTTP fica desligado, para o primeiro scraping passar pelo pool
+ * de browsers. As capturas de data/capture são usadas se existirem; sem
+ * elas, o replay serve a página de exemplo.
+ *
+ * Para comparar com AOT e AppCDS (perfil startup do pom), os argumentos da
+ * JVM vão em -Dpartida.jvm e o jar extraído em -Dpartida.jar.
+ */
+public final class StartupBenchmark {
+
+    private static final Duration PRAZO = Duration.ofMinutes(2);
+    private static final long INTERVALO_MS = 20;
+
+    private final Path jar;
+    private final List<String> argumentosJvm;
+    private final String url = Fixtures.urls().get(0);
+    private final HttpClient client = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(1))
+        .build();
+
+    private StartupBenchmark(Path jar, List<String> argumentosJvm) {
+        this.jar = jar;
+        this.argumentosJvm = argumentosJvm;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Uso: StartupBenchmark <jar> <execucoes> [argumentos da JVM...]");
+            System.exit(2);
+        }
+
+        Path jar = Path.of(args[0]).toAbsolutePath();
+        if (!Files.isRegularFile(jar)) {
+            System.err.println("Jar não encontrado: " + jar + " (rodar mvn package antes)");
+            System.exit(2);
+        }
+        int execucoes = Integer.parseInt(args[1]);
+        List<String> argumentosJvm = Arrays.asList(args).subList(2, args.length);
+
+        new StartupBenchmark(jar, argumentosJvm).executar(execucoes);
+    }
+
+    private void executar(int execucoes) throws InterruptedException {
+        System.out.printf("Partida: %d execuções de %s %s%n", execucoes, jar.getFileName(), argumentosJvm);
+
+        List<Long> prontos = new ArrayList<>();
+        List<Long> primeiros = new ArrayList<>();
+        int falhas = 0;
+        for (int i = 1; i <= execucoes; i++) {
+            long[] tempos = medir();
+            if (tempos == null) {
+                falhas++;
+                System.out.printf("  #%d: falhou%n", i);
+                continue;
+            }
+            prontos.add(tempos[0]);
+            primeiros.add(tempos[1]);
+            System.out.printf("  #%d: pronto em %dms, primeiro scraping em %dms%n", i, tempos[0], tempos[1]);
+        }
+
+        System.out.println();
+        resumo("Pronto", prontos);
+        resumo("Primeiro scraping", primeiros);
+        if (falhas > 0) {
+            System.out.printf("%d execuções falharam%n", falhas);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Sobe uma instância e retorna {pronto, primeiro scraping} em ms desde o
+     * início do processo, ou null se algum dos dois não aconteceu no prazo.
+     */
+    private long[] medir() throws InterruptedException {
+        Path diretorio;
+        try {
+            diretorio = Files.createTempDirectory("partida");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Path logApp = diretorio.resolve("app.log");
+        int porta = portaLivre();
+
+        long inicio = System.nanoTime();
+        long prazo = inicio + PRAZO.toNanos();
+        Process processo;
+        try {
+            processo = new ProcessBuilder(comando(porta, portaLivre()))
+                .directory(diretorio.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(logApp.toFile())
+                .start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            String base = "http://localhost:" + porta;
+            HttpRequest prontidao = HttpRequest.newBuilder(URI.create(base + "/actuator/health/readiness"))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+            long pronto = aguardar200(prontidao, processo, inicio, prazo);
+            if (pronto < 0) {
+                System.out.println("  Não ficou pronto; log em " + logApp);
+                return null;
+            }
+
+            HttpRequest scraping = HttpRequest.newBuilder(
+                    URI.create(base + "/dados-nota?url=" + URLEncoder.encode(url, StandardCharsets.UTF_8)))
+                .timeout(Duration.ofMinutes(1))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+            long primeiro = aguardar200(scraping, processo, inicio, prazo);
+            if (primeiro < 0) {
+                System.out.println("  Nenhum scraping bem-sucedido; log em " + logApp);
+                return null;
+            }
+
+            encerrar(processo);
+            apagar(diretorio);
+            return new long[] {pronto, primeiro};
+        } finally {
+            encerrar(processo);
+        }
+    }
+
+    private List<String> comando(int porta, int portaReplay) {
+        List<String> comando = new ArrayList<>();
+        comando.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        comando.add("--enable-preview");
+        comando.addAll(argumentosJvm);
+        comando.add("-jar");
+        comando.add(jar.toString());
+        comando.add("--server.port=" + porta);
+        comando.add("--scraping.replay.enabled=true");
+        comando.add("--scraping.replay.port=" + portaReplay);
+        comando.add("--scraping.replay.latency-ms=300");
+        comando.add("--scraping.replay.jitter-ms=0");
+        comando.add("--scraping.replay.error-rate=0");
+        comando.add("--scraping.replay.captcha-rate=0");
+        comando.add("--scraping.replay.timeout-rate=0");
+        comando.add("--scraping.replay.directory=" + Path.of("data/capture").toAbsolutePath());
+        comando.add("--scraping.fast-path.enabled=false");
+        return comando;
+    }
+
+    /**
+     * Repete a requisição até um 200, devolvendo os ms desde o início; -1 se o
+     * prazo acabar ou o processo morrer antes.
+     */
+    private long aguardar200(HttpRequest request, Process processo, long inicio, long prazo)
+            throws InterruptedException {
+        while (System.nanoTime() < prazo) {
+            if (!processo.isAlive()) {
+                return -1;
+            }
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+                }
+            } catch (IOException e) {
+                // Ainda não está ouvindo
+            }
+            Thread.sleep(INTERVALO_MS);
+        }
+        return -1;
+    }
+
+    private static void resumo(String nome, List<Long> tempos) {
+        if (tempos.isEmpty()) {
+            return;
+        }
+        List<Long> ordenados = tempos.stream().sorted().toList();
+        System.out.printf("%-18s min %6dms  mediana %6dms  max %6dms%n", nome,
+            ordenados.get(0), ordenados.get(ordenados.size() / 2), ordenados.get(ordenados.size() - 1));
+    }
+
+    private static int portaLivre() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void encerrar(Process processo) throws InterruptedException {
+        if (!processo.isAlive()) {
+            return;
+        }
+        processo.destroy();
+        if (!processo.waitFor(30, TimeUnit.SECONDS)) {
+            processo.destroyForcibly().waitFor();
+        }
+    }
+
+    private static void apagar(Path diretorio) {
+        try (Stream<Path> arquivos = Files.walk(diretorio)) {
+            for (Path arquivo : arquivos.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(arquivo);
+            }
+        } catch (IOException e) {
+            System.out.println("  Não foi possível apagar " + diretorio + ": " + e.getMessage());
+        }
+    }
+}
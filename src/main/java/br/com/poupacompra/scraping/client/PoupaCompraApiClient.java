@@ -1,5 +1,7 @@
 package br.com.poupacompra.scraping.client;
 
+import java.util.List;
+
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -11,4 +13,7 @@ public interface PoupaCompraApiClient {
 
     @PostMapping("/salvar-nota")
     void salvarNota(@RequestBody DadosNotaResponseDTO dadosNota);
+
+    @PostMapping("/salvar-notas")
+    void salvarNotas(@RequestBody List<DadosNotaResponseDTO> notas);
 }
@@ -1,17 +1,35 @@
 package br.com.poupacompra.scraping.config;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
+import br.com.poupacompra.scraping.service.CacheEvictionCounter;
+import br.com.poupacompra.scraping.service.DiskNotaStore;
+import br.com.poupacompra.scraping.service.NfeCachePolicy;
+import br.com.poupacompra.scraping.service.NotaJsonCodec;
+import br.com.poupacompra.scraping.service.NotaJsonCodec.NotaSerializada;
+import br.com.poupacompra.scraping.service.SharedNotaStore;
+import br.com.poupacompra.scraping.service.TieredNfeCache;
+import io.lettuce.core.RedisException;
+
 @Configuration
 public class CacheConfig {
     
+    private static final Logger log = LoggerFactory.getLogger(CacheConfig.class);
+    
     public static final String NFE_CACHE = "nfeCache";
     
     private final ScrapingProperties scrapingProperties;
@@ -21,17 +39,85 @@ public class CacheConfig {
     }
     
     @Bean
-    public Caffeine<Object, Object> caffeineConfig() {
-        return Caffeine.newBuilder()
-            .expireAfterWrite(scrapingProperties.getCache().getTtlHours(), TimeUnit.HOURS)
-            .maximumSize(scrapingProperties.getCache().getMaxSize())
+    public CacheEvictionCounter cacheEvictionCounter() {
+        return new CacheEvictionCounter();
+    }
+    
+    /**
+     * As entradas vivem ttlHours mais a janela de stale-while-revalidate; quando
+     * uma nota está vencida é decidido pelo {@link NfeCachePolicy}, pela idade.
+     * 
+     * Com maxWeightMb, o limite é em bytes, pelo tamanho de cada nota no L1
+     * ({@link NotaSerializada#bytesRetidos()}, que inclui a parte de cada nota
+     * no dicionário de compressão); sem ele, em entradas (maxSize).
+     */
+    @Bean
+    public Caffeine<Object, Object> caffeineConfig(CacheEvictionCounter cacheEvictionCounter) {
+        ScrapingProperties.Cache config = scrapingProperties.getCache();
+        Caffeine<Object, Object> caffeine = Caffeine.newBuilder()
+            .expireAfterWrite(config.getTtlHours() + config.getStaleWhileRevalidateHours(), TimeUnit.HOURS)
+            .evictionListener(cacheEvictionCounter)
             .recordStats();
+        
+        if (config.getMaxWeightMb() > 0) {
+            log.info("nfeCache limitado a {}MB", config.getMaxWeightMb());
+            return caffeine
+                .maximumWeight(config.getMaxWeightMb() * 1024L * 1024L)
+                .weigher((chave, valor) -> valor instanceof NotaSerializada nota ? nota.bytesRetidos() : 1024);
+        }
+        return caffeine.maximumSize(config.getMaxSize());
+    }
+    
+    /**
+     * Formato das notas no L1, com o mesmo ObjectMapper das respostas HTTP:
+     * os bytes em cache são exatamente o corpo que o controller escreveria.
+     */
+    @Bean
+    public NotaJsonCodec notaJsonCodec(ObjectMapper objectMapper) {
+        return new NotaJsonCodec(objectMapper, scrapingProperties.getCache().getDictionaryRebuildEvery());
+    }
+    
+    /**
+     * nfeCache com Caffeine em memória e, se habilitados, cache em disco e
+     * cache compartilhado entre réplicas por baixo.
+     */
+    @Bean(destroyMethod = "fechar")
+    public TieredNfeCache nfeCache(Caffeine<Object, Object> caffeine, NotaJsonCodec notaJsonCodec) {
+        ScrapingProperties.Cache config = scrapingProperties.getCache();
+        
+        DiskNotaStore disco = config.isDiskEnabled()
+            ? new DiskNotaStore(Path.of(config.getDiskDirectory()), config.getDiskMaxSizeMb() * 1024L * 1024L)
+            : null;
+        
+        TieredNfeCache cache = new TieredNfeCache(new CaffeineCache(NFE_CACHE, caffeine.build(), false), disco,
+            compartilhado(), notaJsonCodec);
+        cache.warmUp(config.getWarmLoadEntries());
+        return cache;
+    }
+    
+    /**
+     * Sem o servidor no ar na inicialização, a réplica segue só com os caches locais.
+     */
+    private SharedNotaStore compartilhado() {
+        ScrapingProperties.SharedCache config = scrapingProperties.getSharedCache();
+        if (!config.isEnabled()) {
+            return null;
+        }
+        
+        ScrapingProperties.Cache cache = scrapingProperties.getCache();
+        try {
+            return new SharedNotaStore(config.getUri(), config.getKeyPrefix(),
+                Duration.ofHours(cache.getTtlHours() + cache.getStaleWhileRevalidateHours()));
+        } catch (RedisException e) {
+            log.error("Cache compartilhado indisponível em {}, seguindo só com cache local: {}", config.getUri(), e.getMessage());
+            return null;
+        }
     }
     
     @Bean
-    public CacheManager cacheManager(Caffeine<Object, Object> caffeine) {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager(NFE_CACHE);
-        cacheManager.setCaffeine(caffeine);
+    public CacheManager cacheManager(TieredNfeCache nfeCache) {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(nfeCache));
         return cacheManager;
     }
 }
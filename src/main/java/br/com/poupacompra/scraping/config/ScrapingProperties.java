@@ -1,5 +1,10 @@
 package br.com.poupacompra.scraping.config;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -12,6 +17,20 @@ public class ScrapingProperties {
     
     private Browser browser = new Browser();
     private Cache cache = new Cache();
+    private SharedCache sharedCache = new SharedCache();
+    private FastPath fastPath = new FastPath();
+    private Outbox outbox = new Outbox();
+    private Batch batch = new Batch();
+    private Priority priority = new Priority();
+    private Admission admission = new Admission();
+    private Pinning pinning = new Pinning();
+    private ScriptCache scriptCache = new ScriptCache();
+    private Readiness readiness = new Readiness();
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private RateLimit rateLimit = new RateLimit();
+    private Capture capture = new Capture();
+    private Replay replay = new Replay();
+    private PriceIndex priceIndex = new PriceIndex();
     
     public Browser getBrowser() {
         return browser;
@@ -29,12 +48,141 @@ public class ScrapingProperties {
         this.cache = cache;
     }
     
+    public SharedCache getSharedCache() {
+        return sharedCache;
+    }
+    
+    public void setSharedCache(SharedCache sharedCache) {
+        this.sharedCache = sharedCache;
+    }
+    
+    public FastPath getFastPath() {
+        return fastPath;
+    }
+    
+    public void setFastPath(FastPath fastPath) {
+        this.fastPath = fastPath;
+    }
+    
+    public Outbox getOutbox() {
+        return outbox;
+    }
+    
+    public void setOutbox(Outbox outbox) {
+        this.outbox = outbox;
+    }
+    
+    public Batch getBatch() {
+        return batch;
+    }
+    
+    public void setBatch(Batch batch) {
+        this.batch = batch;
+    }
+    
+    public Priority getPriority() {
+        return priority;
+    }
+    
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+    
+    public Admission getAdmission() {
+        return admission;
+    }
+    
+    public void setAdmission(Admission admission) {
+        this.admission = admission;
+    }
+    
+    public Pinning getPinning() {
+        return pinning;
+    }
+    
+    public void setPinning(Pinning pinning) {
+        this.pinning = pinning;
+    }
+    
+    public ScriptCache getScriptCache() {
+        return scriptCache;
+    }
+    
+    public void setScriptCache(ScriptCache scriptCache) {
+        this.scriptCache = scriptCache;
+    }
+    
+    public Readiness getReadiness() {
+        return readiness;
+    }
+    
+    public void setReadiness(Readiness readiness) {
+        this.readiness = readiness;
+    }
+    
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+    
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+    
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+    
+    public void setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+    
+    public Capture getCapture() {
+        return capture;
+    }
+    
+    public void setCapture(Capture capture) {
+        this.capture = capture;
+    }
+    
+    public Replay getReplay() {
+        return replay;
+    }
+    
+    public void setReplay(Replay replay) {
+        this.replay = replay;
+    }
+    
+    public PriceIndex getPriceIndex() {
+        return priceIndex;
+    }
+    
+    public void setPriceIndex(PriceIndex priceIndex) {
+        this.priceIndex = priceIndex;
+    }
+    
     public static class Browser {
         private int poolSize = 3;
+        private int minPoolSize = 1;
+        private int minReadyOnStart = 1;
+        private int maxPoolSize = 6;
+        private long idleTimeoutMs = 300000;
+        private int memoryLimitMb = 0;
+        private int memoryPerBrowserMb = 250;
+        private int contextsPerBrowser = 1;
+        private int memoryPerContextMb = 90;
+        private int maxUses = 200;
+        private int maxAgeMinutes = 30;
+        private int maxHeapMb = 150;
+        private int healthCheckTimeoutMs = 2000;
         private boolean headless = true;
         private int timeoutMs = 25000;
         private int pageLoadTimeoutMs = 30000;
+        private long affinityWindowMs = 300000;
+        private boolean warmUp = true;
         
+        /**
+         * Quantidade de browsers criados na inicialização.
+         */
         public int getPoolSize() {
             return poolSize;
         }
@@ -43,6 +191,126 @@ public class ScrapingProperties {
             this.poolSize = poolSize;
         }
         
+        public int getMinPoolSize() {
+            return minPoolSize;
+        }
+        
+        public void setMinPoolSize(int minPoolSize) {
+            this.minPoolSize = minPoolSize;
+        }
+        
+        /**
+         * Browsers que precisam estar prontos para a aplicação terminar de subir.
+         * Os demais da inicialização continuam sendo criados em background;
+         * 0 não espera nenhum.
+         */
+        public int getMinReadyOnStart() {
+            return minReadyOnStart;
+        }
+        
+        public void setMinReadyOnStart(int minReadyOnStart) {
+            this.minReadyOnStart = minReadyOnStart;
+        }
+        
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+        
+        public void setMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+        
+        public long getIdleTimeoutMs() {
+            return idleTimeoutMs;
+        }
+        
+        public void setIdleTimeoutMs(long idleTimeoutMs) {
+            this.idleTimeoutMs = idleTimeoutMs;
+        }
+        
+        /**
+         * Memória total do container em MB. Zero detecta automaticamente.
+         */
+        public int getMemoryLimitMb() {
+            return memoryLimitMb;
+        }
+        
+        public void setMemoryLimitMb(int memoryLimitMb) {
+            this.memoryLimitMb = memoryLimitMb;
+        }
+        
+        public int getMemoryPerBrowserMb() {
+            return memoryPerBrowserMb;
+        }
+        
+        public void setMemoryPerBrowserMb(int memoryPerBrowserMb) {
+            this.memoryPerBrowserMb = memoryPerBrowserMb;
+        }
+        
+        /**
+         * Contextos isolados (slots do pool) hospedados por processo Chromium.
+         */
+        public int getContextsPerBrowser() {
+            return contextsPerBrowser;
+        }
+        
+        public void setContextsPerBrowser(int contextsPerBrowser) {
+            this.contextsPerBrowser = contextsPerBrowser;
+        }
+        
+        /**
+         * Custo de cada contexto além do primeiro num processo, incluindo o
+         * driver do Playwright que cada slot abre para rodar em paralelo.
+         */
+        public int getMemoryPerContextMb() {
+            return memoryPerContextMb;
+        }
+        
+        public void setMemoryPerContextMb(int memoryPerContextMb) {
+            this.memoryPerContextMb = memoryPerContextMb;
+        }
+        
+        /**
+         * Usos até o slot ser reciclado. Zero desabilita.
+         */
+        public int getMaxUses() {
+            return maxUses;
+        }
+        
+        public void setMaxUses(int maxUses) {
+            this.maxUses = maxUses;
+        }
+        
+        /**
+         * Idade máxima do slot em minutos. Zero desabilita.
+         */
+        public int getMaxAgeMinutes() {
+            return maxAgeMinutes;
+        }
+        
+        public void setMaxAgeMinutes(int maxAgeMinutes) {
+            this.maxAgeMinutes = maxAgeMinutes;
+        }
+        
+        /**
+         * Heap JS da página (via CDP) acima do qual o slot é reciclado. Zero desabilita.
+         */
+        public int getMaxHeapMb() {
+            return maxHeapMb;
+        }
+        
+        public void setMaxHeapMb(int maxHeapMb) {
+            this.maxHeapMb = maxHeapMb;
+        }
+        
+        public int getHealthCheckTimeoutMs() {
+            return healthCheckTimeoutMs;
+        }
+        
+        public void setHealthCheckTimeoutMs(int healthCheckTimeoutMs) {
+            this.healthCheckTimeoutMs = healthCheckTimeoutMs;
+        }
+        
         public boolean isHeadless() {
             return headless;
         }
@@ -66,11 +334,51 @@ public class ScrapingProperties {
         public void setPageLoadTimeoutMs(int pageLoadTimeoutMs) {
             this.pageLoadTimeoutMs = pageLoadTimeoutMs;
         }
+        
+        /**
+         * Por quanto tempo um slot conta como aquecido para um portal depois de
+         * navegar até ele (conexões, DNS e cache HTTP do contexto). O padrão
+         * acompanha o tempo de vida de conexões ociosas do Chromium.
+         */
+        public long getAffinityWindowMs() {
+            return affinityWindowMs;
+        }
+        
+        public void setAffinityWindowMs(long affinityWindowMs) {
+            this.affinityWindowMs = affinityWindowMs;
+        }
+        
+        /**
+         * Slots novos já abrem conexão (preconnect) com os portais mais usados no momento.
+         */
+        public boolean isWarmUp() {
+            return warmUp;
+        }
+        
+        public void setWarmUp(boolean warmUp) {
+            this.warmUp = warmUp;
+        }
     }
     
     public static class Cache {
         private int ttlHours = 24;
         private int maxSize = 1000;
+        private long maxWeightMb = 0;
+        private boolean diskEnabled = true;
+        private String diskDirectory = "data/cache";
+        private int diskMaxSizeMb = 512;
+        private int warmLoadEntries = 200;
+        private int refreshAfterHours = 20;
+        private int staleWhileRevalidateHours = 24;
+        private int negativeMaxSize = 5000;
+        private int dictionaryRebuildEvery = 500;
+        private Map<String, Long> negativeTtlSeconds = new HashMap<>(Map.of(
+            "indisponivel", 300L,
+            "captcha", 60L,
+            "timeout", 30L,
+            "erro_parse", 600L,
+            "erro", 15L
+        ));
         
         public int getTtlHours() {
             return ttlHours;
@@ -87,5 +395,871 @@ public class ScrapingProperties {
         public void setMaxSize(int maxSize) {
             this.maxSize = maxSize;
         }
+        
+        /**
+         * Orçamento em MB do cache em memória, pelo tamanho estimado de cada
+         * nota. Com 0, o limite é maxSize entradas, de qualquer tamanho.
+         */
+        public long getMaxWeightMb() {
+            return maxWeightMb;
+        }
+        
+        public void setMaxWeightMb(long maxWeightMb) {
+            this.maxWeightMb = maxWeightMb;
+        }
+        
+        /**
+         * Mantém as notas em disco abaixo do Caffeine, sobrevivendo a reinícios.
+         */
+        public boolean isDiskEnabled() {
+            return diskEnabled;
+        }
+        
+        public void setDiskEnabled(boolean diskEnabled) {
+            this.diskEnabled = diskEnabled;
+        }
+        
+        public String getDiskDirectory() {
+            return diskDirectory;
+        }
+        
+        public void setDiskDirectory(String diskDirectory) {
+            this.diskDirectory = diskDirectory;
+        }
+        
+        public int getDiskMaxSizeMb() {
+            return diskMaxSizeMb;
+        }
+        
+        public void setDiskMaxSizeMb(int diskMaxSizeMb) {
+            this.diskMaxSizeMb = diskMaxSizeMb;
+        }
+        
+        /**
+         * Entradas mais recentes do disco carregadas no Caffeine na inicialização.
+         */
+        public int getWarmLoadEntries() {
+            return warmLoadEntries;
+        }
+        
+        public void setWarmLoadEntries(int warmLoadEntries) {
+            this.warmLoadEntries = warmLoadEntries;
+        }
+        
+        /**
+         * Idade a partir da qual um acerto dispara a atualização da nota em
+         * background (refresh-ahead), ainda servindo a versão em cache.
+         */
+        public int getRefreshAfterHours() {
+            return refreshAfterHours;
+        }
+        
+        public void setRefreshAfterHours(int refreshAfterHours) {
+            this.refreshAfterHours = refreshAfterHours;
+        }
+        
+        /**
+         * Tempo depois do ttlHours em que a nota vencida ainda é servida
+         * enquanto uma atualização em background a substitui.
+         */
+        public int getStaleWhileRevalidateHours() {
+            return staleWhileRevalidateHours;
+        }
+        
+        public void setStaleWhileRevalidateHours(int staleWhileRevalidateHours) {
+            this.staleWhileRevalidateHours = staleWhileRevalidateHours;
+        }
+        
+        public int getNegativeMaxSize() {
+            return negativeMaxSize;
+        }
+        
+        public void setNegativeMaxSize(int negativeMaxSize) {
+            this.negativeMaxSize = negativeMaxSize;
+        }
+        
+        /**
+         * Por quanto tempo uma falha fica em cache, por tipo (os resultados de
+         * ScrapingMetrics). Tipos ausentes ou com 0 não são cacheados.
+         */
+        public Map<String, Long> getNegativeTtlSeconds() {
+            return negativeTtlSeconds;
+        }
+        
+        public void setNegativeTtlSeconds(Map<String, Long> negativeTtlSeconds) {
+            this.negativeTtlSeconds = negativeTtlSeconds;
+        }
+        
+        /**
+         * Notas gravadas no L1 entre uma versão e a seguinte do dicionário de
+         * compressão, aprendido dos estabelecimentos e descrições mais frequentes.
+         */
+        public int getDictionaryRebuildEvery() {
+            return dictionaryRebuildEvery;
+        }
+        
+        public void setDictionaryRebuildEvery(int dictionaryRebuildEvery) {
+            this.dictionaryRebuildEvery = dictionaryRebuildEvery;
+        }
+    }
+    
+    /**
+     * Cache compartilhado entre réplicas, num servidor com protocolo Redis
+     * (Redis, Valkey...). Fica atrás do Caffeine e do disco de cada réplica.
+     *
+     * Num miss, só a réplica que obtém o lease da chave faz o scraping; as
+     * outras aguardam o resultado aparecer no cache por até waitMs (no mínimo
+     * leaseMs, a duração máxima de um scraping). O lease expira sozinho em
+     * leaseMs se a réplica dona cair.
+     */
+    public static class SharedCache {
+        private boolean enabled = false;
+        private String uri = "redis://localhost:6379";
+        private String keyPrefix = "poupa-compra:nfe:";
+        private long leaseMs = 90000;
+        private long waitMs = 90000;
+        private long pollMs = 250;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public String getUri() {
+            return uri;
+        }
+        
+        public void setUri(String uri) {
+            this.uri = uri;
+        }
+        
+        public String getKeyPrefix() {
+            return keyPrefix;
+        }
+        
+        public void setKeyPrefix(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+        
+        public long getLeaseMs() {
+            return leaseMs;
+        }
+        
+        public void setLeaseMs(long leaseMs) {
+            this.leaseMs = leaseMs;
+        }
+        
+        public long getWaitMs() {
+            return waitMs;
+        }
+        
+        public void setWaitMs(long waitMs) {
+            this.waitMs = waitMs;
+        }
+        
+        public long getPollMs() {
+            return pollMs;
+        }
+        
+        public void setPollMs(long pollMs) {
+            this.pollMs = pollMs;
+        }
+    }
+    
+    /**
+     * Extração via HTTP simples, sem browser, para portais com HTML estático.
+     */
+    public static class FastPath {
+        private boolean enabled = true;
+        private int timeoutMs = 5000;
+        private List<String> disabledUfs = new ArrayList<>();
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public int getTimeoutMs() {
+            return timeoutMs;
+        }
+        
+        public void setTimeoutMs(int timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+        
+        public List<String> getDisabledUfs() {
+            return disabledUfs;
+        }
+        
+        public void setDisabledUfs(List<String> disabledUfs) {
+            this.disabledUfs = disabledUfs;
+        }
+    }
+    
+    /**
+     * Outbox em disco para envio assíncrono das notas à API.
+     */
+    public static class Outbox {
+        private String directory = "data/outbox";
+        private int batchSize = 20;
+        private boolean batchEndpoint = false;
+        private boolean fsync = true;
+        private long initialBackoffMs = 1000;
+        private long maxBackoffMs = 60000;
+        
+        public String getDirectory() {
+            return directory;
+        }
+        
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+        
+        public int getBatchSize() {
+            return batchSize;
+        }
+        
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+        
+        /**
+         * Usa POST /salvar-notas com o lote inteiro em vez de uma chamada por nota.
+         */
+        public boolean isBatchEndpoint() {
+            return batchEndpoint;
+        }
+        
+        public void setBatchEndpoint(boolean batchEndpoint) {
+            this.batchEndpoint = batchEndpoint;
+        }
+        
+        public boolean isFsync() {
+            return fsync;
+        }
+        
+        public void setFsync(boolean fsync) {
+            this.fsync = fsync;
+        }
+        
+        public long getInitialBackoffMs() {
+            return initialBackoffMs;
+        }
+        
+        public void setInitialBackoffMs(long initialBackoffMs) {
+            this.initialBackoffMs = initialBackoffMs;
+        }
+        
+        public long getMaxBackoffMs() {
+            return maxBackoffMs;
+        }
+        
+        public void setMaxBackoffMs(long maxBackoffMs) {
+            this.maxBackoffMs = maxBackoffMs;
+        }
+    }
+    
+    /**
+     * Processamento de lotes (POST /dados-nota/lote).
+     */
+    public static class Batch {
+        private int maxConcurrent = 1;
+        private double itemsPerSecond = 2;
+        private int maxPendingItems = 10000;
+        private int maxUrlsPerJob = 5000;
+        private int retentionMinutes = 60;
+        private int maxRetainedJobs = 100;
+        private int streamTimeoutMinutes = 30;
+        
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+        
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+        
+        public double getItemsPerSecond() {
+            return itemsPerSecond;
+        }
+        
+        public void setItemsPerSecond(double itemsPerSecond) {
+            this.itemsPerSecond = itemsPerSecond;
+        }
+        
+        /**
+         * Notas únicas aguardando processamento somando todos os lotes.
+         */
+        public int getMaxPendingItems() {
+            return maxPendingItems;
+        }
+        
+        public void setMaxPendingItems(int maxPendingItems) {
+            this.maxPendingItems = maxPendingItems;
+        }
+        
+        public int getMaxUrlsPerJob() {
+            return maxUrlsPerJob;
+        }
+        
+        public void setMaxUrlsPerJob(int maxUrlsPerJob) {
+            this.maxUrlsPerJob = maxUrlsPerJob;
+        }
+        
+        /**
+         * Minutos que um lote concluído (com os resultados) fica disponível.
+         */
+        public int getRetentionMinutes() {
+            return retentionMinutes;
+        }
+        
+        public void setRetentionMinutes(int retentionMinutes) {
+            this.retentionMinutes = retentionMinutes;
+        }
+        
+        /**
+         * Lotes concluídos mantidos em memória; acima disso os mais antigos
+         * são removidos antes do fim da retenção.
+         */
+        public int getMaxRetainedJobs() {
+            return maxRetainedJobs;
+        }
+        
+        public void setMaxRetainedJobs(int maxRetainedJobs) {
+            this.maxRetainedJobs = maxRetainedJobs;
+        }
+        
+        /**
+         * Prazo do stream de resultados de um lote (GET /dados-nota/lote/{id}/resultados).
+         */
+        public int getStreamTimeoutMinutes() {
+            return streamTimeoutMinutes;
+        }
+        
+        public void setStreamTimeoutMinutes(int streamTimeoutMinutes) {
+            this.streamTimeoutMinutes = streamTimeoutMinutes;
+        }
+    }
+    
+    /**
+     * Espera pelo conteúdo da nota. Com adaptiveTimeout, o prazo de cada UF é o
+     * percentil observado das esperas bem-sucedidas vezes o multiplicador, entre
+     * minTimeoutMs e browser.timeoutMs. Até juntar minSamples amostras, vale
+     * browser.timeoutMs.
+     */
+    public static class Readiness {
+        private boolean adaptiveTimeout = true;
+        private double percentile = 0.99;
+        private double multiplier = 2.0;
+        private long minTimeoutMs = 3000;
+        private int minSamples = 20;
+        private int window = 200;
+        private long pollingMs = 100;
+        
+        public boolean isAdaptiveTimeout() {
+            return adaptiveTimeout;
+        }
+        
+        public void setAdaptiveTimeout(boolean adaptiveTimeout) {
+            this.adaptiveTimeout = adaptiveTimeout;
+        }
+        
+        public double getPercentile() {
+            return percentile;
+        }
+        
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+        
+        public double getMultiplier() {
+            return multiplier;
+        }
+        
+        public void setMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+        }
+        
+        public long getMinTimeoutMs() {
+            return minTimeoutMs;
+        }
+        
+        public void setMinTimeoutMs(long minTimeoutMs) {
+            this.minTimeoutMs = minTimeoutMs;
+        }
+        
+        public int getMinSamples() {
+            return minSamples;
+        }
+        
+        public void setMinSamples(int minSamples) {
+            this.minSamples = minSamples;
+        }
+        
+        public int getWindow() {
+            return window;
+        }
+        
+        public void setWindow(int window) {
+            this.window = window;
+        }
+        
+        public long getPollingMs() {
+            return pollingMs;
+        }
+        
+        public void setPollingMs(long pollingMs) {
+            this.pollingMs = pollingMs;
+        }
+    }
+    
+    /**
+     * Circuit breaker por UF. Abre quando, nas últimas windowSize notas com
+     * resultado conclusivo (pelo menos minCalls), a fração de falhas (timeout,
+     * erro ou captcha) passa de failureRateThreshold ou a de timeouts passa de
+     * timeoutRateThreshold. Aberto, rejeita por openMs; depois deixa passar
+     * halfOpenProbes requisições de teste, que fecham o circuito se todas derem certo.
+     */
+    public static class CircuitBreaker {
+        private boolean enabled = true;
+        private int windowSize = 20;
+        private int minCalls = 10;
+        private double failureRateThreshold = 0.5;
+        private double timeoutRateThreshold = 0.3;
+        private long openMs = 30000;
+        private int halfOpenProbes = 2;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public int getWindowSize() {
+            return windowSize;
+        }
+        
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+        
+        public int getMinCalls() {
+            return minCalls;
+        }
+        
+        public void setMinCalls(int minCalls) {
+            this.minCalls = minCalls;
+        }
+        
+        public double getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+        
+        public void setFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+        
+        public double getTimeoutRateThreshold() {
+            return timeoutRateThreshold;
+        }
+        
+        public void setTimeoutRateThreshold(double timeoutRateThreshold) {
+            this.timeoutRateThreshold = timeoutRateThreshold;
+        }
+        
+        public long getOpenMs() {
+            return openMs;
+        }
+        
+        public void setOpenMs(long openMs) {
+            this.openMs = openMs;
+        }
+        
+        public int getHalfOpenProbes() {
+            return halfOpenProbes;
+        }
+        
+        public void setHalfOpenProbes(int halfOpenProbes) {
+            this.halfOpenProbes = halfOpenProbes;
+        }
+    }
+    
+    /**
+     * Token bucket por portal (UF): ratePerSecond consultas por segundo, com
+     * rajada de até burst. Sem token, a requisição espera até maxWaitMs pela
+     * vez dela; acima disso é rejeitada. perUf sobrescreve ratePerSecond.
+     * Vale para as consultas pelo browser; a extração HTTP não passa pelo balde.
+     */
+    public static class RateLimit {
+        private boolean enabled = true;
+        private double ratePerSecond = 2.0;
+        private int burst = 5;
+        private long maxWaitMs = 2000;
+        private Map<String, Double> perUf = new HashMap<>();
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public double getRatePerSecond() {
+            return ratePerSecond;
+        }
+        
+        public void setRatePerSecond(double ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+        }
+        
+        public int getBurst() {
+            return burst;
+        }
+        
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+        
+        public long getMaxWaitMs() {
+            return maxWaitMs;
+        }
+        
+        public void setMaxWaitMs(long maxWaitMs) {
+            this.maxWaitMs = maxWaitMs;
+        }
+        
+        public Map<String, Double> getPerUf() {
+            return perUf;
+        }
+        
+        public void setPerUf(Map<String, Double> perUf) {
+            this.perUf = perUf;
+        }
+        
+        public double ratePara(String uf) {
+            return perUf.getOrDefault(uf, ratePerSecond);
+        }
+    }
+    
+    /**
+     * Fração mínima dos browsers do pool reservada para cada classe de prioridade.
+     * Acima da cota, vale a precedência interactive > retry > batch.
+     */
+    public static class Priority {
+        private double interactiveMinShare = 0.5;
+        private double retryMinShare = 0.1;
+        private double batchMinShare = 0.2;
+        
+        public double getInteractiveMinShare() {
+            return interactiveMinShare;
+        }
+        
+        public void setInteractiveMinShare(double interactiveMinShare) {
+            this.interactiveMinShare = interactiveMinShare;
+        }
+        
+        public double getRetryMinShare() {
+            return retryMinShare;
+        }
+        
+        public void setRetryMinShare(double retryMinShare) {
+            this.retryMinShare = retryMinShare;
+        }
+        
+        public double getBatchMinShare() {
+            return batchMinShare;
+        }
+        
+        public void setBatchMinShare(double batchMinShare) {
+            this.batchMinShare = batchMinShare;
+        }
+    }
+    
+    /**
+     * Admissão ao caminho com browser: até o tamanho máximo do pool mais
+     * queueDepth scrapings ao mesmo tempo. Acima disso, 503 com Retry-After
+     * em vez de mais uma thread esperando browser.
+     */
+    public static class Admission {
+        private boolean enabled = true;
+        private int queueDepth = 20;
+        private long retryAfterSeconds = 5;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+        
+        public void setQueueDepth(int queueDepth) {
+            this.queueDepth = queueDepth;
+        }
+        
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+        
+        public void setRetryAfterSeconds(long retryAfterSeconds) {
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+    
+    /**
+     * Cache em disco dos scripts dos portais, compartilhado pelos slots do pool.
+     */
+    public static class ScriptCache {
+        private boolean enabled = false;
+        private String directory = "data/script-cache";
+        private long maxAgeHours = 24;
+        private int maxEntryKb = 2048;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public String getDirectory() {
+            return directory;
+        }
+        
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+        
+        public long getMaxAgeHours() {
+            return maxAgeHours;
+        }
+        
+        public void setMaxAgeHours(long maxAgeHours) {
+            this.maxAgeHours = maxAgeHours;
+        }
+        
+        public int getMaxEntryKb() {
+            return maxEntryKb;
+        }
+        
+        public void setMaxEntryKb(int maxEntryKb) {
+            this.maxEntryKb = maxEntryKb;
+        }
+    }
+    
+    /**
+     * Monitor JFR de virtual threads presas ao carrier (jdk.VirtualThreadPinned)
+     * por mais de thresholdMs.
+     */
+    public static class Pinning {
+        private boolean enabled = true;
+        private long thresholdMs = 20;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public long getThresholdMs() {
+            return thresholdMs;
+        }
+        
+        public void setThresholdMs(long thresholdMs) {
+            this.thresholdMs = thresholdMs;
+        }
+    }
+    
+    /**
+     * Gravação do HTML das notas extraídas, por UF, para o servidor de replay.
+     */
+    public static class Capture {
+        private boolean enabled = false;
+        private String directory = "data/capture";
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public String getDirectory() {
+            return directory;
+        }
+        
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+    }
+    
+    /**
+     * Servidor local que substitui os portais da SEFAZ, servindo as páginas capturadas
+     * com latência e falhas injetadas. Só para testes de carga e regressão.
+     */
+    public static class Replay {
+        private boolean enabled = false;
+        private int port = 8199;
+        private String directory = "data/capture";
+        private long latencyMs = 300;
+        private long jitterMs = 200;
+        private double errorRate = 0;
+        private double captchaRate = 0;
+        private double timeoutRate = 0;
+        private long timeoutDelayMs = 60000;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public int getPort() {
+            return port;
+        }
+        
+        public void setPort(int port) {
+            this.port = port;
+        }
+        
+        public String getDirectory() {
+            return directory;
+        }
+        
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+        
+        public long getLatencyMs() {
+            return latencyMs;
+        }
+        
+        public void setLatencyMs(long latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+        
+        /**
+         * Variação aleatória somada à latência, de 0 a jitterMs.
+         */
+        public long getJitterMs() {
+            return jitterMs;
+        }
+        
+        public void setJitterMs(long jitterMs) {
+            this.jitterMs = jitterMs;
+        }
+        
+        /**
+         * Fração das respostas com página de erro do portal (HTTP 500).
+         */
+        public double getErrorRate() {
+            return errorRate;
+        }
+        
+        public void setErrorRate(double errorRate) {
+            this.errorRate = errorRate;
+        }
+        
+        /**
+         * Fração das respostas com tela de reCAPTCHA no lugar da nota.
+         */
+        public double getCaptchaRate() {
+            return captchaRate;
+        }
+        
+        public void setCaptchaRate(double captchaRate) {
+            this.captchaRate = captchaRate;
+        }
+        
+        /**
+         * Fração das respostas que só chegam depois de timeoutDelayMs.
+         */
+        public double getTimeoutRate() {
+            return timeoutRate;
+        }
+        
+        public void setTimeoutRate(double timeoutRate) {
+            this.timeoutRate = timeoutRate;
+        }
+        
+        public long getTimeoutDelayMs() {
+            return timeoutDelayMs;
+        }
+        
+        public void setTimeoutDelayMs(long timeoutDelayMs) {
+            this.timeoutDelayMs = timeoutDelayMs;
+        }
+    }
+    
+    /**
+     * Índice em memória dos preços das notas extraídas, por CNPJ e descrição
+     * do produto, consultado em /precos.
+     */
+    public static class PriceIndex {
+        private boolean enabled = true;
+        private String snapshotFile = "data/price-index.bin";
+        private long snapshotIntervalMs = 600000;
+        private int maxResults = 100;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        /**
+         * Arquivo do snapshot, gravado periodicamente e no encerramento e
+         * lido na inicialização.
+         */
+        public String getSnapshotFile() {
+            return snapshotFile;
+        }
+        
+        public void setSnapshotFile(String snapshotFile) {
+            this.snapshotFile = snapshotFile;
+        }
+        
+        /**
+         * Intervalo entre snapshots; só grava se houve nota nova desde o último.
+         */
+        public long getSnapshotIntervalMs() {
+            return snapshotIntervalMs;
+        }
+        
+        public void setSnapshotIntervalMs(long snapshotIntervalMs) {
+            this.snapshotIntervalMs = snapshotIntervalMs;
+        }
+        
+        /**
+         * Máximo de ofertas por consulta, qualquer que seja o limite pedido.
+         */
+        public int getMaxResults() {
+            return maxResults;
+        }
+        
+        public void setMaxResults(int maxResults) {
+            this.maxResults = maxResults;
+        }
     }
 }
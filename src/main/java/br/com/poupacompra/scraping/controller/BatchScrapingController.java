@@ -0,0 +1,138 @@
+package br.com.poupacompra.scraping.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.LoteStatusDTO;
+import br.com.poupacompra.scraping.service.BatchScrapingService;
+
+/**
+ * Endpoints de processamento em lote.
+ * 
+ * Endpoints:
+ * - POST /dados-nota/lote - Cria um lote a partir de uma lista de URLs
+ * - GET /dados-nota/lote/{id} - Progresso do lote
+ * - GET /dados-nota/lote/{id}/resultados - Resultados em NDJSON (ou SSE, com
+ *   Accept text/event-stream), à medida que concluem
+ */
+@RestController
+@RequestMapping("/dados-nota/lote")
+public class BatchScrapingController {
+    
+    private final BatchScrapingService batchScrapingService;
+    private final ObjectMapper objectMapper;
+    private final ScrapingProperties properties;
+    
+    public BatchScrapingController(BatchScrapingService batchScrapingService, ObjectMapper objectMapper,
+            ScrapingProperties properties) {
+        this.batchScrapingService = batchScrapingService;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+    
+    @PostMapping
+    public ResponseEntity<LoteStatusDTO> criarLote(
+            @RequestBody List<String> urls,
+            @RequestHeader(value = ScrapingController.TENANT_HEADER, required = false) String tenant) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(batchScrapingService.criarLote(urls, tenant));
+    }
+    
+    @GetMapping("/{id}")
+    public ResponseEntity<LoteStatusDTO> status(@PathVariable("id") String id) {
+        return batchScrapingService.getStatus(id)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Uma linha JSON por URL do lote. A resposta fica aberta até o lote
+     * terminar ou até batch.streamTimeoutMinutes; o prazo vale só para este
+     * endpoint, não para as outras requisições assíncronas.
+     */
+    @GetMapping("/{id}/resultados")
+    public ResponseEntity<ResponseBodyEmitter> resultados(
+            @PathVariable("id") String id,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (!batchScrapingService.existe(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        MediaType formato = EventoStreamWriter.negociar(accept).orElse(EventoStreamWriter.APPLICATION_NDJSON);
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(
+            TimeUnit.MINUTES.toMillis(properties.getBatch().getStreamTimeoutMinutes()));
+        Thread stream = Thread.ofVirtual().name("lote-resultados-" + id).unstarted(() -> {
+            // Um gerador para o stream inteiro, como no /dados-nota
+            try {
+                try (EventoStreamWriter writer = new EventoStreamWriter(
+                        objectMapper, new EmitterOutputStream(emitter, formato), formato)) {
+                    batchScrapingService.streamResultados(id, resultado -> {
+                        try {
+                            writer.escrever("resultado", resultado);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                }
+                emitter.complete();
+            } catch (InterruptedException e) {
+                // Prazo esgotado ou cliente desconectado: a resposta já foi encerrada
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        emitter.onTimeout(stream::interrupt);
+        emitter.onError(e -> stream.interrupt());
+        stream.start();
+        
+        return ResponseEntity.ok().contentType(formato).body(emitter);
+    }
+    
+    /**
+     * Entrega ao emitter, como um chunk, o que o gerador escreveu até cada
+     * flush (um evento). A cópia é necessária: o gerador reutiliza o buffer, e
+     * o emitter pode escrever o chunk depois de send retornar.
+     */
+    private static final class EmitterOutputStream extends OutputStream {
+
+        private final ResponseBodyEmitter emitter;
+        private final MediaType formato;
+
+        EmitterOutputStream(ResponseBodyEmitter emitter, MediaType formato) {
+            this.emitter = emitter;
+            this.formato = formato;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                emitter.send(Arrays.copyOfRange(b, off, off + len), formato);
+            }
+        }
+    }
+}
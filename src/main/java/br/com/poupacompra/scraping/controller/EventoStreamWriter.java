@@ -0,0 +1,151 @@
+package br.com.poupacompra.scraping.controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.dto.ItemNotaDTO;
+
+/**
+ * Escreve a resposta como uma sequência de eventos JSON, em NDJSON (uma linha
+ * por evento) ou SSE (event:/data:), com um gerador de streaming do Jackson
+ * por resposta, escrevendo direto na saída: o corpo da resposta no
+ * /dados-nota, um chunk do emitter por evento nos resultados de lote. O
+ * primeiro evento sai para o cliente antes de os itens serem serializados.
+ *
+ * Uma nota vira três tipos de evento, nesta ordem: cabecalho (estabelecimento e
+ * nota), um item por produto e o resumo. Todo evento traz o campo "tipo",
+ * para o NDJSON, que não tem nome de evento.
+ */
+final class EventoStreamWriter implements Closeable {
+
+    static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * Itens escritos entre um flush e outro; um flush por item seria um chunk HTTP por item.
+     */
+    private static final int ITENS_POR_FLUSH = 64;
+
+    private final JsonGenerator gerador;
+    private final boolean sse;
+
+    EventoStreamWriter(ObjectMapper objectMapper, OutputStream out, MediaType formato) throws IOException {
+        this.gerador = objectMapper.getFactory().createGenerator(out);
+        this.gerador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.gerador.setRootValueSeparator(null);
+        this.sse = MediaType.TEXT_EVENT_STREAM.equalsTypeAndSubtype(formato);
+    }
+
+    /**
+     * Formato de streaming pedido no header Accept, se algum foi pedido
+     * explicitamente antes de application/json. Curingas não contam: o
+     * formato padrão continua sendo o JSON completo.
+     */
+    static Optional<MediaType> negociar(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return Optional.empty();
+        }
+
+        List<MediaType> aceitos;
+        try {
+            aceitos = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return Optional.empty();
+        }
+
+        for (MediaType aceito : aceitos) {
+            if (aceito.getQualityValue() <= 0 || aceito.isWildcardType() || aceito.isWildcardSubtype()) {
+                continue;
+            }
+            if (APPLICATION_NDJSON.equalsTypeAndSubtype(aceito)) {
+                return Optional.of(APPLICATION_NDJSON);
+            }
+            if (MediaType.TEXT_EVENT_STREAM.equalsTypeAndSubtype(aceito)) {
+                return Optional.of(MediaType.TEXT_EVENT_STREAM);
+            }
+            if (MediaType.APPLICATION_JSON.equalsTypeAndSubtype(aceito)) {
+                return Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Escreve a nota como cabecalho, itens e resumo.
+     *
+     * @param inicio System.nanoTime() do início da requisição, para o tempo do resumo
+     */
+    void escreverNota(DadosNotaResponseDTO dados, long inicio) throws IOException {
+        iniciarEvento("cabecalho");
+        gerador.writePOJOField("estabelecimento", dados.estabelecimento());
+        gerador.writePOJOField("nota", dados.nota());
+        encerrarEvento();
+        gerador.flush();
+
+        List<ItemNotaDTO> itens = dados.itensNota();
+        double somaItens = 0;
+        for (int i = 0; i < itens.size(); i++) {
+            ItemNotaDTO item = itens.get(i);
+            iniciarEvento("item");
+            gerador.writeNumberField("indice", i);
+            gerador.writeStringField("descricao", item.descricao());
+            gerador.writeNumberField("quantidade", item.quantidade());
+            gerador.writeStringField("tipoUnidade", item.tipoUnidade());
+            gerador.writeNumberField("valorUnitario", item.valorUnitario());
+            gerador.writeNumberField("valorTotal", item.valorTotal());
+            encerrarEvento();
+            somaItens += item.valorTotal();
+
+            if ((i + 1) % ITENS_POR_FLUSH == 0) {
+                gerador.flush();
+            }
+        }
+
+        iniciarEvento("resumo");
+        gerador.writeNumberField("quantidadeItens", itens.size());
+        gerador.writeNumberField("valorTotal", dados.nota().valorTotal());
+        gerador.writeNumberField("somaItens", Math.round(somaItens * 100) / 100.0);
+        gerador.writeNumberField("tempoMs", (System.nanoTime() - inicio) / 1_000_000);
+        encerrarEvento();
+        gerador.flush();
+    }
+
+    /**
+     * Escreve um objeto qualquer como um evento, sem o campo "tipo" (ex.: resultados de lote).
+     */
+    void escrever(String evento, Object valor) throws IOException {
+        if (sse) {
+            gerador.writeRaw("event: " + evento + "\ndata: ");
+        }
+        gerador.writeObject(valor);
+        gerador.writeRaw(sse ? "\n\n" : "\n");
+        gerador.flush();
+    }
+
+    private void iniciarEvento(String tipo) throws IOException {
+        if (sse) {
+            gerador.writeRaw("event: " + tipo + "\ndata: ");
+        }
+        gerador.writeStartObject();
+        gerador.writeStringField("tipo", tipo);
+    }
+
+    private void encerrarEvento() throws IOException {
+        gerador.writeEndObject();
+        gerador.writeRaw(sse ? "\n\n" : "\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        gerador.close();
+    }
+}
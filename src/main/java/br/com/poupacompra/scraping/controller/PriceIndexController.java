@@ -0,0 +1,66 @@
+package br.com.poupacompra.scraping.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import br.com.poupacompra.scraping.dto.OfertaPrecoDTO;
+import br.com.poupacompra.scraping.service.PriceIndex;
+
+/**
+ * Consultas ao índice de preços das notas extraídas.
+ * 
+ * Endpoints:
+ * - GET /precos?q=<termos>&uf=<UF>&limite=<n> - Ofertas mais baratas dos
+ *   produtos com todos os termos na descrição
+ * - GET /precos/estabelecimentos/{cnpj}?q=<termos>&limite=<n> - Preços num estabelecimento
+ * - GET /precos/stats - Tamanho do índice e último snapshot
+ * - POST /precos/snapshot - Grava o snapshot em disco agora
+ */
+@RestController
+@RequestMapping("/precos")
+public class PriceIndexController {
+    
+    private final PriceIndex priceIndex;
+    
+    public PriceIndexController(PriceIndex priceIndex) {
+        this.priceIndex = priceIndex;
+    }
+    
+    @GetMapping
+    public ResponseEntity<List<OfertaPrecoDTO>> maisBaratas(
+            @RequestParam("q") String consulta,
+            @RequestParam(value = "uf", required = false) String uf,
+            @RequestParam(value = "limite", defaultValue = "20") int limite) {
+        if (consulta == null || consulta.isBlank()) {
+            throw new IllegalArgumentException("Consulta não fornecida");
+        }
+        return ResponseEntity.ok(priceIndex.maisBaratas(consulta, uf, limite));
+    }
+    
+    @GetMapping("/estabelecimentos/{cnpj}")
+    public ResponseEntity<List<OfertaPrecoDTO>> doEstabelecimento(
+            @PathVariable("cnpj") String cnpj,
+            @RequestParam(value = "q", required = false) String consulta,
+            @RequestParam(value = "limite", defaultValue = "20") int limite) {
+        return ResponseEntity.ok(priceIndex.doEstabelecimento(cnpj, consulta, limite));
+    }
+    
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(priceIndex.getStats());
+    }
+    
+    @PostMapping("/snapshot")
+    public ResponseEntity<Map<String, Object>> snapshot() {
+        priceIndex.salvar();
+        return ResponseEntity.ok(priceIndex.getStats());
+    }
+}
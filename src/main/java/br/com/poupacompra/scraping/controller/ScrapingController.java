@@ -1,19 +1,30 @@
 package br.com.poupacompra.scraping.controller;
 
+import java.io.IOException;
 import java.util.Map;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
-import br.com.poupacompra.scraping.service.BrowserPoolService;
+import br.com.poupacompra.scraping.service.BrowserPoolService.AcquireRequest;
 import br.com.poupacompra.scraping.service.CacheService;
 import br.com.poupacompra.scraping.service.NfeScrapingService;
+import br.com.poupacompra.scraping.service.NotaJsonCodec;
+import br.com.poupacompra.scraping.service.NotaJsonCodec.NotaSerializada;
+import br.com.poupacompra.scraping.service.ScrapePriority;
+import jakarta.servlet.http.HttpServletResponse;
 
 /**
  * Controller para os endpoints de scraping de NFCe.
@@ -21,49 +32,86 @@ import br.com.poupacompra.scraping.service.NfeScrapingService;
  * Endpoints:
  * - POST /dados-nota?url=<link> - Realiza scraping da NFCe
  * - POST /cache/clear - Limpa o cache
- * - GET /cache/stats - Estatísticas do cache
+ * - GET /cache/stats - Estatísticas do cache (as demais ficam no {@link StatsController})
+ * 
+ * O header X-Tenant-Id identifica o chamador para a fila justa de browsers.
+ * Com Accept application/x-ndjson ou text/event-stream, /dados-nota responde
+ * em eventos (ver {@link EventoStreamWriter}).
  */
 @RestController
 public class ScrapingController {
     
     private static final Logger log = LoggerFactory.getLogger(ScrapingController.class);
     
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+    
     private final NfeScrapingService nfeScrapingService;
     private final CacheService cacheService;
-    private final BrowserPoolService browserPoolService;
+    private final ObjectMapper objectMapper;
+    private final NotaJsonCodec notaJsonCodec;
     
     public ScrapingController(
             NfeScrapingService nfeScrapingService,
             CacheService cacheService,
-            BrowserPoolService browserPoolService) {
+            ObjectMapper objectMapper,
+            NotaJsonCodec notaJsonCodec) {
         this.nfeScrapingService = nfeScrapingService;
         this.cacheService = cacheService;
-        this.browserPoolService = browserPoolService;
+        this.objectMapper = objectMapper;
+        this.notaJsonCodec = notaJsonCodec;
     }
     
     /**
      * Endpoint principal para scraping de NFe.
      * 
+     * O JSON completo sai dos bytes do cache ({@link NotaJsonCodec}), escritos
+     * direto no corpo da resposta; os formatos em eventos precisam do DTO.
+     * 
      * @param url URL da NFe a ser processada
-     * @return Dados extraídos da nota fiscal
+     * @param tenant identificação do chamador (opcional)
+     * @param accept application/x-ndjson ou text/event-stream para a resposta em eventos
      */
     @PostMapping("/dados-nota")
-    public ResponseEntity<DadosNotaResponseDTO> getDadosNota(@RequestParam("url") String url) {
+    public void getDadosNota(
+            @RequestParam("url") String url,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenant,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletResponse response) throws IOException {
         if (url == null || url.isBlank()) {
             throw new IllegalArgumentException("URL não fornecida");
         }
         
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
         log.info("\n" + "=".repeat(60));
         log.info("Nova requisição recebida");
         
-        DadosNotaResponseDTO result = nfeScrapingService.scrapeNfe(url);
+        AcquireRequest acquireRequest = new AcquireRequest(ScrapePriority.INTERACTIVE, tenant);
+        Optional<MediaType> streaming = EventoStreamWriter.negociar(accept);
+        
+        // Falhas saem daqui pelo GlobalExceptionHandler, com o status HTTP de cada uma
+        if (streaming.isEmpty()) {
+            NotaSerializada nota = nfeScrapingService.scrapeNfeSerializada(url, acquireRequest);
+            logFinalizada(startTime);
+            
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setContentLength(nota.tamanho());
+            notaJsonCodec.escrever(nota, response.getOutputStream());
+            return;
+        }
+        
+        DadosNotaResponseDTO result = nfeScrapingService.scrapeNfe(url, acquireRequest);
+        logFinalizada(startTime);
         
-        long elapsed = System.currentTimeMillis() - startTime;
+        response.setContentType(streaming.get().toString());
+        try (EventoStreamWriter writer = new EventoStreamWriter(objectMapper, response.getOutputStream(), streaming.get())) {
+            writer.escreverNota(result, startTime);
+        }
+    }
+    
+    private static void logFinalizada(long startTime) {
+        long elapsed = (System.nanoTime() - startTime) / 1_000_000;
         log.info("✓ Request finalizada em {}ms", elapsed);
         log.info("=".repeat(60) + "\n");
-        
-        return ResponseEntity.ok(result);
     }
     
     /**
@@ -78,19 +126,10 @@ public class ScrapingController {
     }
     
     /**
-     * Retorna estatísticas detalhadas do cache.
+     * Estatísticas do cache. As dos demais componentes ficam em /stats.
      */
     @GetMapping("/cache/stats")
     public ResponseEntity<Map<String, Object>> cacheStats() {
-        Map<String, Object> stats = cacheService.getCacheStats();
-        
-        // Adiciona informações do browser pool
-        return ResponseEntity.ok(Map.of(
-            "cache", stats,
-            "browserPool", Map.of(
-                "size", browserPoolService.getPoolSize(),
-                "available", browserPoolService.getAvailableCount()
-            )
-        ));
+        return ResponseEntity.ok(cacheService.getCacheStats());
     }
 }
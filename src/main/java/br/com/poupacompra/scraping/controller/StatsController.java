@@ -0,0 +1,104 @@
+package br.com.poupacompra.scraping.controller;
+
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import br.com.poupacompra.scraping.service.AdmissionLimiter;
+import br.com.poupacompra.scraping.service.BatchScrapingService;
+import br.com.poupacompra.scraping.service.BrowserPoolService;
+import br.com.poupacompra.scraping.service.HttpNfeExtractor;
+import br.com.poupacompra.scraping.service.InFlightScrapeRegistry;
+import br.com.poupacompra.scraping.service.OutboxService;
+import br.com.poupacompra.scraping.service.PageCaptureService;
+import br.com.poupacompra.scraping.service.PinningMonitor;
+import br.com.poupacompra.scraping.service.PortalCircuitBreakers;
+import br.com.poupacompra.scraping.service.PortalRateLimiter;
+import br.com.poupacompra.scraping.service.ReadinessDetector;
+import br.com.poupacompra.scraping.service.ReplayServer;
+
+/**
+ * Estado operacional dos componentes do scraping, para diagnóstico. As
+ * métricas para monitoramento ficam no /actuator/prometheus.
+ * 
+ * Endpoints:
+ * - GET /stats - Pool de browsers, coalescing, extração, outbox, lotes,
+ *   prontidão, portais, replay e captura
+ */
+@RestController
+public class StatsController {
+    
+    private final BrowserPoolService browserPoolService;
+    private final AdmissionLimiter admissionLimiter;
+    private final PinningMonitor pinningMonitor;
+    private final InFlightScrapeRegistry inFlightScrapeRegistry;
+    private final HttpNfeExtractor httpNfeExtractor;
+    private final OutboxService outboxService;
+    private final BatchScrapingService batchScrapingService;
+    private final ReadinessDetector readinessDetector;
+    private final PortalCircuitBreakers portalCircuitBreakers;
+    private final PortalRateLimiter portalRateLimiter;
+    private final ReplayServer replayServer;
+    private final PageCaptureService pageCaptureService;
+    
+    public StatsController(
+            BrowserPoolService browserPoolService,
+            AdmissionLimiter admissionLimiter,
+            PinningMonitor pinningMonitor,
+            InFlightScrapeRegistry inFlightScrapeRegistry,
+            HttpNfeExtractor httpNfeExtractor,
+            OutboxService outboxService,
+            BatchScrapingService batchScrapingService,
+            ReadinessDetector readinessDetector,
+            PortalCircuitBreakers portalCircuitBreakers,
+            PortalRateLimiter portalRateLimiter,
+            ReplayServer replayServer,
+            PageCaptureService pageCaptureService) {
+        this.browserPoolService = browserPoolService;
+        this.admissionLimiter = admissionLimiter;
+        this.pinningMonitor = pinningMonitor;
+        this.inFlightScrapeRegistry = inFlightScrapeRegistry;
+        this.httpNfeExtractor = httpNfeExtractor;
+        this.outboxService = outboxService;
+        this.batchScrapingService = batchScrapingService;
+        this.readinessDetector = readinessDetector;
+        this.portalCircuitBreakers = portalCircuitBreakers;
+        this.portalRateLimiter = portalRateLimiter;
+        this.replayServer = replayServer;
+        this.pageCaptureService = pageCaptureService;
+    }
+    
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(Map.of(
+            "browserPool", Map.of(
+                "size", browserPoolService.getPoolSize(),
+                "available", browserPoolService.getAvailableCount(),
+                "waiting", browserPoolService.getWaitingCount(),
+                "maxSize", browserPoolService.getMaxPoolSize(),
+                "processes", browserPoolService.getProcessCount(),
+                "prioridades", browserPoolService.getPriorityStats(),
+                "afinidade", browserPoolService.getAffinityStats(),
+                "admissao", admissionLimiter.getStats(),
+                "pinning", pinningMonitor.getStats(),
+                "inicializacao", browserPoolService.getStartupStats()
+            ),
+            "coalescing", inFlightScrapeRegistry.getStats(),
+            "extracao", httpNfeExtractor.getStats(),
+            "outbox", outboxService.getStats(),
+            "lotes", batchScrapingService.getStats(),
+            "prontidao", readinessDetector.getStats(),
+            "portais", Map.of(
+                "circuitos", portalCircuitBreakers.getStats(),
+                "limites", portalRateLimiter.getStats()
+            ),
+            "replay", replayServer.getStats(),
+            "captura", Map.of(
+                "ativa", pageCaptureService.isAtivo(),
+                "paginas", pageCaptureService.getCapturadas()
+            )
+        ));
+    }
+}
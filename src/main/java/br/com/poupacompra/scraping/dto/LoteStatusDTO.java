@@ -0,0 +1,26 @@
+package br.com.poupacompra.scraping.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record LoteStatusDTO(
+    @JsonProperty("id")
+    String id,
+    
+    @JsonProperty("status")
+    String status,
+    
+    @JsonProperty("total")
+    int total,
+    
+    @JsonProperty("unicos")
+    int unicos,
+    
+    @JsonProperty("concluidos")
+    int concluidos,
+    
+    @JsonProperty("falhas")
+    int falhas,
+    
+    @JsonProperty("criadoEm")
+    String criadoEm
+) {}
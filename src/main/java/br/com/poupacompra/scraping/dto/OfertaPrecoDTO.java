@@ -0,0 +1,32 @@
+package br.com.poupacompra.scraping.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Último preço de um produto num estabelecimento, do índice de preços.
+ */
+public record OfertaPrecoDTO(
+    @JsonProperty("descricao")
+    String descricao,
+    
+    @JsonProperty("valorUnitario")
+    double valorUnitario,
+    
+    @JsonProperty("tipoUnidade")
+    String tipoUnidade,
+    
+    @JsonProperty("cnpj")
+    String cnpj,
+    
+    @JsonProperty("nomeEstabelecimento")
+    String nomeEstabelecimento,
+    
+    @JsonProperty("endereco")
+    String endereco,
+    
+    @JsonProperty("uf")
+    String uf,
+    
+    @JsonProperty("observadoEm")
+    String observadoEm
+) {}
@@ -0,0 +1,30 @@
+package br.com.poupacompra.scraping.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ResultadoLoteDTO(
+    @JsonProperty("url")
+    String url,
+    
+    @JsonProperty("chaveAcesso")
+    String chaveAcesso,
+    
+    @JsonProperty("sucesso")
+    boolean sucesso,
+    
+    @JsonProperty("dados")
+    DadosNotaResponseDTO dados,
+    
+    @JsonProperty("erro")
+    String erro
+) {
+    public static ResultadoLoteDTO sucesso(String url, String chaveAcesso, DadosNotaResponseDTO dados) {
+        return new ResultadoLoteDTO(url, chaveAcesso, true, dados, null);
+    }
+    
+    public static ResultadoLoteDTO falha(String url, String chaveAcesso, String erro) {
+        return new ResultadoLoteDTO(url, chaveAcesso, false, null, erro);
+    }
+}
@@ -0,0 +1,19 @@
+package br.com.poupacompra.scraping.exception;
+
+/**
+ * O serviço não tem capacidade para aceitar a requisição agora.
+ * Respondida com 503 e o cabeçalho Retry-After.
+ */
+public class CapacidadeExcedidaException extends ScrapingException {
+    
+    private final long retryAfterSeconds;
+    
+    public CapacidadeExcedidaException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,11 @@
+package br.com.poupacompra.scraping.exception;
+
+/**
+ * O portal exibiu um reCAPTCHA em vez da nota.
+ */
+public class CaptchaException extends ScrapingException {
+
+    public CaptchaException(String message, String url, Throwable cause) {
+        super(message, url, cause);
+    }
+}
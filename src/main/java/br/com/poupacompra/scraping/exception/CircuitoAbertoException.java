@@ -0,0 +1,19 @@
+package br.com.poupacompra.scraping.exception;
+
+/**
+ * O circuito da UF está aberto: o portal vem falhando e a consulta é
+ * rejeitada sem ocupar um browser.
+ */
+public class CircuitoAbertoException extends CapacidadeExcedidaException {
+    
+    private final String uf;
+    
+    public CircuitoAbertoException(String uf, long retryAfterSeconds) {
+        super("Portal da SEFAZ-" + uf + " instável, consultas suspensas temporariamente", retryAfterSeconds);
+        this.uf = uf;
+    }
+    
+    public String getUf() {
+        return uf;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -15,6 +16,47 @@ public class GlobalExceptionHandler {
     
     private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
     
+    @ExceptionHandler(CircuitoAbertoException.class)
+    public ResponseEntity<Map<String, Object>> handleCircuitoAbertoException(CircuitoAbertoException ex) {
+        log.warn("Circuito aberto: {}", ex.getMessage());
+        return portalProtegido(ex, ex.getUf(), "circuito_aberto");
+    }
+    
+    @ExceptionHandler(LimiteTaxaPortalException.class)
+    public ResponseEntity<Map<String, Object>> handleLimiteTaxaPortalException(LimiteTaxaPortalException ex) {
+        log.warn("Limite de taxa do portal: {}", ex.getMessage());
+        return portalProtegido(ex, ex.getUf(), "limite_taxa");
+    }
+    
+    private ResponseEntity<Map<String, Object>> portalProtegido(CapacidadeExcedidaException ex, String uf, String motivo) {
+        Map<String, Object> body = Map.of(
+            "error", ex.getMessage(),
+            "uf", uf,
+            "motivo", motivo,
+            "retryAfterSeconds", ex.getRetryAfterSeconds(),
+            "timestamp", LocalDateTime.now().toString()
+        );
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+            .body(body);
+    }
+    
+    @ExceptionHandler(CapacidadeExcedidaException.class)
+    public ResponseEntity<Map<String, Object>> handleCapacidadeExcedidaException(CapacidadeExcedidaException ex) {
+        log.warn("Capacidade excedida: {}", ex.getMessage());
+        
+        Map<String, Object> body = Map.of(
+            "error", ex.getMessage(),
+            "retryAfterSeconds", ex.getRetryAfterSeconds(),
+            "timestamp", LocalDateTime.now().toString()
+        );
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+            .body(body);
+    }
+    
     @ExceptionHandler(ScrapingException.class)
     public ResponseEntity<Map<String, Object>> handleScrapingException(ScrapingException ex) {
         log.error("Erro de scraping: {}", ex.getMessage(), ex);
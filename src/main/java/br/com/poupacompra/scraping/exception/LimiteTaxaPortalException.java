@@ -0,0 +1,19 @@
+package br.com.poupacompra.scraping.exception;
+
+/**
+ * O limite de consultas por segundo ao portal da UF foi atingido e a espera
+ * pela vez da requisição passaria do máximo configurado.
+ */
+public class LimiteTaxaPortalException extends CapacidadeExcedidaException {
+    
+    private final String uf;
+    
+    public LimiteTaxaPortalException(String uf, long retryAfterSeconds) {
+        super("Limite de consultas ao portal da SEFAZ-" + uf + " atingido", retryAfterSeconds);
+        this.uf = uf;
+    }
+    
+    public String getUf() {
+        return uf;
+    }
+}
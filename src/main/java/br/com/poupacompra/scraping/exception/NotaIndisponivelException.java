@@ -0,0 +1,12 @@
+package br.com.poupacompra.scraping.exception;
+
+/**
+ * O portal respondeu, mas sem a nota: página de erro, "nota não encontrada"
+ * ou redirecionamento para fora da consulta.
+ */
+public class NotaIndisponivelException extends ScrapingException {
+
+    public NotaIndisponivelException(String message, String url) {
+        super(message, url);
+    }
+}
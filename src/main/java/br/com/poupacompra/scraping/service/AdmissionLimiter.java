@@ -0,0 +1,83 @@
+package br.com.poupacompra.scraping.service;
+
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.exception.CapacidadeExcedidaException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Limite de scrapings com browser em andamento, na frente do pool.
+ *
+ * Com virtual threads não há pool de threads do Tomcat para segurar a carga:
+ * sem este limite, cada requisição a mais estaciona uma thread esperando
+ * browser até o timeout do acquire. As vagas são o tamanho máximo do pool
+ * mais queueDepth; sem vaga, a requisição é rejeitada na hora com
+ * {@link CapacidadeExcedidaException} (503 com Retry-After).
+ *
+ * Métricas: scraping.admission.in.flight e scraping.admission.rejected.
+ */
+@Component
+public class AdmissionLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionLimiter.class);
+
+    private final ScrapingProperties.Admission config;
+    private final int limite;
+    private final Semaphore vagas;
+    private final Counter rejeitadas;
+
+    public AdmissionLimiter(ScrapingProperties properties, BrowserPoolService browserPoolService, MeterRegistry meterRegistry) {
+        this.config = properties.getAdmission();
+        this.limite = browserPoolService.getMaxPoolSize() + Math.max(0, config.getQueueDepth());
+        this.vagas = new Semaphore(limite);
+
+        Gauge.builder("scraping.admission.in.flight", vagas, v -> limite - v.availablePermits())
+            .description("Scrapings com browser admitidos e ainda em andamento")
+            .register(meterRegistry);
+        this.rejeitadas = Counter.builder("scraping.admission.rejected")
+            .description("Scrapings rejeitados por falta de vaga no pool de browsers")
+            .register(meterRegistry);
+
+        log.info("Admissão: até {} scrapings com browser ({} no pool + {} na fila)",
+            limite, browserPoolService.getMaxPoolSize(), config.getQueueDepth());
+    }
+
+    /**
+     * Ocupa uma vaga; cada chamada bem-sucedida deve ter o seu {@link #liberar}.
+     *
+     * @throws CapacidadeExcedidaException se não há vaga
+     */
+    public void admitir() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (!vagas.tryAcquire()) {
+            rejeitadas.increment();
+            throw new CapacidadeExcedidaException("Pool de browsers saturado, tente novamente mais tarde",
+                config.getRetryAfterSeconds());
+        }
+    }
+
+    public void liberar() {
+        if (config.isEnabled()) {
+            vagas.release();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "enabled", config.isEnabled(),
+            "limite", limite,
+            "emAndamento", limite - vagas.availablePermits(),
+            "rejeitadas", (long) rejeitadas.count()
+        );
+    }
+}
@@ -0,0 +1,362 @@
+package br.com.poupacompra.scraping.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.dto.LoteStatusDTO;
+import br.com.poupacompra.scraping.dto.ResultadoLoteDTO;
+import br.com.poupacompra.scraping.exception.CapacidadeExcedidaException;
+import br.com.poupacompra.scraping.service.BrowserPoolService.AcquireRequest;
+import br.com.poupacompra.scraping.service.NfceUrlParser.NfceUrl;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Processamento de lotes de URLs de NFC-e.
+ *
+ * Cada lote é deduplicado pela chave de acesso; notas já em cache são resolvidas
+ * na hora e as demais entram numa fila única, consumida por um despachante que
+ * limita concorrência e taxa (itens/s). No pool de browsers os itens entram com
+ * prioridade BATCH (ou RETRY, na segunda tentativa de um item que falhou), atrás
+ * das requisições interativas mas com a cota mínima reservada à classe.
+ */
+@Service
+public class BatchScrapingService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchScrapingService.class);
+
+    private final ScrapingProperties properties;
+    private final NfeScrapingService nfeScrapingService;
+    private final NfceUrlParser nfceUrlParser;
+    private final TieredNfeCache nfeCache;
+
+    private final Map<String, Lote> lotes = new ConcurrentHashMap<>();
+    private final BlockingQueue<ItemLote> fila = new LinkedBlockingQueue<>();
+    private final AtomicInteger itensPendentes = new AtomicInteger();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore emExecucao;
+
+    private Thread despachante;
+    private volatile boolean ativo = true;
+
+    private static final int MAX_TENTATIVAS = 2;
+
+    /**
+     * Ordem de conclusão dos lotes: no mesmo milissegundo, concluidoEm empata.
+     */
+    private static final AtomicLong CONCLUSOES = new AtomicLong();
+
+    /**
+     * Nota única dentro de um lote, com todas as URLs que apontam para ela.
+     */
+    private record ItemLote(Lote lote, NfceUrl nfceUrl, List<String> urls, int tentativa) {
+
+        private ItemLote proximaTentativa() {
+            return new ItemLote(lote, nfceUrl, urls, tentativa + 1);
+        }
+
+        private AcquireRequest acquireRequest() {
+            return new AcquireRequest(tentativa > 1 ? ScrapePriority.RETRY : ScrapePriority.BATCH, lote.tenant);
+        }
+    }
+
+    private static final class Lote {
+        private final String id = UUID.randomUUID().toString();
+        private final LocalDateTime criadoEm = LocalDateTime.now();
+        private final String tenant;
+        private final int total;
+        private final int unicos;
+        private final List<ResultadoLoteDTO> resultados = new ArrayList<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition novoResultado = lock.newCondition();
+        private int falhas;
+        private volatile long concluidoEm;
+        private volatile long ordemConclusao;
+
+        private Lote(String tenant, int total, int unicos) {
+            this.tenant = tenant;
+            this.total = total;
+            this.unicos = unicos;
+        }
+
+        private void adicionar(ResultadoLoteDTO resultado) {
+            lock.lock();
+            try {
+                resultados.add(resultado);
+                if (!resultado.sucesso()) {
+                    falhas++;
+                }
+                if (resultados.size() == total) {
+                    ordemConclusao = CONCLUSOES.incrementAndGet();
+                    concluidoEm = System.currentTimeMillis();
+                }
+                novoResultado.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private LoteStatusDTO status() {
+            lock.lock();
+            try {
+                String status = resultados.size() == total ? "CONCLUIDO"
+                    : resultados.isEmpty() ? "PENDENTE" : "PROCESSANDO";
+                return new LoteStatusDTO(id, status, total, unicos, resultados.size(), falhas, criadoEm.toString());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public BatchScrapingService(
+            ScrapingProperties properties,
+            NfeScrapingService nfeScrapingService,
+            NfceUrlParser nfceUrlParser,
+            TieredNfeCache nfeCache) {
+        this.properties = properties;
+        this.nfeScrapingService = nfeScrapingService;
+        this.nfceUrlParser = nfceUrlParser;
+        this.nfeCache = nfeCache;
+        this.emExecucao = new Semaphore(Math.max(1, properties.getBatch().getMaxConcurrent()));
+    }
+
+    @PostConstruct
+    public void init() {
+        despachante = Thread.ofPlatform().name("lote-despachante").daemon().start(this::despachar);
+    }
+
+    /**
+     * Cria um lote. URLs inválidas são registradas como falha imediatamente;
+     * URLs repetidas da mesma nota são processadas uma vez só.
+     *
+     * @param tenant chamador, para a fila justa entre tenants (opcional)
+     */
+    public LoteStatusDTO criarLote(List<String> urls, String tenant) {
+        ScrapingProperties.Batch config = properties.getBatch();
+
+        if (urls == null || urls.isEmpty()) {
+            throw new IllegalArgumentException("Lote sem URLs");
+        }
+        if (urls.size() > config.getMaxUrlsPerJob()) {
+            throw new IllegalArgumentException("Lote excede o limite de " + config.getMaxUrlsPerJob() + " URLs");
+        }
+
+        Map<String, ItemLote> unicos = new LinkedHashMap<>();
+        List<ResultadoLoteDTO> invalidas = new ArrayList<>();
+        List<NfceUrl> validas = new ArrayList<>();
+
+        for (String url : urls) {
+            try {
+                validas.add(nfceUrlParser.parse(url));
+            } catch (IllegalArgumentException e) {
+                invalidas.add(ResultadoLoteDTO.falha(url, null, e.getMessage()));
+            }
+        }
+
+        Lote lote = new Lote(tenant, urls.size(), (int) validas.stream().map(NfceUrl::chaveAcesso).distinct().count());
+        for (NfceUrl nfceUrl : validas) {
+            unicos.computeIfAbsent(nfceUrl.chaveAcesso(), k -> new ItemLote(lote, nfceUrl, new ArrayList<>(), 1))
+                .urls().add(nfceUrl.url());
+        }
+
+        if (itensPendentes.addAndGet(unicos.size()) > config.getMaxPendingItems()) {
+            itensPendentes.addAndGet(-unicos.size());
+            throw new CapacidadeExcedidaException("Fila de lotes cheia, tente novamente mais tarde", 60);
+        }
+
+        removerLotesExcedentes();
+        lotes.put(lote.id, lote);
+        invalidas.forEach(lote::adicionar);
+
+        int emCache = 0;
+        for (ItemLote item : unicos.values()) {
+            Optional<DadosNotaResponseDTO> cache = buscarEmCache(item);
+            if (cache.isPresent()) {
+                concluir(item, ResultadoLoteDTO.sucesso(null, item.nfceUrl().chaveAcesso(), cache.get()));
+                emCache++;
+            } else {
+                fila.add(item);
+            }
+        }
+
+        log.info("Lote {} criado: {} URLs, {} notas únicas, {} em cache, {} inválidas",
+            lote.id, urls.size(), unicos.size(), emCache, invalidas.size());
+        return lote.status();
+    }
+
+    private Optional<DadosNotaResponseDTO> buscarEmCache(ItemLote item) {
+        return Optional.ofNullable(nfeCache.get(item.nfceUrl().chaveAcesso(), DadosNotaResponseDTO.class));
+    }
+
+    /**
+     * Consome a fila respeitando concorrência e taxa.
+     */
+    private void despachar() {
+        long intervaloNanos = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(0.01, properties.getBatch().getItemsPerSecond()));
+        long proximoDespacho = System.nanoTime();
+
+        while (ativo) {
+            try {
+                ItemLote item = fila.take();
+
+                Optional<DadosNotaResponseDTO> cache = buscarEmCache(item);
+                if (cache.isPresent()) {
+                    concluir(item, ResultadoLoteDTO.sucesso(null, item.nfceUrl().chaveAcesso(), cache.get()));
+                    continue;
+                }
+
+                long espera = proximoDespacho - System.nanoTime();
+                if (espera > 0) {
+                    TimeUnit.NANOSECONDS.sleep(espera);
+                }
+                proximoDespacho = Math.max(proximoDespacho, System.nanoTime()) + intervaloNanos;
+
+                emExecucao.acquire();
+                executor.execute(() -> processar(item));
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void processar(ItemLote item) {
+        try {
+            DadosNotaResponseDTO dados = nfeScrapingService.scrapeNfe(item.nfceUrl().url(), item.acquireRequest());
+            concluir(item, ResultadoLoteDTO.sucesso(null, item.nfceUrl().chaveAcesso(), dados));
+        } catch (IllegalArgumentException e) {
+            concluir(item, ResultadoLoteDTO.falha(null, item.nfceUrl().chaveAcesso(), e.getMessage()));
+        } catch (Exception e) {
+            if (item.tentativa() < MAX_TENTATIVAS && ativo && transitoria(e)) {
+                log.debug("Item {} do lote {} falhou, nova tentativa: {}", item.nfceUrl().chaveAcesso(), item.lote().id, e.getMessage());
+                fila.add(item.proximaTentativa());
+            } else {
+                concluir(item, ResultadoLoteDTO.falha(null, item.nfceUrl().chaveAcesso(), e.getMessage()));
+            }
+        } finally {
+            emExecucao.release();
+        }
+    }
+
+    /**
+     * Só timeout e erro genérico (portal instável, browser caiu) podem passar
+     * numa nova tentativa; captcha, nota indisponível, erro de parse e
+     * rejeição por capacidade se repetiriam.
+     */
+    private static boolean transitoria(Exception e) {
+        String tipo = ScrapingMetrics.resultado(e);
+        return ScrapingMetrics.TIMEOUT.equals(tipo) || ScrapingMetrics.ERRO.equals(tipo);
+    }
+
+    private void concluir(ItemLote item, ResultadoLoteDTO resultado) {
+        itensPendentes.decrementAndGet();
+        for (String url : item.urls()) {
+            item.lote().adicionar(new ResultadoLoteDTO(url, resultado.chaveAcesso(), resultado.sucesso(), resultado.dados(), resultado.erro()));
+        }
+    }
+
+    public Optional<LoteStatusDTO> getStatus(String id) {
+        return Optional.ofNullable(lotes.get(id)).map(Lote::status);
+    }
+
+    public boolean existe(String id) {
+        return lotes.containsKey(id);
+    }
+
+    /**
+     * Entrega os resultados do lote na ordem de conclusão, aguardando os que
+     * ainda estão em processamento, até o lote terminar.
+     */
+    public void streamResultados(String id, Consumer<ResultadoLoteDTO> consumer) throws InterruptedException {
+        Lote lote = lotes.get(id);
+        if (lote == null) {
+            throw new IllegalArgumentException("Lote não encontrado: " + id);
+        }
+
+        int enviados = 0;
+        while (enviados < lote.total) {
+            List<ResultadoLoteDTO> novos;
+            lote.lock.lock();
+            try {
+                while (lote.resultados.size() == enviados) {
+                    lote.novoResultado.await();
+                }
+                novos = List.copyOf(lote.resultados.subList(enviados, lote.resultados.size()));
+            } finally {
+                lote.lock.unlock();
+            }
+            novos.forEach(consumer);
+            enviados += novos.size();
+        }
+    }
+
+    /**
+     * Remove lotes concluídos há mais de retentionMinutes e, acima de
+     * maxRetainedJobs concluídos, os mais antigos. Lotes em andamento ficam:
+     * o total deles já é limitado por maxPendingItems.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void removerLotesAntigos() {
+        long limite = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(properties.getBatch().getRetentionMinutes());
+        lotes.values().removeIf(lote -> lote.concluidoEm > 0 && lote.concluidoEm <= limite);
+        removerLotesExcedentes();
+    }
+
+    private void removerLotesExcedentes() {
+        List<Lote> concluidos = lotes.values().stream()
+            .filter(lote -> lote.concluidoEm > 0)
+            .sorted(Comparator.comparingLong(lote -> lote.ordemConclusao))
+            .toList();
+        int excedentes = concluidos.size() - Math.max(0, properties.getBatch().getMaxRetainedJobs());
+        for (int i = 0; i < excedentes; i++) {
+            lotes.remove(concluidos.get(i).id);
+        }
+        if (excedentes > 0) {
+            log.info("{} lotes concluídos removidos acima do limite de {}", excedentes,
+                properties.getBatch().getMaxRetainedJobs());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "lotes", lotes.size(),
+            "itensPendentes", itensPendentes.get(),
+            "emExecucao", properties.getBatch().getMaxConcurrent() - emExecucao.availablePermits()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ativo = false;
+        if (despachante != null) {
+            despachante.interrupt();
+        }
+        executor.shutdownNow();
+    }
+}
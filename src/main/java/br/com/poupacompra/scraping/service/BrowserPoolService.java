@@ -1,218 +1,1161 @@
 package br.com.poupacompra.scraping.service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import com.google.gson.JsonObject;
 import com.microsoft.playwright.Browser;
 import com.microsoft.playwright.BrowserContext;
 import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.CDPSession;
 import com.microsoft.playwright.Page;
 import com.microsoft.playwright.Playwright;
+import com.microsoft.playwright.Route;
+import com.microsoft.playwright.options.WaitUntilState;
 
 import br.com.poupacompra.scraping.config.ScrapingProperties;
 import br.com.poupacompra.scraping.exception.ScrapingException;
 import br.com.poupacompra.scraping.service.BrowserPoolService.BrowserInstance;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
+/**
+ * Pool elástico de browsers.
+ *
+ * Cada slot do pool é um contexto isolado (BrowserContext + Page). Um processo
+ * Chromium hospeda até contextsPerBrowser slots, de modo que o custo fixo do
+ * processo é dividido entre vários scrapings concorrentes.
+ *
+ * Inicia com poolSize slots, criados em paralelo: a aplicação sobe quando
+ * minReadyOnStart estão prontos e o restante entra em background. Cria novos
+ * em background quando há requisições aguardando (até o limite rígido derivado
+ * de maxPoolSize e da memória do container) e encerra slots ociosos por mais de idleTimeoutMs, mantendo minPoolSize.
+ * Processos sem contextos são encerrados.
+ *
+ * Slots são validados ao serem obtidos e devolvidos (página viva, reset para
+ * about:blank, heap JS via CDP) e reciclados após maxUses usos ou maxAgeMinutes.
+ * O substituto é criado em background, então o pool não encolhe.
+ *
+ * A ordem de atendimento de quem aguarda é definida pelo {@link BrowserSlotQueue}:
+ * cotas mínimas por classe de prioridade e round-robin entre tenants.
+ *
+ * Cada processo tem o seu próprio Playwright (um driver Node) e a sua
+ * {@link BrowserThread}, que sobem e encerram o Chromium. As chamadas de um
+ * slot passam pela {@link Conexao} dele, via {@link BrowserInstance#executar}:
+ * com contextsPerBrowser 1 é a do processo; acima disso cada slot tem o seu
+ * Playwright e a sua thread, ligados ao processo por CDP, e os slots do mesmo
+ * processo fazem scraping em paralelo em vez de se revezarem numa thread.
+ *
+ * Afinidade: cada slot lembra quando navegou para cada portal. O contexto
+ * guarda conexões TLS, DNS e cache HTTP desse portal por algum tempo, então
+ * o acquire prefere um slot livre aquecido para o portal da nota
+ * (scraping.browser.affinity: aquecido/frio, por UF). Slots novos abrem
+ * conexão com os portais mais usados antes de entrar no pool, e os scripts
+ * dos portais podem vir do {@link PortalScriptCache}.
+ */
 @Service
 public class BrowserPoolService {
-    
+
     private static final Logger log = LoggerFactory.getLogger(BrowserPoolService.class);
-    
+
+    private static final long MB = 1024 * 1024;
+    private static final long MEMORIA_RESERVADA_MB = 128;
+    private static final int MAX_ORIGENS_AQUECIMENTO = 3;
+
+    private static final List<String> BROWSER_ARGS = Arrays.asList(
+        "--disable-blink-features=AutomationControlled",
+        "--no-sandbox",
+        "--disable-setuid-sandbox",
+        "--disable-dev-shm-usage",
+        "--disable-accelerated-2d-canvas",
+        "--no-first-run",
+        "--no-zygote",
+        "--disable-gpu",
+        "--disable-web-security",
+        "--allow-running-insecure-content",
+        "--ignore-certificate-errors",
+        "--disable-features=IsolateOrigins,site-per-process",
+        "--disable-background-timer-throttling",
+        "--disable-backgrounding-occluded-windows",
+        "--disable-renderer-backgrounding",
+        "--disable-background-networking",
+        "--disable-breakpad",
+        "--disable-component-extensions-with-background-pages",
+        "--disable-extensions",
+        "--disable-features=TranslateUI,BlinkGenPropertyTrees",
+        "--disable-ipc-flooding-protection",
+        "--disable-hang-monitor",
+        "--disable-popup-blocking",
+        "--disable-prompt-on-repost",
+        "--disable-sync",
+        "--force-color-profile=srgb",
+        "--metrics-recording-only",
+        "--no-default-browser-check",
+        "--password-store=basic",
+        "--use-mock-keychain"
+    );
+
+    private static final Set<String> RECURSOS_BLOQUEADOS = Set.of("image", "stylesheet", "font", "media");
+
+    private static final Browser.NewContextOptions CONTEXT_OPTIONS = new Browser.NewContextOptions()
+        .setViewportSize(800, 600)
+        .setUserAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36")
+        .setIgnoreHTTPSErrors(true)
+        .setJavaScriptEnabled(true)
+        .setBypassCSP(true);
+
+    // Remove propriedades de automação (anti-detecção)
+    private static final String ANTI_DETECCAO_SCRIPT = """
+        Object.defineProperty(navigator, 'webdriver', {
+            get: () => undefined
+        });
+
+        window.chrome = {
+            runtime: {}
+        };
+    """;
+
     private final ScrapingProperties properties;
-    private final BlockingQueue<BrowserInstance> browserPool;
-    private final AtomicInteger browsersAvailable;
-    
-    private Playwright playwright;
+    private final BrowserSlotQueue browserPool;
+    private final Map<Integer, BrowserInstance> instancias = new ConcurrentHashMap<>();
+    private final Map<Integer, BrowserProcess> processos = new ConcurrentHashMap<>();
+    private final Map<Integer, ProcessoIniciando> processosIniciando = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> ociosoDesde = new ConcurrentHashMap<>();
+    private final AtomicInteger totalBrowsers = new AtomicInteger(0);
+    private final AtomicInteger browsersIniciando = new AtomicInteger(0);
+    private final AtomicInteger proximoId = new AtomicInteger(0);
+    private final AtomicInteger proximoProcessoId = new AtomicInteger(0);
+    private final ExecutorService launcher = Executors.newVirtualThreadPerTaskExecutor();
+    private final ReentrantLock processosLock = new ReentrantLock();
+    private final Map<String, Long> origensRecentes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong[]> afinidadePorUf = new ConcurrentHashMap<>();
+
+    private final Counter browsersCriados;
+    private final Counter browsersRetirados;
+    private final MeterRegistry meterRegistry;
+    private final PortalScriptCache portalScriptCache;
+
+    private int limiteRigido;
     private volatile boolean initialized = false;
-    
-    public record BrowserInstance(
+    private volatile long inicializacaoProntaMs = -1;
+    private volatile long inicializacaoCompletaMs = -1;
+
+    /**
+     * Processo Chromium compartilhado por até contextsPerBrowser slots, com o
+     * Playwright e a thread que o controlam.
+     *
+     * @param desconectado marcado pelo evento de desconexão do browser (crash
+     *                     do Chromium), para ser consultado fora da thread do processo
+     * @param endpointCdp  endereço de depuração remota para as conexões dos
+     *                     slots, ou null se os slots usam a do processo
+     */
+    public record BrowserProcess(
         int id,
+        Playwright playwright,
         Browser browser,
-        BrowserContext context,
-        Page page
+        BrowserThread thread,
+        AtomicInteger contextos,
+        AtomicBoolean desconectado,
+        String endpointCdp
+    ) {}
+
+    /**
+     * Playwright e thread que executam as chamadas de um slot.
+     *
+     * @param propria se foi aberta só para o slot (e é fechada com ele), ou é
+     *                a do processo
+     */
+    public record Conexao(
+        BrowserThread thread,
+        Playwright playwright,
+        Browser browser,
+        boolean propria
     ) {}
-    
-    public BrowserPoolService(ScrapingProperties properties) {
+
+    /**
+     * Processo Chromium em launch, com os contextos já reservados nele.
+     */
+    private record ProcessoIniciando(
+        int id,
+        CompletableFuture<BrowserProcess> processo,
+        AtomicInteger reservas
+    ) {}
+
+    /**
+     * Slot do pool: um contexto isolado dentro de um processo.
+     */
+    public record BrowserInstance(
+        int id,
+        BrowserProcess processo,
+        Conexao conexao,
+        BrowserContext context,
+        Page page,
+        long criadoEm,
+        AtomicInteger usos,
+        Map<String, Long> aquecimento
+    ) {
+        public Browser browser() {
+            return conexao.browser();
+        }
+
+        /**
+         * Se o slot navegou para a origem há menos de janelaNanos.
+         */
+        public boolean aquecidoPara(String origem, long janelaNanos) {
+            Long ultimaVisita = aquecimento.get(origem);
+            return ultimaVisita != null && System.nanoTime() - ultimaVisita < janelaNanos;
+        }
+
+        /**
+         * Executa a ação na thread da conexão do slot. Toda chamada à página
+         * ou ao contexto do slot deve passar por aqui.
+         */
+        public <T> T executar(Supplier<T> acao) {
+            return conexao.thread().executar(acao);
+        }
+    }
+
+    /**
+     * Quem está pedindo o browser: classe de prioridade e tenant (para fila justa).
+     *
+     * @param chave chave do scraping no single-flight, ou null; permite elevar a
+     *              prioridade do acquire quando alguém mais prioritário se junta a ele
+     */
+    public record AcquireRequest(
+        ScrapePriority prioridade,
+        String tenant,
+        String chave
+    ) {
+        public static final String TENANT_PADRAO = "default";
+
+        public AcquireRequest {
+            prioridade = prioridade != null ? prioridade : ScrapePriority.INTERACTIVE;
+            tenant = tenant != null && !tenant.isBlank() ? tenant : TENANT_PADRAO;
+        }
+
+        public AcquireRequest(ScrapePriority prioridade, String tenant) {
+            this(prioridade, tenant, null);
+        }
+
+        public AcquireRequest comChave(String chave) {
+            return new AcquireRequest(prioridade, tenant, chave);
+        }
+
+        public AcquireRequest comPrioridade(ScrapePriority prioridade) {
+            return new AcquireRequest(prioridade, tenant, chave);
+        }
+
+        public static AcquireRequest interactive() {
+            return new AcquireRequest(ScrapePriority.INTERACTIVE, TENANT_PADRAO);
+        }
+    }
+
+    /**
+     * Para onde o slot vai navegar: UF (para as métricas) e origem do portal
+     * (scheme://host[:porta], a chave de aquecimento).
+     */
+    public record Afinidade(
+        String uf,
+        String origem
+    ) {
+        /**
+         * Afinidade com a origem da URL, ou null (sem preferência) se a URL não
+         * tem uma. Nunca lança: a afinidade não pode fazer um scraping falhar.
+         */
+        public static Afinidade de(String uf, String url) {
+            String origem = origem(url);
+            return origem != null ? new Afinidade(uf, origem) : null;
+        }
+
+        /**
+         * Esquema e host (com porta) da URL, sem interpretar o resto: as URLs de
+         * QR code v2 têm '|' na query, que o {@code URI} rejeita.
+         */
+        static String origem(String url) {
+            if (url == null) {
+                return null;
+            }
+            int esquema = url.indexOf("://");
+            if (esquema <= 0) {
+                return null;
+            }
+            int inicioHost = esquema + 3;
+            int fim = inicioHost;
+            while (fim < url.length() && "/?#|".indexOf(url.charAt(fim)) < 0) {
+                fim++;
+            }
+            if (fim == inicioHost) {
+                return null;
+            }
+            return url.substring(0, fim).toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public BrowserPoolService(ScrapingProperties properties, MeterRegistry meterRegistry, PortalScriptCache portalScriptCache) {
         this.properties = properties;
-        this.browserPool = new LinkedBlockingQueue<>(properties.getBrowser().getPoolSize());
-        this.browsersAvailable = new AtomicInteger(0);
+        this.meterRegistry = meterRegistry;
+        this.portalScriptCache = portalScriptCache;
+        ScrapingProperties.Priority cotas = properties.getPriority();
+        this.browserPool = new BrowserSlotQueue(Map.of(
+            ScrapePriority.INTERACTIVE, cotas.getInteractiveMinShare(),
+            ScrapePriority.RETRY, cotas.getRetryMinShare(),
+            ScrapePriority.BATCH, cotas.getBatchMinShare()
+        ), totalBrowsers::get);
+
+        Gauge.builder("scraping.browser.pool.size", totalBrowsers, AtomicInteger::get)
+            .description("Browsers existentes no pool (incluindo em criação)")
+            .register(meterRegistry);
+        Gauge.builder("scraping.browser.processes", processos, Map::size)
+            .description("Processos Chromium em execução")
+            .register(meterRegistry);
+        Gauge.builder("scraping.browser.pool.available", browserPool, BrowserSlotQueue::livres)
+            .description("Browsers livres no pool")
+            .register(meterRegistry);
+        for (ScrapePriority prioridade : ScrapePriority.values()) {
+            Gauge.builder("scraping.browser.pool.waiters", browserPool, q -> q.aguardando(prioridade))
+                .description("Requisições aguardando um browser")
+                .tag("prioridade", prioridade.tag())
+                .register(meterRegistry);
+            Gauge.builder("scraping.browser.pool.in.use", browserPool, q -> q.emUso(prioridade))
+                .description("Browsers em uso por classe de prioridade")
+                .tag("prioridade", prioridade.tag())
+                .register(meterRegistry);
+        }
+
+        this.browsersCriados = Counter.builder("scraping.browser.pool.launched")
+            .description("Browsers criados")
+            .register(meterRegistry);
+        this.browsersRetirados = Counter.builder("scraping.browser.pool.retired")
+            .description("Browsers encerrados por ociosidade")
+            .register(meterRegistry);
+    }
+
+    private Timer acquireWaitTimer(ScrapePriority prioridade, String resultado) {
+        return Timer.builder("scraping.browser.acquire.wait")
+            .description("Tempo de espera para obter um browser do pool")
+            .tag("prioridade", prioridade.tag())
+            .tag("resultado", resultado)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
     }
 
+    /**
+     * Cria os poolSize browsers iniciais em paralelo e retorna quando
+     * minReadyOnStart deles estão no pool; os demais entram em background.
+     * Falhas individuais só encolhem o pool, que volta a crescer sob demanda.
+     * A inicialização falha apenas se o mínimo não tem mais como ser atingido.
+     */
     @PostConstruct
     public void init() {
-        log.info("Inicializando pool de {} browsers...", properties.getBrowser().getPoolSize());
-        
+        ScrapingProperties.Browser config = properties.getBrowser();
+        limiteRigido = calcularLimiteRigido();
+        int inicial = Math.max(config.getMinPoolSize(), Math.min(config.getPoolSize(), limiteRigido));
+        int minimo = Math.min(inicial, Math.max(0, config.getMinReadyOnStart()));
+
+        log.info("Inicializando pool de {} browsers em paralelo (pronto com {}, mín {}, máx {}, {} contextos por processo)...",
+            inicial, minimo, config.getMinPoolSize(), limiteRigido, config.getContextsPerBrowser());
+
+        long inicio = System.nanoTime();
+        CompletableFuture<Void> minimoPronto = new CompletableFuture<>();
+        AtomicInteger prontos = new AtomicInteger();
+        AtomicInteger falhas = new AtomicInteger();
+        if (minimo == 0) {
+            minimoPronto.complete(null);
+        }
+
+        totalBrowsers.addAndGet(inicial);
+        browsersIniciando.addAndGet(inicial);
+        for (int i = 0; i < inicial; i++) {
+            launcher.execute(() -> {
+                try {
+                    BrowserInstance instance = createBrowserInstance(proximoId.getAndIncrement());
+                    adicionarAoPool(instance);
+                    int n = prontos.incrementAndGet();
+                    log.info("Browser {} criado ({}/{})", instance.id(), n, inicial);
+                    if (n == minimo) {
+                        minimoPronto.complete(null);
+                    }
+                } catch (Exception e) {
+                    totalBrowsers.decrementAndGet();
+                    log.error("Erro ao criar browser da inicialização: {}", e.getMessage(), e);
+                    if (falhas.incrementAndGet() == inicial - minimo + 1) {
+                        minimoPronto.completeExceptionally(e);
+                    }
+                } finally {
+                    browsersIniciando.decrementAndGet();
+                    if (prontos.get() + falhas.get() == inicial) {
+                        inicializacaoCompletaMs = registrarInicializacao("completo", inicio);
+                        log.info("Pool de browsers completo: {}/{} criados em {}ms",
+                            prontos.get(), inicial, inicializacaoCompletaMs);
+                    }
+                }
+            });
+        }
+
         try {
-            playwright = Playwright.create();
-
-            List<String> browserArgs = Arrays.asList(
-                "--disable-blink-features=AutomationControlled",
-                "--no-sandbox",
-                "--disable-setuid-sandbox",
-                "--disable-dev-shm-usage",
-                "--disable-accelerated-2d-canvas",
-                "--no-first-run",
-                "--no-zygote",
-                "--disable-gpu",
-                "--disable-web-security",
-                "--allow-running-insecure-content",
-                "--ignore-certificate-errors",
-                "--disable-features=IsolateOrigins,site-per-process",
-                "--disable-background-timer-throttling",
-                "--disable-backgrounding-occluded-windows",
-                "--disable-renderer-backgrounding",
-                "--disable-background-networking",
-                "--disable-breakpad",
-                "--disable-component-extensions-with-background-pages",
-                "--disable-extensions",
-                "--disable-features=TranslateUI,BlinkGenPropertyTrees",
-                "--disable-ipc-flooding-protection",
-                "--disable-hang-monitor",
-                "--disable-popup-blocking",
-                "--disable-prompt-on-repost",
-                "--disable-sync",
-                "--force-color-profile=srgb",
-                "--metrics-recording-only",
-                "--no-default-browser-check",
-                "--password-store=basic",
-                "--use-mock-keychain"
-            );
-            
-            for (int i = 0; i < properties.getBrowser().getPoolSize(); i++) {
-                BrowserInstance instance = createBrowserInstance(i, browserArgs);
-                browserPool.offer(instance);
-                browsersAvailable.incrementAndGet();
-                log.info("Browser {}/{} criado", i + 1, properties.getBrowser().getPoolSize());
+            minimoPronto.join();
+        } catch (CompletionException e) {
+            log.error("Erro ao inicializar pool de browsers", e.getCause());
+            cleanup();
+            throw new ScrapingException("Falha ao inicializar pool de browsers", e.getCause());
+        }
+
+        initialized = true;
+        inicializacaoProntaMs = registrarInicializacao("pronto", inicio);
+        log.info("Pool de browsers pronto com {}/{} browsers em {}ms", prontos.get(), inicial, inicializacaoProntaMs);
+    }
+
+    private long registrarInicializacao(String etapa, long inicio) {
+        long decorrido = System.nanoTime() - inicio;
+        Timer.builder("scraping.browser.pool.startup")
+            .description("Tempo até o pool de browsers ficar pronto (mínimo) e completo")
+            .tag("etapa", etapa)
+            .register(meterRegistry)
+            .record(decorrido, TimeUnit.NANOSECONDS);
+        return TimeUnit.NANOSECONDS.toMillis(decorrido);
+    }
+
+    /**
+     * Limite máximo de slots: o menor entre maxPoolSize e o que cabe na memória
+     * do container depois de descontar o heap da JVM. O custo do processo é
+     * rateado entre os contextos que ele hospeda.
+     */
+    private int calcularLimiteRigido() {
+        ScrapingProperties.Browser config = properties.getBrowser();
+
+        long memoriaTotalMb = config.getMemoryLimitMb() > 0
+            ? config.getMemoryLimitMb()
+            : ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getTotalMemorySize() / MB;
+        long heapMb = Runtime.getRuntime().maxMemory() / MB;
+        long disponivelMb = memoriaTotalMb - heapMb - MEMORIA_RESERVADA_MB;
+        int contextos = Math.max(1, config.getContextsPerBrowser());
+        long custoProcessoMb = config.getMemoryPerBrowserMb() + (long) (contextos - 1) * config.getMemoryPerContextMb();
+        int porMemoria = (int) Math.max(0, disponivelMb * contextos / custoProcessoMb);
+
+        log.info("Memória total {}MB, heap {}MB: cabem {} slots", memoriaTotalMb, heapMb, porMemoria);
+        return Math.max(config.getMinPoolSize(), Math.min(config.getMaxPoolSize(), porMemoria));
+    }
+
+    private BrowserInstance createBrowserInstance(int id) {
+        BrowserProcess processo = reservarProcesso();
+
+        Conexao conexao = null;
+        try {
+            Conexao c = conexao = conectar(id, processo);
+            BrowserInstance instance = c.thread().executar(() -> {
+                BrowserContext context = c.browser().newContext(CONTEXT_OPTIONS);
+                context.route("**/*", this::filtrarRecursos);
+                context.addInitScript(ANTI_DETECCAO_SCRIPT);
+
+                Page page = context.newPage();
+                page.setDefaultTimeout(properties.getBrowser().getTimeoutMs());
+                if (properties.getBrowser().isWarmUp()) {
+                    aquecer(id, page);
+                }
+                return new BrowserInstance(id, processo, c, context, page, System.currentTimeMillis(),
+                    new AtomicInteger(), new ConcurrentHashMap<>());
+            });
+
+            browsersCriados.increment();
+            return instance;
+
+        } catch (RuntimeException e) {
+            if (conexao != null) {
+                desconectar(id, conexao);
             }
-            
-            initialized = true;
-            log.info("Pool de browsers inicializado com sucesso");
+            marcarSeDesconectado(processo);
+            liberarProcesso(processo);
+            throw e;
+        }
+    }
 
+    /**
+     * Conexão do slot com o processo: a do próprio processo, ou um Playwright
+     * novo ligado a ele por CDP, numa thread só do slot.
+     */
+    private Conexao conectar(int id, BrowserProcess processo) {
+        if (processo.endpointCdp() == null) {
+            return new Conexao(processo.thread(), processo.playwright(), processo.browser(), false);
+        }
+
+        BrowserThread thread = new BrowserThread("playwright-" + processo.id() + "-" + id);
+        try {
+            return thread.executar(() -> {
+                Playwright playwright = Playwright.create();
+                try {
+                    Browser browser = playwright.chromium().connectOverCDP(processo.endpointCdp());
+                    return new Conexao(thread, playwright, browser, true);
+                } catch (RuntimeException e) {
+                    playwright.close();
+                    throw e;
+                }
+            });
+        } catch (RuntimeException e) {
+            thread.encerrar();
+            throw e;
+        }
+    }
+
+    /**
+     * Fecha a conexão própria do slot; o processo Chromium continua.
+     */
+    private void desconectar(int id, Conexao conexao) {
+        if (!conexao.propria()) {
+            return;
+        }
+        try {
+            conexao.thread().executar(() -> conexao.playwright().close());
         } catch (Exception e) {
-            log.error("Erro ao inicializar pool de browsers", e);
-            throw new ScrapingException("Falha ao inicializar pool de browsers", e);
+            log.warn("Erro ao fechar a conexão do browser {}", id, e);
+        } finally {
+            conexao.thread().encerrar();
         }
     }
-    
-    private BrowserInstance createBrowserInstance(int id, List<String> browserArgs) {
-        Browser browser = playwright.chromium().launch(
-            new BrowserType.LaunchOptions()
-                .setHeadless(properties.getBrowser().isHeadless())
-                .setArgs(browserArgs)
-        );
-        
-        BrowserContext context = browser.newContext(
-            new Browser.NewContextOptions()
-                .setViewportSize(800, 600)
-                .setUserAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36")
-                .setIgnoreHTTPSErrors(true)
-                .setJavaScriptEnabled(true)
-                .setBypassCSP(true)
-        );
-        
-        context.route("**/*", route -> {
-            String resourceType = route.request().resourceType();
-            if (List.of("image", "stylesheet", "font", "media").contains(resourceType)) {
-                route.abort();
-            } else {
-                route.resume();
+
+    /**
+     * Depois de uma falha no processo: o evento de desconexão só chega quando
+     * a thread do processo volta a falar com o driver, então a checagem é
+     * feita nela.
+     */
+    private void marcarSeDesconectado(BrowserProcess processo) {
+        try {
+            if (!processo.thread().executar(() -> processo.browser().isConnected())) {
+                processo.desconectado().set(true);
             }
-        });
-        
-        // Remove propriedades de automação (anti-detecção)
-        context.addInitScript("""
-            Object.defineProperty(navigator, 'webdriver', {
-                get: () => undefined
+        } catch (RuntimeException e) {
+            processo.desconectado().set(true);
+        }
+    }
+
+    /**
+     * Reserva um contexto em um processo com capacidade livre, iniciando
+     * um novo processo Chromium quando todos estão cheios.
+     *
+     * O launch acontece fora do lock, então vários processos sobem em paralelo.
+     * Enquanto um processo sobe, as reservas seguintes esperam por ele até
+     * completar a sua capacidade; se o launch falha, todas falham. Processos
+     * desconectados (Chromium que caiu) saem da lista e não recebem contextos.
+     */
+    private BrowserProcess reservarProcesso() {
+        int capacidade = Math.max(1, properties.getBrowser().getContextsPerBrowser());
+
+        ProcessoIniciando aguardado = null;
+        ProcessoIniciando novo = null;
+        // ReentrantLock e não synchronized: quem espera um launch não deve prender o carrier
+        processosLock.lock();
+        try {
+            for (BrowserProcess processo : processos.values()) {
+                if (processo.desconectado().get()) {
+                    // Os slots restantes dele falham e são reciclados; o processo
+                    // é encerrado quando o último liberar o seu contexto
+                    processos.remove(processo.id());
+                    log.warn("Processo Chromium {} desconectado, substituindo", processo.id());
+                    continue;
+                }
+                if (processo.contextos().get() < capacidade) {
+                    processo.contextos().incrementAndGet();
+                    return processo;
+                }
+            }
+            for (ProcessoIniciando candidato : processosIniciando.values()) {
+                if (candidato.reservas().get() < capacidade) {
+                    candidato.reservas().incrementAndGet();
+                    aguardado = candidato;
+                    break;
+                }
+            }
+            if (aguardado == null) {
+                novo = new ProcessoIniciando(proximoProcessoId.getAndIncrement(),
+                    new CompletableFuture<>(), new AtomicInteger(1));
+                processosIniciando.put(novo.id(), novo);
+            }
+        } finally {
+            processosLock.unlock();
+        }
+
+        if (novo != null) {
+            return iniciarProcesso(novo);
+        }
+        try {
+            return aguardado.processo().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new ScrapingException("Falha ao iniciar processo Chromium", e.getCause());
+        }
+    }
+
+    /**
+     * Sobe o processo registrado em processosIniciando e o move para processos
+     * com os contextos reservados enquanto subia.
+     */
+    private BrowserProcess iniciarProcesso(ProcessoIniciando iniciando) {
+        int id = iniciando.id();
+        BrowserThread thread = new BrowserThread("playwright-" + id);
+        BrowserProcess processo;
+        try {
+            processo = thread.executar(() -> {
+                // Com mais de um contexto, cada slot se conecta ao processo pela porta de depuração
+                List<String> args = new ArrayList<>(BROWSER_ARGS);
+                String endpointCdp = null;
+                if (properties.getBrowser().getContextsPerBrowser() > 1) {
+                    int porta = portaLivre();
+                    args.add("--remote-debugging-address=127.0.0.1");
+                    args.add("--remote-debugging-port=" + porta);
+                    endpointCdp = "http://127.0.0.1:" + porta;
+                }
+
+                Playwright playwright = Playwright.create();
+                try {
+                    Browser browser = playwright.chromium().launch(
+                        new BrowserType.LaunchOptions()
+                            .setHeadless(properties.getBrowser().isHeadless())
+                            .setArgs(args)
+                    );
+                    AtomicBoolean desconectado = new AtomicBoolean();
+                    browser.onDisconnected(b -> desconectado.set(true));
+                    return new BrowserProcess(id, playwright, browser, thread, new AtomicInteger(), desconectado,
+                        endpointCdp);
+                } catch (RuntimeException e) {
+                    playwright.close();
+                    throw e;
+                }
             });
-            
-            window.chrome = {
-                runtime: {}
-            };
-        """);
-        
-        Page page = context.newPage();
-        page.setDefaultTimeout(properties.getBrowser().getTimeoutMs());
-        
-        return new BrowserInstance(id, browser, context, page);
-    }
-    
+        } catch (RuntimeException e) {
+            thread.encerrar();
+            processosLock.lock();
+            try {
+                processosIniciando.remove(id);
+            } finally {
+                processosLock.unlock();
+            }
+            iniciando.processo().completeExceptionally(e);
+            throw e;
+        }
+
+        processosLock.lock();
+        try {
+            // Depois de sair de processosIniciando, ninguém mais reserva nele
+            processosIniciando.remove(id);
+            processo.contextos().set(iniciando.reservas().get());
+            processos.put(id, processo);
+        } finally {
+            processosLock.unlock();
+        }
+        iniciando.processo().complete(processo);
+        log.info("Processo Chromium {} iniciado", id);
+        return processo;
+    }
+
+    private static int portaLivre() {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
-     * Obtém um browser do pool. Bloqueia até que um esteja disponível.
+     * Libera o contexto reservado e encerra o processo quando não resta nenhum.
+     */
+    private void liberarProcesso(BrowserProcess processo) {
+        processosLock.lock();
+        try {
+            if (processo.contextos().decrementAndGet() > 0) {
+                return;
+            }
+            processos.remove(processo.id());
+        } finally {
+            processosLock.unlock();
+        }
+
+        try {
+            processo.thread().executar(() -> {
+                processo.browser().close();
+                processo.playwright().close();
+            });
+            log.info("Processo Chromium {} encerrado", processo.id());
+        } catch (Exception e) {
+            log.warn("Erro ao fechar processo Chromium {}", processo.id(), e);
+        } finally {
+            processo.thread().encerrar();
+        }
+    }
+
+    private void filtrarRecursos(Route route) {
+        String tipo = route.request().resourceType();
+        if (RECURSOS_BLOQUEADOS.contains(tipo)) {
+            route.abort();
+        } else if ("script".equals(tipo) && portalScriptCache.isAtivo()) {
+            portalScriptCache.servir(route);
+        } else {
+            route.resume();
+        }
+    }
+
+    /**
+     * Abre conexão (DNS, TCP e TLS) com os portais mais usados no momento, sem
+     * requisição nenhuma a eles. Slots novos costumam nascer de uma expansão
+     * com requisições aguardando, então a conexão é usada em seguida.
+     */
+    private void aquecer(int id, Page page) {
+        long janela = TimeUnit.MILLISECONDS.toNanos(properties.getBrowser().getAffinityWindowMs());
+        long agora = System.nanoTime();
+        List<String> origens = origensRecentes.entrySet().stream()
+            .filter(e -> agora - e.getValue() < janela)
+            .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+            .limit(MAX_ORIGENS_AQUECIMENTO)
+            .map(Map.Entry::getKey)
+            .toList();
+        if (origens.isEmpty()) {
+            return;
+        }
+
+        StringBuilder html = new StringBuilder("<html><head>");
+        for (String origem : origens) {
+            html.append("<link rel=\"dns-prefetch\" href=\"").append(origem).append("\">")
+                .append("<link rel=\"preconnect\" href=\"").append(origem).append("\">");
+        }
+        html.append("</head></html>");
+
+        try {
+            page.setContent(html.toString(), new Page.SetContentOptions()
+                .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
+                .setTimeout(properties.getBrowser().getHealthCheckTimeoutMs()));
+            log.debug("Browser {} aquecido para {}", id, origens);
+        } catch (Exception e) {
+            log.debug("Falha ao aquecer browser {}: {}", id, e.getMessage());
+        }
+    }
+
+    private void adicionarAoPool(BrowserInstance instance) {
+        instancias.put(instance.id(), instance);
+        ociosoDesde.put(instance.id(), System.currentTimeMillis());
+        browserPool.offer(instance);
+    }
+
+    /**
+     * Obtém um browser do pool como requisição interativa.
      */
     public BrowserInstance acquireBrowser(long timeoutSeconds) {
+        return acquireBrowser(timeoutSeconds, AcquireRequest.interactive());
+    }
+
+    /**
+     * Obtém um browser do pool. Bloqueia até que um esteja disponível.
+     * Se não houver browser livre, solicita a criação de um novo em background.
+     * Slots que não passam na validação rápida são reciclados e a busca continua.
+     */
+    public BrowserInstance acquireBrowser(long timeoutSeconds, AcquireRequest request) {
+        return acquireBrowser(timeoutSeconds, request, null);
+    }
+
+    /**
+     * Como {@link #acquireBrowser(long, AcquireRequest)}, preferindo um slot
+     * livre aquecido para o portal de destino.
+     *
+     * @param afinidade destino da navegação, ou null
+     */
+    public BrowserInstance acquireBrowser(long timeoutSeconds, AcquireRequest request, Afinidade afinidade) {
         if (!initialized) {
             throw new ScrapingException("Pool de browsers não inicializado");
         }
-        
-        try {
-            BrowserInstance instance = browserPool.poll(timeoutSeconds, TimeUnit.SECONDS);
+
+        long inicio = System.nanoTime();
+        long prazo = inicio + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+
+        while (true) {
+            BrowserInstance instance;
+            try {
+                instance = browserPool.poll(request, preferencia(afinidade), prazo, this::talvezExpandir);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ScrapingException("Interrompido ao aguardar browser", e);
+            }
+
             if (instance == null) {
+                acquireWaitTimer(request.prioridade(), "timeout").record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
                 throw new ScrapingException("Timeout ao aguardar browser disponível no pool");
             }
-            browsersAvailable.decrementAndGet();
-            log.debug("✓ Browser {} obtido do pool", instance.id());
+
+            String motivo = motivoReciclagem(instance);
+            if (motivo != null) {
+                reciclar(instance, motivo);
+                continue;
+            }
+
+            acquireWaitTimer(request.prioridade(), "sucesso").record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            instance.usos().incrementAndGet();
+            if (afinidade != null) {
+                registrarAfinidade(instance, afinidade);
+            }
+            log.debug("✓ Browser {} obtido do pool ({}, tenant {})", instance.id(), request.prioridade().tag(), request.tenant());
             return instance;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new ScrapingException("Interrompido ao aguardar browser", e);
         }
     }
-    
+
+    private Predicate<BrowserInstance> preferencia(Afinidade afinidade) {
+        if (afinidade == null) {
+            return null;
+        }
+        long janela = TimeUnit.MILLISECONDS.toNanos(properties.getBrowser().getAffinityWindowMs());
+        return instance -> instance.aquecidoPara(afinidade.origem(), janela);
+    }
+
+    private void registrarAfinidade(BrowserInstance instance, Afinidade afinidade) {
+        long janela = TimeUnit.MILLISECONDS.toNanos(properties.getBrowser().getAffinityWindowMs());
+        boolean aquecido = instance.aquecidoPara(afinidade.origem(), janela);
+        String uf = afinidade.uf() != null ? afinidade.uf() : "desconhecida";
+
+        Counter.builder("scraping.browser.affinity")
+            .description("Slots obtidos já aquecidos (ou não) para o portal de destino")
+            .tag("uf", uf)
+            .tag("resultado", aquecido ? "aquecido" : "frio")
+            .register(meterRegistry)
+            .increment();
+        afinidadePorUf.computeIfAbsent(uf, k -> new AtomicLong[] {new AtomicLong(), new AtomicLong()})
+            [aquecido ? 0 : 1].incrementAndGet();
+
+        long agora = System.nanoTime();
+        instance.aquecimento().put(afinidade.origem(), agora);
+        origensRecentes.put(afinidade.origem(), agora);
+    }
+
+    /**
+     * Cria browsers em background enquanto houver mais requisições aguardando
+     * do que browsers sendo criados, respeitando o limite rígido.
+     */
+    private void talvezExpandir() {
+        while (browsersIniciando.get() < browserPool.aguardando()) {
+            int atual = totalBrowsers.get();
+            if (atual >= limiteRigido) {
+                return;
+            }
+            if (!totalBrowsers.compareAndSet(atual, atual + 1)) {
+                continue;
+            }
+
+            browsersIniciando.incrementAndGet();
+            launcher.execute(() -> {
+                try {
+                    BrowserInstance instance = createBrowserInstance(proximoId.getAndIncrement());
+                    adicionarAoPool(instance);
+                    log.info("↑ Pool expandido: browser {} criado ({} no total)", instance.id(), totalBrowsers.get());
+                } catch (Exception e) {
+                    totalBrowsers.decrementAndGet();
+                    log.error("Erro ao expandir pool de browsers: {}", e.getMessage(), e);
+                } finally {
+                    browsersIniciando.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * Atende o acquire do scraping da chave (em espera ou ainda por vir) pelo
+     * menos na classe dada: quem se junta a um scraping em andamento não deve
+     * esperar na classe de quem o iniciou. Vale até {@link #encerrarPrioridade}.
+     */
+    public void elevarPrioridade(String chave, ScrapePriority prioridade) {
+        browserPool.elevar(chave, prioridade);
+    }
+
+    public void encerrarPrioridade(String chave) {
+        browserPool.encerrar(chave);
+    }
+
     /**
-     * Retorna um browser ao pool após uso.
+     * Retorna um browser ao pool após uso. O slot é resetado para about:blank e
+     * validado; se estiver comprometido ou tiver atingido o limite de uso/idade,
+     * é reciclado em vez de voltar para a fila.
      */
     public void releaseBrowser(BrowserInstance instance) {
         if (instance != null) {
+            browserPool.fimDeUso(instance);
             try {
+                String motivo = validarNaDevolucao(instance);
+                if (motivo != null) {
+                    reciclar(instance, motivo);
+                    return;
+                }
+
+                ociosoDesde.put(instance.id(), System.currentTimeMillis());
                 browserPool.offer(instance);
-                browsersAvailable.incrementAndGet();
                 log.debug("✓ Browser {} retornado ao pool", instance.id());
             } catch (Exception e) {
                 log.warn("⚠ Erro ao retornar browser {} ao pool", instance.id(), e);
+                reciclar(instance, "erro_devolucao");
             }
         }
     }
-    
-    public int getAvailableCount() {
-        return browsersAvailable.get();
+
+    /**
+     * Validação rápida, sem navegação. O estado da conexão e da página é lido
+     * na thread do slot, como qualquer chamada ao Playwright; o slot está
+     * livre, então ela não espera o scraping de outro slot.
+     *
+     * @return motivo da reciclagem, ou null se o slot pode ser usado
+     */
+    private String motivoReciclagem(BrowserInstance instance) {
+        ScrapingProperties.Browser config = properties.getBrowser();
+
+        if (instance.processo().desconectado().get()) {
+            return "browser_desconectado";
+        }
+        String estado;
+        try {
+            estado = instance.executar(() -> {
+                if (!instance.browser().isConnected()) {
+                    return "browser_desconectado";
+                }
+                return instance.page().isClosed() ? "pagina_fechada" : null;
+            });
+        } catch (RuntimeException e) {
+            // Thread do slot já encerrada
+            estado = "browser_desconectado";
+        }
+        if (estado != null) {
+            return estado;
+        }
+        if (config.getMaxUses() > 0 && instance.usos().get() >= config.getMaxUses()) {
+            return "usos";
+        }
+        if (config.getMaxAgeMinutes() > 0
+                && System.currentTimeMillis() - instance.criadoEm() >= TimeUnit.MINUTES.toMillis(config.getMaxAgeMinutes())) {
+            return "idade";
+        }
+        return null;
     }
-    
-    public int getPoolSize() {
-        return properties.getBrowser().getPoolSize();
+
+    /**
+     * Validação completa na devolução: reseta a página e mede o heap JS via CDP.
+     */
+    private String validarNaDevolucao(BrowserInstance instance) {
+        String motivo = motivoReciclagem(instance);
+        if (motivo != null) {
+            return motivo;
+        }
+
+        return instance.executar(() -> resetarPagina(instance));
     }
-    
-    @PreDestroy
-    public void cleanup() {
-        log.info("Encerrando aplicação...");
-        log.info("Fechando {} browsers...", properties.getBrowser().getPoolSize());
-        
-        while (!browserPool.isEmpty()) {
+
+    /**
+     * Na thread do Playwright do slot.
+     */
+    private String resetarPagina(BrowserInstance instance) {
+        ScrapingProperties.Browser config = properties.getBrowser();
+        try {
+            instance.page().navigate("about:blank", new Page.NavigateOptions()
+                .setTimeout(config.getHealthCheckTimeoutMs()));
+        } catch (Exception e) {
+            log.warn("Browser {} não respondeu ao reset: {}", instance.id(), e.getMessage());
+            return "reset_falhou";
+        }
+
+        if (config.getMaxHeapMb() > 0) {
+            CDPSession cdp = null;
             try {
-                BrowserInstance instance = browserPool.poll();
-                if (instance != null) {
-                    instance.page().close();
-                    instance.context().close();
-                    instance.browser().close();
-                    log.info("Browser {} fechado", instance.id());
+                cdp = instance.context().newCDPSession(instance.page());
+                JsonObject heap = cdp.send("Runtime.getHeapUsage");
+                long usadoMb = heap.get("usedSize").getAsLong() / MB;
+                if (usadoMb > config.getMaxHeapMb()) {
+                    log.info("Browser {} com heap de {}MB (limite {}MB)", instance.id(), usadoMb, config.getMaxHeapMb());
+                    return "heap";
+                }
+            } catch (Exception e) {
+                log.warn("Browser {} não respondeu à consulta de heap: {}", instance.id(), e.getMessage());
+                return "cdp_falhou";
+            } finally {
+                if (cdp != null) {
+                    try {
+                        cdp.detach();
+                    } catch (Exception ignored) {
+                        // sessão já encerrada junto com a página
+                    }
                 }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Descarta o slot e cria um substituto em background. O total do pool
+     * não muda; se o substituto falhar, o pool encolhe e volta a crescer sob demanda.
+     */
+    private void reciclar(BrowserInstance instance, String motivo) {
+        browserPool.fimDeUso(instance);
+        log.info("♻ Reciclando browser {} (motivo: {}, {} usos)", instance.id(), motivo, instance.usos().get());
+        Counter.builder("scraping.browser.recycled")
+            .description("Slots reciclados por motivo")
+            .tag("motivo", motivo)
+            .register(meterRegistry)
+            .increment();
+
+        launcher.execute(() -> {
+            fechar(instance);
+            try {
+                BrowserInstance substituto = createBrowserInstance(proximoId.getAndIncrement());
+                adicionarAoPool(substituto);
+                log.debug("Browser {} criado em substituição ao {}", substituto.id(), instance.id());
             } catch (Exception e) {
-                log.warn("Erro ao fechar browser", e);
+                totalBrowsers.decrementAndGet();
+                log.error("Erro ao substituir browser {}: {}", instance.id(), e.getMessage(), e);
             }
+        });
+    }
+
+    /**
+     * Encerra browsers ociosos além do mínimo. Como a devolução é LIFO,
+     * os browsers menos usados ficam no fim da fila.
+     */
+    @Scheduled(fixedDelay = 30000, initialDelay = 30000)
+    public void retirarOciosos() {
+        long agora = System.currentTimeMillis();
+        long idleTimeoutMs = properties.getBrowser().getIdleTimeoutMs();
+
+        BrowserInstance candidato;
+        while (totalBrowsers.get() > properties.getBrowser().getMinPoolSize()
+                && (candidato = browserPool.removerOciosoMaisAntigo(
+                    c -> agora - ociosoDesde.getOrDefault(c.id(), agora) > idleTimeoutMs)) != null) {
+
+            totalBrowsers.decrementAndGet();
+            fechar(candidato);
+            browsersRetirados.increment();
+            log.info("↓ Browser {} encerrado por ociosidade ({} no total)", candidato.id(), totalBrowsers.get());
+        }
+    }
+
+    private void fechar(BrowserInstance instance) {
+        instancias.remove(instance.id());
+        ociosoDesde.remove(instance.id());
+        try {
+            instance.executar(() -> {
+                instance.page().close();
+                instance.context().close();
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Erro ao fechar browser {}", instance.id(), e);
+        }
+        desconectar(instance.id(), instance.conexao());
+        liberarProcesso(instance.processo());
+    }
+
+    public int getAvailableCount() {
+        return browserPool.livres();
+    }
+
+    public int getPoolSize() {
+        return totalBrowsers.get();
+    }
+
+    public int getMaxPoolSize() {
+        return limiteRigido;
+    }
+
+    public int getProcessCount() {
+        return processos.size();
+    }
+
+    public int getWaitingCount() {
+        return browserPool.aguardando();
+    }
+
+    /**
+     * Tempos da inicialização do pool, em ms; -1 enquanto a etapa não terminou.
+     */
+    public Map<String, Object> getStartupStats() {
+        return Map.of(
+            "minimoPronto", properties.getBrowser().getMinReadyOnStart(),
+            "prontoMs", inicializacaoProntaMs,
+            "completoMs", inicializacaoCompletaMs
+        );
+    }
+
+    /**
+     * Requisições aguardando e slots em uso por classe de prioridade.
+     */
+    public Map<String, Object> getPriorityStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (ScrapePriority prioridade : ScrapePriority.values()) {
+            stats.put(prioridade.tag(), Map.of(
+                "aguardando", browserPool.aguardando(prioridade),
+                "emUso", browserPool.emUso(prioridade)
+            ));
+        }
+        return stats;
+    }
+
+    /**
+     * Acquires aquecidos e frios por UF, e a taxa de acerto da afinidade.
+     */
+    public Map<String, Object> getAffinityStats() {
+        Map<String, Object> porUf = new TreeMap<>();
+        long aquecidos = 0;
+        long frios = 0;
+        for (Map.Entry<String, AtomicLong[]> e : afinidadePorUf.entrySet()) {
+            long a = e.getValue()[0].get();
+            long f = e.getValue()[1].get();
+            porUf.put(e.getKey(), Map.of("aquecidos", a, "frios", f));
+            aquecidos += a;
+            frios += f;
         }
-        
-        if (playwright != null) {
-            playwright.close();
-            log.info("Playwright encerrado");
+        long total = aquecidos + frios;
+        return Map.of(
+            "aquecidos", aquecidos,
+            "frios", frios,
+            "hitRate", String.format("%.2f%%", total > 0 ? aquecidos * 100.0 / total : 0),
+            "porUf", porUf,
+            "scripts", portalScriptCache.getStats()
+        );
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        log.info("Encerrando aplicação...");
+        log.info("Fechando {} browsers...", instancias.size());
+
+        launcher.shutdownNow();
+        browserPool.clear();
+
+        for (BrowserInstance instance : List.copyOf(instancias.values())) {
+            fechar(instance);
+            log.info("Browser {} fechado", instance.id());
         }
 
         log.info("Cleanup completo");
@@ -0,0 +1,366 @@
+package br.com.poupacompra.scraping.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+
+import br.com.poupacompra.scraping.service.BrowserPoolService.AcquireRequest;
+import br.com.poupacompra.scraping.service.BrowserPoolService.BrowserInstance;
+
+/**
+ * Fila de slots livres e de requisições aguardando, com prioridade.
+ *
+ * Slots devolvidos vão direto para a próxima requisição escolhida:
+ * primeiro as classes que estão abaixo da sua cota mínima reservada,
+ * depois por precedência (INTERACTIVE, RETRY, BATCH). Dentro de uma classe,
+ * os tenants são atendidos em round-robin, em FIFO por tenant.
+ * Sem ninguém aguardando, o slot volta para a pilha de livres (LIFO).
+ *
+ * Ao pegar um slot livre, a requisição prefere o mais recente que satisfaça a
+ * sua preferência (ex.: aquecido para o portal da UF). Quem aguarda recebe o
+ * primeiro slot devolvido, qualquer que seja: a ordem justa vem antes da afinidade.
+ *
+ * A classe de uma requisição com chave pode ser elevada enquanto ela aguarda
+ * (ou antes de chegar), quando um scraping mais prioritário se junta ao dela.
+ */
+public class BrowserSlotQueue {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<BrowserInstance> livres = new ArrayDeque<>();
+    private final Map<ScrapePriority, LinkedHashMap<String, Deque<Espera>>> filas = new EnumMap<>(ScrapePriority.class);
+    private final Map<ScrapePriority, Integer> aguardandoPorClasse = new EnumMap<>(ScrapePriority.class);
+    private final Map<ScrapePriority, Integer> emUsoPorClasse = new EnumMap<>(ScrapePriority.class);
+    private final Map<Integer, ScrapePriority> classeDoSlot = new ConcurrentHashMap<>();
+    private final Map<String, ScrapePriority> elevadas = new HashMap<>();
+    private final Map<ScrapePriority, Double> cotas;
+    private final IntSupplier totalSlots;
+    private int aguardando;
+
+    /**
+     * Requisição aguardando. O request muda quando a classe é elevada; só é
+     * lido e alterado com o lock.
+     */
+    private static final class Espera {
+        private AcquireRequest request;
+        private final CompletableFuture<BrowserInstance> slot = new CompletableFuture<>();
+
+        private Espera(AcquireRequest request) {
+            this.request = request;
+        }
+
+        private AcquireRequest request() {
+            return request;
+        }
+
+        private CompletableFuture<BrowserInstance> slot() {
+            return slot;
+        }
+    }
+
+    /**
+     * @param cotas fração mínima dos slots reservada para cada classe
+     * @param totalSlots total atual de slots do pool
+     */
+    public BrowserSlotQueue(Map<ScrapePriority, Double> cotas, IntSupplier totalSlots) {
+        this.cotas = cotas;
+        this.totalSlots = totalSlots;
+        for (ScrapePriority prioridade : ScrapePriority.values()) {
+            filas.put(prioridade, new LinkedHashMap<>());
+            aguardandoPorClasse.put(prioridade, 0);
+            emUsoPorClasse.put(prioridade, 0);
+        }
+    }
+
+    /**
+     * Obtém um slot livre ou aguarda até o prazo.
+     *
+     * @param preferido slots livres preferidos, ou null se qualquer um serve
+     * @param aoAguardar executado uma vez se a requisição precisar esperar
+     * @return o slot, ou null se o prazo expirou
+     */
+    public BrowserInstance poll(AcquireRequest request, Predicate<BrowserInstance> preferido, long prazoNanos,
+            Runnable aoAguardar) throws InterruptedException {
+        Espera espera;
+
+        lock.lock();
+        try {
+            request = efetiva(request);
+            if (aguardando == 0 && !livres.isEmpty()) {
+                BrowserInstance instance = retirarLivre(preferido);
+                marcarEmUso(instance, request.prioridade());
+                return instance;
+            }
+
+            espera = new Espera(request);
+            enfileirar(espera);
+        } finally {
+            lock.unlock();
+        }
+
+        aoAguardar.run();
+
+        try {
+            return espera.slot().get(Math.max(0, prazoNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            lock.lock();
+            try {
+                if (!espera.slot().isDone()) {
+                    removerEspera(espera);
+                    if (e instanceof InterruptedException interrupted) {
+                        throw interrupted;
+                    }
+                    return null;
+                }
+            } finally {
+                lock.unlock();
+            }
+            // Recebeu um slot no mesmo instante em que expirou
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return espera.slot().join();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private AcquireRequest efetiva(AcquireRequest request) {
+        ScrapePriority elevada = request.chave() != null ? elevadas.get(request.chave()) : null;
+        return elevada != null && elevada.precede(request.prioridade()) ? request.comPrioridade(elevada) : request;
+    }
+
+    private void enfileirar(Espera espera) {
+        ScrapePriority prioridade = espera.request().prioridade();
+        filas.get(prioridade)
+            .computeIfAbsent(espera.request().tenant(), t -> new ArrayDeque<>())
+            .addLast(espera);
+        aguardandoPorClasse.merge(prioridade, 1, Integer::sum);
+        aguardando++;
+    }
+
+    /**
+     * Passa as requisições da chave para a classe dada, se ela for mais
+     * prioritária; as que aguardam vão para o fim da fila do tenant na nova
+     * classe. Requisições da chave que chegarem depois já entram nela.
+     */
+    public void elevar(String chave, ScrapePriority prioridade) {
+        lock.lock();
+        try {
+            elevadas.merge(chave, prioridade, (atual, nova) -> nova.precede(atual) ? nova : atual);
+
+            List<Espera> movidas = new ArrayList<>();
+            for (ScrapePriority classe : ScrapePriority.values()) {
+                if (!prioridade.precede(classe)) {
+                    continue;
+                }
+                for (Deque<Espera> fila : filas.get(classe).values()) {
+                    for (Espera espera : fila) {
+                        if (chave.equals(espera.request().chave())) {
+                            movidas.add(espera);
+                        }
+                    }
+                }
+            }
+            for (Espera espera : movidas) {
+                removerEspera(espera);
+                espera.request = espera.request().comPrioridade(prioridade);
+                enfileirar(espera);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Descarta a elevação da chave (o scraping terminou).
+     */
+    public void encerrar(String chave) {
+        lock.lock();
+        try {
+            elevadas.remove(chave);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * O livre mais recente que satisfaz a preferência, ou o topo da pilha.
+     */
+    private BrowserInstance retirarLivre(Predicate<BrowserInstance> preferido) {
+        if (preferido != null) {
+            for (Iterator<BrowserInstance> it = livres.iterator(); it.hasNext();) {
+                BrowserInstance candidato = it.next();
+                if (preferido.test(candidato)) {
+                    it.remove();
+                    return candidato;
+                }
+            }
+        }
+        return livres.pollFirst();
+    }
+
+    /**
+     * Entrega o slot para a próxima requisição aguardando ou o devolve aos livres.
+     */
+    public void offer(BrowserInstance instance) {
+        lock.lock();
+        try {
+            Espera proxima = escolherProxima();
+            if (proxima == null) {
+                livres.offerFirst(instance);
+                return;
+            }
+            marcarEmUso(instance, proxima.request().prioridade());
+            proxima.slot().complete(instance);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * O slot deixou de estar em uso (devolvido, reciclado ou descartado).
+     */
+    public void fimDeUso(BrowserInstance instance) {
+        ScrapePriority prioridade = classeDoSlot.remove(instance.id());
+        if (prioridade != null) {
+            lock.lock();
+            try {
+                emUsoPorClasse.merge(prioridade, -1, Integer::sum);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove o slot livre menos usado recentemente se ele satisfizer a condição.
+     */
+    public BrowserInstance removerOciosoMaisAntigo(Predicate<BrowserInstance> condicao) {
+        lock.lock();
+        try {
+            BrowserInstance candidato = livres.peekLast();
+            if (candidato != null && condicao.test(candidato)) {
+                return livres.pollLast();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Espera escolherProxima() {
+        int total = totalSlots.getAsInt();
+
+        for (ScrapePriority prioridade : ScrapePriority.values()) {
+            int reservados = (int) Math.floor(cotas.getOrDefault(prioridade, 0.0) * total);
+            if (aguardandoPorClasse.get(prioridade) > 0 && emUsoPorClasse.get(prioridade) < reservados) {
+                return proximaDaClasse(prioridade);
+            }
+        }
+
+        for (ScrapePriority prioridade : ScrapePriority.values()) {
+            if (aguardandoPorClasse.get(prioridade) > 0) {
+                return proximaDaClasse(prioridade);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Round-robin entre tenants: o tenant atendido vai para o fim da fila da classe.
+     */
+    private Espera proximaDaClasse(ScrapePriority prioridade) {
+        LinkedHashMap<String, Deque<Espera>> porTenant = filas.get(prioridade);
+        Iterator<Map.Entry<String, Deque<Espera>>> it = porTenant.entrySet().iterator();
+        Map.Entry<String, Deque<Espera>> primeiro = it.next();
+        String tenant = primeiro.getKey();
+        Deque<Espera> fila = primeiro.getValue();
+        it.remove();
+
+        Espera espera = fila.pollFirst();
+        if (!fila.isEmpty()) {
+            porTenant.put(tenant, fila);
+        }
+
+        aguardandoPorClasse.merge(prioridade, -1, Integer::sum);
+        aguardando--;
+        return espera;
+    }
+
+    private void removerEspera(Espera espera) {
+        ScrapePriority prioridade = espera.request().prioridade();
+        LinkedHashMap<String, Deque<Espera>> porTenant = filas.get(prioridade);
+        Deque<Espera> fila = porTenant.get(espera.request().tenant());
+        if (fila != null && fila.remove(espera)) {
+            if (fila.isEmpty()) {
+                porTenant.remove(espera.request().tenant());
+            }
+            aguardandoPorClasse.merge(prioridade, -1, Integer::sum);
+            aguardando--;
+        }
+    }
+
+    private void marcarEmUso(BrowserInstance instance, ScrapePriority prioridade) {
+        classeDoSlot.put(instance.id(), prioridade);
+        emUsoPorClasse.merge(prioridade, 1, Integer::sum);
+    }
+
+    public int livres() {
+        lock.lock();
+        try {
+            return livres.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int aguardando() {
+        lock.lock();
+        try {
+            return aguardando;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int aguardando(ScrapePriority prioridade) {
+        lock.lock();
+        try {
+            return aguardandoPorClasse.get(prioridade);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int emUso(ScrapePriority prioridade) {
+        lock.lock();
+        try {
+            return emUsoPorClasse.get(prioridade);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            livres.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
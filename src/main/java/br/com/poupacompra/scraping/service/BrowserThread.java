@@ -0,0 +1,72 @@
+package br.com.poupacompra.scraping.service;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import br.com.poupacompra.scraping.exception.ScrapingException;
+
+/**
+ * Thread de plataforma dona de uma instância do Playwright e de tudo que ela
+ * criou (processo Chromium ou conexão CDP a ele, contextos, páginas).
+ *
+ * A API síncrona do Playwright não é thread-safe: a conexão com o driver não
+ * tem sincronização nenhuma, e as chamadas bloqueiam lendo o pipe do driver.
+ * Executadas aqui, elas ficam serializadas por instância e nunca prendem o
+ * carrier de uma virtual thread; quem chama só estaciona esperando o Future.
+ */
+public class BrowserThread {
+
+    private final ExecutorService executor;
+    private volatile Thread thread;
+
+    public BrowserThread(String nome) {
+        this.executor = Executors.newSingleThreadExecutor(tarefa -> {
+            Thread t = Thread.ofPlatform().name(nome).daemon(true).unstarted(tarefa);
+            thread = t;
+            return t;
+        });
+    }
+
+    /**
+     * Executa a ação na thread do Playwright e devolve o resultado. Exceções
+     * da ação chegam ao chamador sem embrulho, para manter o tipo (captcha,
+     * nota indisponível, timeout...).
+     */
+    public <T> T executar(Supplier<T> acao) {
+        // Chamada aninhada, já na thread: esperar o Future seria deadlock
+        if (Thread.currentThread() == thread) {
+            return acao.get();
+        }
+
+        Future<T> futuro = executor.submit(acao::get);
+        try {
+            return futuro.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new ScrapingException("Erro na thread do browser", e.getCause());
+        } catch (InterruptedException e) {
+            // A ação em andamento termina sozinha; a devolução do slot entra na fila depois dela
+            Thread.currentThread().interrupt();
+            throw new ScrapingException("Interrompido aguardando a thread do browser", e);
+        }
+    }
+
+    public void executar(Runnable acao) {
+        executar(() -> {
+            acao.run();
+            return null;
+        });
+    }
+
+    public void encerrar() {
+        executor.shutdown();
+    }
+}
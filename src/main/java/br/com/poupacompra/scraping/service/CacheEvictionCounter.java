@@ -0,0 +1,46 @@
+package br.com.poupacompra.scraping.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+
+/**
+ * Conta as remoções automáticas do L1 por causa: tamanho (orçamento de
+ * entradas ou de bytes), expiração ou coleta. Remoções explícitas e
+ * substituições não são despejos e não entram.
+ */
+public class CacheEvictionCounter implements RemovalListener<Object, Object> {
+
+    private final Map<RemovalCause, LongAdder> porCausa = new ConcurrentHashMap<>();
+
+    @Override
+    public void onRemoval(Object chave, Object valor, RemovalCause causa) {
+        if (causa.wasEvicted()) {
+            porCausa.computeIfAbsent(causa, k -> new LongAdder()).increment();
+        }
+    }
+
+    public Map<String, Long> getPorCausa() {
+        Map<String, Long> resultado = new TreeMap<>();
+        for (RemovalCause causa : RemovalCause.values()) {
+            if (causa.wasEvicted()) {
+                LongAdder total = porCausa.get(causa);
+                resultado.put(nome(causa), total != null ? total.sum() : 0L);
+            }
+        }
+        return resultado;
+    }
+
+    private static String nome(RemovalCause causa) {
+        return switch (causa) {
+            case SIZE -> "tamanho";
+            case EXPIRED -> "expiracao";
+            case COLLECTED -> "coletada";
+            default -> causa.name().toLowerCase();
+        };
+    }
+}
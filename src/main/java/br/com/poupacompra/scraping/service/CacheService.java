@@ -1,71 +1,120 @@
 package br.com.poupacompra.scraping.service;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
 
-import org.springframework.cache.CacheManager;
-import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.stereotype.Service;
 
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
 
-import br.com.poupacompra.scraping.config.CacheConfig;
 import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.service.NotaJsonCodec.NotaSerializada;
 
 @Service
 public class CacheService {
-    
-    private final CacheManager cacheManager;
+
+    private final TieredNfeCache nfeCache;
     private final ScrapingProperties properties;
-    
-    public CacheService(CacheManager cacheManager, ScrapingProperties properties) {
-        this.cacheManager = cacheManager;
+    private final NfeCachePolicy nfeCachePolicy;
+    private final CacheEvictionCounter cacheEvictionCounter;
+
+    public CacheService(TieredNfeCache nfeCache, ScrapingProperties properties, NfeCachePolicy nfeCachePolicy,
+            CacheEvictionCounter cacheEvictionCounter) {
+        this.nfeCache = nfeCache;
         this.properties = properties;
+        this.nfeCachePolicy = nfeCachePolicy;
+        this.cacheEvictionCounter = cacheEvictionCounter;
+
+        if (nfeCache.getCompartilhado() != null) {
+            nfeCache.getCompartilhado().aoInvalidar(this::limparLocal);
+        }
     }
-    
+
+    /**
+     * Limpa os caches desta réplica e o compartilhado, e avisa as outras
+     * réplicas para limparem os delas.
+     */
     public long clearCache() {
-        org.springframework.cache.Cache springCache = cacheManager.getCache(CacheConfig.NFE_CACHE);
-        if (springCache instanceof CaffeineCache caffeineCache) {
-            Cache<Object, Object> nativeCache = caffeineCache.getNativeCache();
-            long size = nativeCache.estimatedSize();
-            nativeCache.invalidateAll();
-            return size;
+        long size = limparLocal();
+        SharedNotaStore compartilhado = nfeCache.getCompartilhado();
+        if (compartilhado != null) {
+            size = Math.max(size, compartilhado.clear());
+            compartilhado.publicarInvalidacao();
         }
-        return 0;
+        return size;
     }
-    
-    public Map<String, Object> getCacheStats() {
-        org.springframework.cache.Cache springCache = cacheManager.getCache(CacheConfig.NFE_CACHE);
-        
-        long totalEntries = 0;
-        long hitCount = 0;
-        long missCount = 0;
-        double hitRate = 0;
-        
-        if (springCache instanceof CaffeineCache caffeineCache) {
-            Cache<Object, Object> nativeCache = caffeineCache.getNativeCache();
-            totalEntries = nativeCache.estimatedSize();
-            
-            var stats = nativeCache.stats();
-            hitCount = stats.hitCount();
-            missCount = stats.missCount();
-            hitRate = stats.hitRate();
+
+    private long limparLocal() {
+        long size = getCacheSize();
+        if (nfeCache.getL2() != null) {
+            size = Math.max(size, nfeCache.getL2().clear());
         }
-        
-        return Map.of(
-            "totalEntries", totalEntries,
-            "hitCount", hitCount,
-            "missCount", missCount,
-            "hitRate", String.format("%.2f%%", hitRate * 100),
+        nfeCache.getL1().clear();
+        nfeCachePolicy.limparNegativos();
+        return size;
+    }
+
+    /**
+     * Estatísticas do L1 (Caffeine) no nível raiz, mais as do formato das
+     * entradas em "serializacao", as do disco em "disco" e as do cache entre
+     * réplicas em "compartilhado".
+     */
+    public Map<String, Object> getCacheStats() {
+        Cache<Object, Object> nativeCache = nfeCache.getL1().getNativeCache();
+        var stats = nativeCache.stats();
+
+        Map<String, Object> result = new HashMap<>(Map.of(
+            "totalEntries", nativeCache.estimatedSize(),
+            "hitCount", stats.hitCount(),
+            "missCount", stats.missCount(),
+            "hitRate", String.format("%.2f%%", stats.hitRate() * 100),
             "ttlHours", properties.getCache().getTtlHours(),
+            "refreshAfterHours", properties.getCache().getRefreshAfterHours(),
+            "staleWhileRevalidateHours", properties.getCache().getStaleWhileRevalidateHours(),
             "maxSize", properties.getCache().getMaxSize()
-        );
+        ));
+
+        result.put("memoria", memoria(nativeCache));
+        result.put("politica", nfeCachePolicy.getStats());
+        result.put("serializacao", nfeCache.getCodec().getStats());
+        if (nfeCache.getL2() != null) {
+            result.put("disco", nfeCache.getL2().getStats());
+        }
+        if (nfeCache.getCompartilhado() != null) {
+            result.put("compartilhado", nfeCache.getCompartilhado().getStats());
+        }
+        return result;
     }
-    
-    public long getCacheSize() {
-        org.springframework.cache.Cache springCache = cacheManager.getCache(CacheConfig.NFE_CACHE);
-        if (springCache instanceof CaffeineCache caffeineCache) {
-            return caffeineCache.getNativeCache().estimatedSize();
+
+    /**
+     * Limite em vigor (bytes ou entradas), o quanto dele está ocupado e os despejos por causa.
+     */
+    private Map<String, Object> memoria(Cache<Object, Object> nativeCache) {
+        long orcamentoBytes = properties.getCache().getMaxWeightMb() * 1024L * 1024L;
+        Map<String, Object> memoria = new HashMap<>();
+        memoria.put("modo", orcamentoBytes > 0 ? "bytes" : "entradas");
+        memoria.put("despejos", cacheEvictionCounter.getPorCausa());
+        Optional<Policy.Eviction<Object, Object>> eviction = nativeCache.policy().eviction();
+        eviction.ifPresent(e -> memoria.put("limite", e.getMaximum()));
+        OptionalLong peso = eviction.map(Policy.Eviction::weightedSize).orElse(OptionalLong.empty());
+        // Limitado por entradas, o peso é somado na hora, para dimensionar o orçamento
+        memoria.put("pesoBytes", peso.isPresent() ? peso.getAsLong() : somarPeso(nativeCache));
+        if (orcamentoBytes > 0) {
+            memoria.put("orcamentoBytes", orcamentoBytes);
         }
-        return 0;
+        return memoria;
+    }
+
+    private static long somarPeso(Cache<Object, Object> nativeCache) {
+        return nativeCache.asMap().values().stream()
+            .mapToLong(valor -> valor instanceof NotaSerializada nota ? nota.bytesRetidos() : 0)
+            .sum();
+    }
+
+    public long getCacheSize() {
+        return nfeCache.getL1().getNativeCache().estimatedSize();
     }
 }
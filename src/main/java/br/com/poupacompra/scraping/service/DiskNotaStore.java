@@ -0,0 +1,230 @@
+package br.com.poupacompra.scraping.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.exception.ScrapingException;
+import br.com.poupacompra.scraping.service.NotaBinaryCodec.NotaDatada;
+
+/**
+ * Armazenamento em disco das notas já extraídas (L2 do nfeCache).
+ *
+ * Um arquivo por chave de acesso, no formato do {@link NotaBinaryCodec}, em
+ * subdiretórios pelos dois últimos dígitos da chave. O índice em memória guarda
+ * tamanho e último acesso de cada entrada; quando o total passa de maxBytes,
+ * as entradas menos acessadas são removidas. O último acesso é refletido no
+ * mtime do arquivo para sobreviver a reinícios.
+ */
+public class DiskNotaStore {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskNotaStore.class);
+
+    private static final String EXTENSAO = ".nfe";
+    private static final String TEMPORARIO = ".tmp";
+
+    private final Path diretorio;
+    private final long maxBytes;
+    private final Map<String, Entrada> indice = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final ReentrantLock limpezaLock = new ReentrantLock();
+
+    private record Entrada(long tamanho, long ultimoAcesso) {}
+
+    public DiskNotaStore(Path diretorio, long maxBytes) {
+        this.diretorio = diretorio;
+        this.maxBytes = maxBytes;
+        carregarIndice();
+    }
+
+    private void carregarIndice() {
+        try {
+            Files.createDirectories(diretorio);
+            try (Stream<Path> arquivos = Files.walk(diretorio, 2)) {
+                arquivos.filter(Files::isRegularFile).forEach(p -> {
+                    try {
+                        if (p.getFileName().toString().endsWith(TEMPORARIO)) {
+                            // Gravação interrompida por um reinício
+                            Files.deleteIfExists(p);
+                            return;
+                        }
+                        if (!p.getFileName().toString().endsWith(EXTENSAO)) {
+                            return;
+                        }
+                        String chave = p.getFileName().toString().replace(EXTENSAO, "");
+                        long tamanho = Files.size(p);
+                        indice.put(chave, new Entrada(tamanho, Files.getLastModifiedTime(p).toMillis()));
+                        totalBytes.addAndGet(tamanho);
+                    } catch (IOException e) {
+                        log.warn("Ignorando entrada do cache em disco {}: {}", p, e.getMessage());
+                    }
+                });
+            }
+            log.info("Cache em disco em {}: {} entradas, {} KB", diretorio.toAbsolutePath(), indice.size(), totalBytes.get() / 1024);
+        } catch (IOException e) {
+            throw new ScrapingException("Falha ao abrir cache em disco", e);
+        }
+    }
+
+    public NotaDatada get(String chave) {
+        if (!indice.containsKey(chave)) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        Path arquivo = caminho(chave);
+        try {
+            NotaDatada nota = NotaBinaryCodec.decode(Files.readAllBytes(arquivo));
+            long agora = System.currentTimeMillis();
+            indice.computeIfPresent(chave, (k, e) -> new Entrada(e.tamanho(), agora));
+            Files.setLastModifiedTime(arquivo, FileTime.fromMillis(agora));
+            hits.incrementAndGet();
+            return nota;
+        } catch (NoSuchFileException e) {
+            remover(chave);
+            misses.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            log.warn("Entrada corrompida no cache em disco {}: {}", chave, e.getMessage());
+            evict(chave);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * @param obtidaEm epoch millis em que a nota foi extraída do portal
+     */
+    public void put(String chave, DadosNotaResponseDTO dados, long obtidaEm) {
+        Path arquivo = caminho(chave);
+        try {
+            byte[] bytes = NotaBinaryCodec.encode(dados, obtidaEm);
+            Files.createDirectories(arquivo.getParent());
+            // Um temporário por gravação: gravações concorrentes da mesma chave não se atropelam
+            Path tmp = Files.createTempFile(arquivo.getParent(), arquivo.getFileName().toString(), TEMPORARIO);
+            try {
+                Files.write(tmp, bytes);
+                Files.move(tmp, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+
+            Entrada anterior = indice.put(chave, new Entrada(bytes.length, System.currentTimeMillis()));
+            totalBytes.addAndGet(bytes.length - (anterior != null ? anterior.tamanho() : 0));
+
+            if (totalBytes.get() > maxBytes) {
+                liberarEspaco();
+            }
+        } catch (IOException e) {
+            log.warn("Erro ao gravar nota {} no cache em disco: {}", chave, e.getMessage());
+        }
+    }
+
+    public void evict(String chave) {
+        remover(chave);
+        try {
+            Files.deleteIfExists(caminho(chave));
+        } catch (IOException e) {
+            log.warn("Erro ao remover nota {} do cache em disco: {}", chave, e.getMessage());
+        }
+    }
+
+    public long clear() {
+        long removidas = indice.size();
+        for (String chave : List.copyOf(indice.keySet())) {
+            evict(chave);
+        }
+        return removidas;
+    }
+
+    /**
+     * Chaves mais acessadas recentemente, para pré-carregar o L1 na inicialização.
+     */
+    public List<String> chavesMaisRecentes(int limite) {
+        return indice.entrySet().stream()
+            .sorted(Comparator.comparingLong((Map.Entry<String, Entrada> e) -> e.getValue().ultimoAcesso()).reversed())
+            .limit(limite)
+            .map(Map.Entry::getKey)
+            .toList();
+    }
+
+    /**
+     * Remove as entradas menos acessadas até ficar em 90% do limite. Quem
+     * encontra uma limpeza em andamento segue sem esperar por ela.
+     */
+    private void liberarEspaco() {
+        // ReentrantLock e não synchronized: a limpeza apaga arquivos e prenderia o carrier
+        if (!limpezaLock.tryLock()) {
+            return;
+        }
+        try {
+            reduzir();
+        } finally {
+            limpezaLock.unlock();
+        }
+    }
+
+    private void reduzir() {
+        long alvo = maxBytes * 9 / 10;
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+
+        List<String> candidatas = indice.entrySet().stream()
+            .sorted(Comparator.comparingLong(e -> e.getValue().ultimoAcesso()))
+            .map(Map.Entry::getKey)
+            .toList();
+
+        for (String chave : candidatas) {
+            if (totalBytes.get() <= alvo) {
+                break;
+            }
+            evict(chave);
+            evictions.incrementAndGet();
+        }
+        log.debug("Cache em disco reduzido para {} KB", totalBytes.get() / 1024);
+    }
+
+    private void remover(String chave) {
+        Entrada entrada = indice.remove(chave);
+        if (entrada != null) {
+            totalBytes.addAndGet(-entrada.tamanho());
+        }
+    }
+
+    private Path caminho(String chave) {
+        String nome = chave.replaceAll("[^A-Za-z0-9_-]", "_");
+        String shard = nome.length() >= 2 ? nome.substring(nome.length() - 2) : "_";
+        return diretorio.resolve(shard).resolve(nome + EXTENSAO);
+    }
+
+    public Map<String, Object> getStats() {
+        long total = hits.get() + misses.get();
+        return Map.of(
+            "totalEntries", indice.size(),
+            "sizeBytes", totalBytes.get(),
+            "maxBytes", maxBytes,
+            "hitCount", hits.get(),
+            "missCount", misses.get(),
+            "hitRate", String.format("%.2f%%", total > 0 ? hits.get() * 100.0 / total : 0),
+            "evictionCount", evictions.get()
+        );
+    }
+}
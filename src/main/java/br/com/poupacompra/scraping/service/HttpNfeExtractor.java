@@ -0,0 +1,190 @@
+package br.com.poupacompra.scraping.service;
+
+import java.io.ByteArrayInputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.service.NfceUrlParser.NfceUrl;
+
+/**
+ * Caminho rápido de extração sem browser.
+ *
+ * Faz um GET simples no portal da SEFAZ e, quando o HTML já vem com a nota
+ * renderizada (#totalNota e as linhas de itens), extrai os mesmos campos dos
+ * scripts de page.evaluate usando jsoup. Se a página depender de JavaScript
+ * ou de captcha, retorna vazio e o chamador segue para o pool de browsers.
+ */
+@Service
+public class HttpNfeExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpNfeExtractor.class);
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+
+    private final ScrapingProperties properties;
+    private final NfeDataMapper nfeDataMapper;
+    private final PageCaptureService pageCaptureService;
+    private final ReplayServer replayServer;
+    private final HttpClient httpClient;
+    private final Map<String, UfStats> statsPorUf = new ConcurrentHashMap<>();
+
+    private record UfStats(AtomicLong rapido, AtomicLong fallback, AtomicLong erro) {
+        UfStats() {
+            this(new AtomicLong(), new AtomicLong(), new AtomicLong());
+        }
+    }
+
+    public HttpNfeExtractor(
+            ScrapingProperties properties,
+            NfeDataMapper nfeDataMapper,
+            PageCaptureService pageCaptureService,
+            ReplayServer replayServer) {
+        this.properties = properties;
+        this.nfeDataMapper = nfeDataMapper;
+        this.pageCaptureService = pageCaptureService;
+        this.replayServer = replayServer;
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(properties.getFastPath().getTimeoutMs()))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    }
+
+    /**
+     * Tenta extrair a nota sem browser.
+     *
+     * @return dados da nota, ou vazio quando a página precisa de browser
+     */
+    public Optional<DadosNotaResponseDTO> tryExtract(NfceUrl nfceUrl) {
+        ScrapingProperties.FastPath config = properties.getFastPath();
+        if (!config.isEnabled() || config.getDisabledUfs().contains(nfceUrl.uf())) {
+            return Optional.empty();
+        }
+
+        UfStats stats = statsPorUf.computeIfAbsent(nfceUrl.uf(), uf -> new UfStats());
+        long startTime = System.currentTimeMillis();
+
+        try {
+            HttpRequest request = HttpRequest.newBuilder(replayServer.destinoUri(nfceUrl))
+                .timeout(Duration.ofMillis(config.getTimeoutMs()))
+                .header("User-Agent", USER_AGENT)
+                .header("Accept", "text/html,application/xhtml+xml")
+                .GET()
+                .build();
+
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                log.debug("Caminho HTTP: status {} para UF {}, usando browser", response.statusCode(), nfceUrl.uf());
+                stats.fallback().incrementAndGet();
+                return Optional.empty();
+            }
+
+            Document doc = Jsoup.parse(new ByteArrayInputStream(response.body()), null, nfceUrl.url());
+            Optional<DadosNotaResponseDTO> result = extract(doc, nfceUrl.url());
+
+            if (result.isPresent()) {
+                stats.rapido().incrementAndGet();
+                if (pageCaptureService.isAtivo()) {
+                    pageCaptureService.salvar(nfceUrl, new String(response.body(), doc.charset()));
+                }
+                log.info("⚡ Nota extraída via HTTP em {}ms (UF {})", System.currentTimeMillis() - startTime, nfceUrl.uf());
+            } else {
+                stats.fallback().incrementAndGet();
+                log.debug("Caminho HTTP: página de {} requer JavaScript, usando browser", nfceUrl.uf());
+            }
+            return result;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stats.erro().incrementAndGet();
+            return Optional.empty();
+        } catch (Exception e) {
+            stats.erro().incrementAndGet();
+            log.debug("Caminho HTTP falhou para UF {}: {}", nfceUrl.uf(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Equivalente server-side dos scripts de extração executados no browser.
+     */
+    Optional<DadosNotaResponseDTO> extract(Document doc, String url) {
+        Element totalNota = doc.selectFirst("#totalNota");
+        if (totalNota == null) {
+            return Optional.empty();
+        }
+
+        Element infos = doc.selectFirst("#infos");
+        Element infoEstab = doc.selectFirst(".txtCenter");
+
+        Elements linhasTotal = totalNota.select("#linhaTotal");
+        Elements textElements = infoEstab != null ? infoEstab.select(".text") : new Elements();
+
+        Map<String, Object> dadosPrincipais = new HashMap<>();
+        dadosPrincipais.put("qtdItens", linhasTotal.size() > 0 ? textOf(linhasTotal.get(0).selectFirst("span")) : "");
+        dadosPrincipais.put("valorTotal", linhasTotal.size() > 1 ? textOf(linhasTotal.get(1).selectFirst("span")) : "");
+        dadosPrincipais.put("chaveAcesso", infos != null ? textOf(infos.selectFirst(".chave")) : "");
+        dadosPrincipais.put("nomeEstab", infoEstab != null ? textOf(infoEstab.selectFirst("#u20")) : "");
+        dadosPrincipais.put("cpfCnpj", textElements.size() > 0 ? textOf(textElements.get(0)) : "");
+        dadosPrincipais.put("endereco", textElements.size() > 1 ? textOf(textElements.get(1)) : "");
+
+        List<Map<String, String>> produtos = new ArrayList<>();
+        for (Element row : doc.select("tr[id^='Item +']")) {
+            Elements colunas = row.select("td");
+            if (colunas.size() >= 2) {
+                Element col0 = colunas.get(0);
+                Map<String, String> produto = new HashMap<>();
+                produto.put("nome", textOf(col0.selectFirst(".txtTit")));
+                produto.put("qtd", textOf(col0.selectFirst(".Rqtd")));
+                produto.put("un", textOf(col0.selectFirst(".RUN")));
+                produto.put("vlUnit", textOf(col0.selectFirst(".RvlUnit")));
+                produto.put("vlTotal", textOf(colunas.get(1).selectFirst("span")));
+                produtos.add(produto);
+            }
+        }
+
+        // Totais presentes mas itens carregados via JS: precisa do browser
+        if (produtos.isEmpty() && NfeDataMapper.extractNumeric((String) dadosPrincipais.get("qtdItens")) > 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(nfeDataMapper.toResponse(dadosPrincipais, produtos, url));
+    }
+
+    private static String textOf(Element element) {
+        return element != null ? element.wholeText() : "";
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> porUf = new TreeMap<>();
+        statsPorUf.forEach((uf, stats) -> porUf.put(uf, Map.of(
+            "http", stats.rapido().get(),
+            "browser", stats.fallback().get(),
+            "erros", stats.erro().get()
+        )));
+
+        return Map.of(
+            "enabled", properties.getFastPath().isEnabled(),
+            "porUf", porUf
+        );
+    }
+}
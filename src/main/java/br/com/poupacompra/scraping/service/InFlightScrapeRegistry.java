@@ -0,0 +1,222 @@
+package br.com.poupacompra.scraping.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.exception.CapacidadeExcedidaException;
+import br.com.poupacompra.scraping.exception.ScrapingException;
+import br.com.poupacompra.scraping.service.NotaBinaryCodec.NotaDatada;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Registro de scrapings em andamento (single-flight).
+ *
+ * Chamadas concorrentes para a mesma chave compartilham um único scraping:
+ * a primeira executa (usa o browser e chama a API), as demais aguardam o
+ * mesmo resultado ou a mesma exceção. Só a primeira grava a nota no
+ * nfeCache, uma vez. Quem se junta com prioridade maior
+ * que a do scraping em andamento eleva o acquire de browser dele (ex.: uma
+ * requisição interativa que encontra uma atualização em BATCH).
+ *
+ * Com o cache compartilhado habilitado, a deduplicação vale entre réplicas:
+ * a chamada que executa precisa do lease da chave no {@link SharedNotaStore}.
+ * Sem ele, aguarda a réplica dona gravar a nota no cache compartilhado;
+ * se ela não termina no prazo, a requisição é rejeitada como
+ * {@link CapacidadeExcedidaException}, que não entra no cache negativo.
+ */
+@Service
+public class InFlightScrapeRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(InFlightScrapeRegistry.class);
+
+    private final Map<String, Voo> emAndamento = new ConcurrentHashMap<>();
+    private final Counter execucoes;
+    private final Counter coalescidas;
+    private final Counter remotas;
+    private final TieredNfeCache nfeCache;
+    private final ScrapingProperties properties;
+    private final BrowserPoolService browserPoolService;
+
+    /**
+     * Scraping em andamento e a classe mais prioritária entre quem o aguarda.
+     */
+    private record Voo(CompletableFuture<DadosNotaResponseDTO> future, AtomicReference<ScrapePriority> prioridade) {
+
+        /**
+         * @return true se a prioridade subiu
+         */
+        boolean elevar(ScrapePriority nova) {
+            ScrapePriority atual;
+            do {
+                atual = prioridade.get();
+                if (!nova.precede(atual)) {
+                    return false;
+                }
+            } while (!prioridade.compareAndSet(atual, nova));
+            return true;
+        }
+    }
+
+    public InFlightScrapeRegistry(MeterRegistry meterRegistry, TieredNfeCache nfeCache, ScrapingProperties properties,
+            BrowserPoolService browserPoolService) {
+        this.nfeCache = nfeCache;
+        this.properties = properties;
+        this.browserPoolService = browserPoolService;
+        this.execucoes = Counter.builder("scraping.inflight.requests")
+            .description("Requisições de scraping por papel no single-flight")
+            .tag("papel", "executada")
+            .register(meterRegistry);
+        this.coalescidas = Counter.builder("scraping.inflight.requests")
+            .description("Requisições de scraping por papel no single-flight")
+            .tag("papel", "coalescida")
+            .register(meterRegistry);
+        this.remotas = Counter.builder("scraping.inflight.requests")
+            .description("Requisições de scraping por papel no single-flight")
+            .tag("papel", "remota")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Executa o scraping para a chave ou aguarda o que já está em andamento.
+     *
+     * @param prioridade classe de quem chama; o scraping deve pedir o browser
+     *                   com a chave (AcquireRequest.comChave) para ser elevado
+     */
+    public DadosNotaResponseDTO execute(String key, ScrapePriority prioridade, Supplier<DadosNotaResponseDTO> scrape) {
+        CompletableFuture<DadosNotaResponseDTO> future = new CompletableFuture<>();
+        Voo voo = new Voo(future, new AtomicReference<>(prioridade));
+        Voo existente = emAndamento.putIfAbsent(key, voo);
+
+        if (existente != null) {
+            coalescidas.increment();
+            if (existente.elevar(prioridade)) {
+                log.info("↑ Scraping da chave {} elevado para {}", key, prioridade.tag());
+                browserPoolService.elevarPrioridade(key, prioridade);
+                // O scraping pode ter terminado antes da elevação chegar ao pool
+                if (emAndamento.get(key) != existente) {
+                    browserPoolService.encerrarPrioridade(key);
+                }
+            }
+            log.info("↺ Scraping já em andamento para a chave {}, aguardando resultado", key);
+            return aguardar(existente.future());
+        }
+
+        try {
+            DadosNotaResponseDTO result = executarComLease(key, scrape);
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            emAndamento.remove(key, voo);
+            if (voo.prioridade().get() != prioridade) {
+                browserPoolService.encerrarPrioridade(key);
+            }
+        }
+    }
+
+    /**
+     * Executa com o lease da chave ou aguarda o resultado de outra réplica.
+     * Se a réplica dona liberar o lease sem gravar a nota (falhou), esta tenta
+     * obter o lease e executar. A espera dura pelo menos leaseMs: um scraping
+     * lento na réplica dona não vira timeout aqui antes de o lease expirar.
+     */
+    private DadosNotaResponseDTO executarComLease(String key, Supplier<DadosNotaResponseDTO> scrape) {
+        SharedNotaStore compartilhado = nfeCache.getCompartilhado();
+        if (compartilhado == null) {
+            execucoes.increment();
+            DadosNotaResponseDTO result = scrape.get();
+            nfeCache.gravar(key, result);
+            return result;
+        }
+
+        ScrapingProperties.SharedCache config = properties.getSharedCache();
+        long espera = Math.max(config.getWaitMs(), config.getLeaseMs());
+        long prazo = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(espera);
+
+        while (true) {
+            if (compartilhado.adquirirLease(key, Duration.ofMillis(config.getLeaseMs()))) {
+                try {
+                    // Outra réplica pode ter terminado entre o miss e o lease
+                    NotaDatada pronto = compartilhado.get(key);
+                    if (pronto != null) {
+                        remotas.increment();
+                        nfeCache.gravarLocal(key, pronto);
+                        return pronto.dados();
+                    }
+
+                    execucoes.increment();
+                    DadosNotaResponseDTO result = scrape.get();
+                    // Gravada (inclusive no compartilhado) antes de liberar o lease, para quem aguarda encontrar a nota
+                    nfeCache.gravar(key, result);
+                    return result;
+                } finally {
+                    compartilhado.liberarLease(key);
+                }
+            }
+
+            log.info("↺ Scraping da chave {} em andamento em outra réplica, aguardando resultado", key);
+            while (true) {
+                if (System.nanoTime() - prazo > 0) {
+                    // A nota não falhou: outra réplica ainda a processa
+                    throw new CapacidadeExcedidaException(
+                        "Scraping da nota em andamento em outra réplica, tente novamente mais tarde",
+                        10);
+                }
+                try {
+                    Thread.sleep(config.getPollMs());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ScrapingException("Interrompido ao aguardar scraping em outra réplica", e);
+                }
+
+                NotaDatada pronto = compartilhado.get(key);
+                if (pronto != null) {
+                    remotas.increment();
+                    nfeCache.gravarLocal(key, pronto);
+                    return pronto.dados();
+                }
+                if (!compartilhado.leaseAtivo(key)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private DadosNotaResponseDTO aguardar(CompletableFuture<DadosNotaResponseDTO> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new ScrapingException("Erro no scraping compartilhado", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScrapingException("Interrompido ao aguardar scraping em andamento", e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "emAndamento", emAndamento.size(),
+            "executadas", (long) execucoes.count(),
+            "coalescidas", (long) coalescidas.count(),
+            "remotas", (long) remotas.count()
+        );
+    }
+}
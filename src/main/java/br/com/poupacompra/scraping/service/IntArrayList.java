@@ -0,0 +1,51 @@
+package br.com.poupacompra.scraping.service;
+
+import java.util.Arrays;
+
+/**
+ * Lista de int sem boxing, para as listas de ofertas e de produtos do
+ * {@link PriceIndex}: milhões de elementos custam 4 bytes cada, não um Integer.
+ */
+final class IntArrayList {
+
+    private int[] elementos;
+    private int tamanho;
+
+    IntArrayList() {
+        this(4);
+    }
+
+    IntArrayList(int capacidade) {
+        this.elementos = new int[Math.max(1, capacidade)];
+    }
+
+    void add(int valor) {
+        if (tamanho == elementos.length) {
+            elementos = Arrays.copyOf(elementos, elementos.length + (elementos.length >> 1) + 1);
+        }
+        elementos[tamanho++] = valor;
+    }
+
+    int get(int indice) {
+        return elementos[indice];
+    }
+
+    int size() {
+        return tamanho;
+    }
+
+    /**
+     * Busca binária; só vale para listas em ordem crescente.
+     */
+    boolean containsSorted(int valor) {
+        return Arrays.binarySearch(elementos, 0, tamanho, valor) >= 0;
+    }
+
+    /**
+     * Último elemento, ou -1 se vazia. As listas de produtos por token só
+     * recebem ids crescentes; comparar com o último evita duplicatas.
+     */
+    int last() {
+        return tamanho > 0 ? elementos[tamanho - 1] : -1;
+    }
+}
@@ -0,0 +1,94 @@
+package br.com.poupacompra.scraping.service;
+
+import java.util.Arrays;
+
+/**
+ * Mapa long -> int com endereçamento aberto (sondagem linear), sem boxing
+ * nem um objeto por entrada. Só inserção e consulta: o {@link PriceIndex}
+ * nunca remove ofertas. A chave Long.MIN_VALUE é reservada para vago.
+ */
+final class LongIntHashMap {
+
+    private static final long VAGO = Long.MIN_VALUE;
+    private static final float CARGA_MAXIMA = 0.6f;
+
+    private long[] chaves;
+    private int[] valores;
+    private int tamanho;
+    private int limite;
+
+    LongIntHashMap(int capacidadeInicial) {
+        int capacidade = Integer.highestOneBit(Math.max(16, (int) (capacidadeInicial / CARGA_MAXIMA)) - 1) << 1;
+        alocar(capacidade);
+    }
+
+    private void alocar(int capacidade) {
+        chaves = new long[capacidade];
+        Arrays.fill(chaves, VAGO);
+        valores = new int[capacidade];
+        limite = (int) (capacidade * CARGA_MAXIMA);
+    }
+
+    int get(long chave, int padrao) {
+        int mascara = chaves.length - 1;
+        for (int i = indice(chave, mascara); ; i = (i + 1) & mascara) {
+            long atual = chaves[i];
+            if (atual == chave) {
+                return valores[i];
+            }
+            if (atual == VAGO) {
+                return padrao;
+            }
+        }
+    }
+
+    void put(long chave, int valor) {
+        if (tamanho >= limite) {
+            redimensionar();
+        }
+        int mascara = chaves.length - 1;
+        for (int i = indice(chave, mascara); ; i = (i + 1) & mascara) {
+            long atual = chaves[i];
+            if (atual == VAGO) {
+                chaves[i] = chave;
+                valores[i] = valor;
+                tamanho++;
+                return;
+            }
+            if (atual == chave) {
+                valores[i] = valor;
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return tamanho;
+    }
+
+    private void redimensionar() {
+        long[] chavesAntigas = chaves;
+        int[] valoresAntigos = valores;
+        alocar(chaves.length << 1);
+        int mascara = chaves.length - 1;
+        for (int j = 0; j < chavesAntigas.length; j++) {
+            long chave = chavesAntigas[j];
+            if (chave != VAGO) {
+                int i = indice(chave, mascara);
+                while (chaves[i] != VAGO) {
+                    i = (i + 1) & mascara;
+                }
+                chaves[i] = chave;
+                valores[i] = valoresAntigos[j];
+            }
+        }
+    }
+
+    /**
+     * Espalha os bits altos (id do estabelecimento) sobre os baixos antes da máscara.
+     */
+    private static int indice(long chave, int mascara) {
+        long h = chave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+}
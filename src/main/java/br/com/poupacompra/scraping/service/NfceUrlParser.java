@@ -0,0 +1,177 @@
+package br.com.poupacompra.scraping.service;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Normaliza URLs de consulta de NFC-e e extrai a chave de acesso.
+ *
+ * Aceita os formatos de QR Code v1 (chNFe=...) e v2 (p=chave|versao|...),
+ * independente da ordem dos parâmetros, da caixa do host ou de parâmetros extras.
+ * A chave de 44 dígitos (com dígito verificador validado) é a identidade da nota.
+ */
+@Component
+public class NfceUrlParser {
+
+    private static final Pattern PARAM_CHAVE = Pattern.compile("(?i)(?:^|[?&;])(?:p|chNFe)=([^&;#]+)");
+    // Não reservados e reservados da RFC 3986, além de letras e dígitos
+    private static final String PERMITIDOS = "-._~:/?#[]@!$&'()*+,;=";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final Pattern CHAVE_44 = Pattern.compile("(?<!\\d)(\\d{44})(?!\\d)");
+
+    private static final Map<String, String> UF_POR_CODIGO = Map.ofEntries(
+        Map.entry("11", "RO"), Map.entry("12", "AC"), Map.entry("13", "AM"), Map.entry("14", "RR"),
+        Map.entry("15", "PA"), Map.entry("16", "AP"), Map.entry("17", "TO"), Map.entry("21", "MA"),
+        Map.entry("22", "PI"), Map.entry("23", "CE"), Map.entry("24", "RN"), Map.entry("25", "PB"),
+        Map.entry("26", "PE"), Map.entry("27", "AL"), Map.entry("28", "SE"), Map.entry("29", "BA"),
+        Map.entry("31", "MG"), Map.entry("32", "ES"), Map.entry("33", "RJ"), Map.entry("35", "SP"),
+        Map.entry("41", "PR"), Map.entry("42", "SC"), Map.entry("43", "RS"), Map.entry("50", "MS"),
+        Map.entry("51", "MT"), Map.entry("52", "GO"), Map.entry("53", "DF")
+    );
+
+    /**
+     * URL de NFC-e já validada.
+     *
+     * @param chaveAcesso chave de 44 dígitos
+     * @param uf sigla da UF emitente (derivada do cUF da chave)
+     * @param url URL normalizada (esquema e host em minúsculas, sem espaços)
+     * @param uri a mesma URL com os caracteres fora da RFC 3986 codificados
+     *            (o '|' do QR Code v2 vira %7C), para clientes HTTP
+     */
+    public record NfceUrl(
+        String chaveAcesso,
+        String uf,
+        String url,
+        URI uri
+    ) {}
+
+    /**
+     * @throws IllegalArgumentException se a URL não contém uma chave de acesso válida
+     */
+    public NfceUrl parse(String url) {
+        if (url == null || url.isBlank()) {
+            throw new IllegalArgumentException("URL não fornecida");
+        }
+
+        String normalizada = normalizar(url.trim());
+        String chave = extrairChave(normalizada);
+
+        if (chave == null) {
+            throw new IllegalArgumentException("URL não contém chave de acesso de 44 dígitos");
+        }
+
+        String uf = UF_POR_CODIGO.get(chave.substring(0, 2));
+        if (uf == null) {
+            throw new IllegalArgumentException("Chave de acesso com código de UF inválido: " + chave.substring(0, 2));
+        }
+
+        if (!digitoVerificadorValido(chave)) {
+            throw new IllegalArgumentException("Chave de acesso com dígito verificador inválido");
+        }
+
+        return new NfceUrl(chave, uf, normalizada, uri(normalizada));
+    }
+
+    /**
+     * Esquema e host em minúsculas. Sem passar pelo {@code URI}, que rejeita
+     * o '|' do QR Code v2.
+     */
+    private String normalizar(String url) {
+        int esquema = url.indexOf("://");
+        if (esquema <= 0) {
+            return url;
+        }
+        int fim = esquema + 3;
+        while (fim < url.length() && "/?#".indexOf(url.charAt(fim)) < 0) {
+            fim++;
+        }
+        return url.substring(0, fim).toLowerCase(Locale.ROOT) + url.substring(fim);
+    }
+
+    private URI uri(String url) {
+        try {
+            return URI.create(codificar(url));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("URL malformada", e);
+        }
+    }
+
+    /**
+     * Percent-encoding (UTF-8) dos caracteres que não podem aparecer em uma
+     * URI. Sequências %XX existentes são mantidas; um '%' solto é codificado.
+     */
+    static String codificar(String url) {
+        StringBuilder sb = null;
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            boolean permitido = c < 0x80 && (PERMITIDOS.indexOf(c) >= 0 || Character.isLetterOrDigit(c))
+                || c == '%' && i + 2 < url.length() && hex(url.charAt(i + 1)) && hex(url.charAt(i + 2));
+            if (permitido) {
+                if (sb != null) {
+                    sb.append(c);
+                }
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(url.length() + 16).append(url, 0, i);
+            }
+            int fim = Character.isHighSurrogate(c) && i + 1 < url.length() ? i + 2 : i + 1;
+            for (byte b : url.substring(i, fim).getBytes(StandardCharsets.UTF_8)) {
+                sb.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+            }
+            i = fim - 1;
+        }
+        return sb != null ? sb.toString() : url;
+    }
+
+    private static boolean hex(char c) {
+        return c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    private String extrairChave(String url) {
+        int inicioQuery = url.indexOf('?');
+        if (inicioQuery >= 0) {
+            Matcher param = PARAM_CHAVE.matcher(url.substring(inicioQuery));
+            while (param.find()) {
+                Matcher chave = CHAVE_44.matcher(decodificar(param.group(1)));
+                if (chave.find()) {
+                    return chave.group(1);
+                }
+            }
+        }
+
+        // Alguns portais colocam a chave no path
+        Matcher chave = CHAVE_44.matcher(url);
+        return chave.find() ? chave.group(1) : null;
+    }
+
+    private String decodificar(String valor) {
+        try {
+            return URLDecoder.decode(valor, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return valor;
+        }
+    }
+
+    /**
+     * Módulo 11 com pesos 2..9 aplicados da direita para a esquerda nos 43 primeiros dígitos.
+     */
+    static boolean digitoVerificadorValido(String chave) {
+        int soma = 0;
+        int peso = 2;
+        for (int i = 42; i >= 0; i--) {
+            soma += (chave.charAt(i) - '0') * peso;
+            peso = peso == 9 ? 2 : peso + 1;
+        }
+        int resto = soma % 11;
+        int dv = resto < 2 ? 0 : 11 - resto;
+        return dv == chave.charAt(43) - '0';
+    }
+}
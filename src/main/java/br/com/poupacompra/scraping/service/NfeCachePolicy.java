@@ -0,0 +1,206 @@
+package br.com.poupacompra.scraping.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.exception.CapacidadeExcedidaException;
+import br.com.poupacompra.scraping.exception.CaptchaException;
+import br.com.poupacompra.scraping.exception.NotaIndisponivelException;
+import br.com.poupacompra.scraping.exception.ScrapingException;
+import br.com.poupacompra.scraping.service.NotaJsonCodec.NotaSerializada;
+
+/**
+ * Política de cache das notas, sobre o {@link TieredNfeCache}.
+ *
+ * - Acerto com idade acima de refreshAfterHours: devolve a nota em cache e
+ *   dispara uma única atualização em background (refresh-ahead). Acima de
+ *   ttlHours a nota está vencida, mas continua sendo servida pela janela de
+ *   stale-while-revalidate enquanto a atualização não chega.
+ * - Falhas ficam num cache negativo com TTL curto por tipo (nota
+ *   indisponível, captcha, timeout...): uma URL que falha de novo a cada
+ *   tentativa não ocupa um browser a cada vez. Rejeições por capacidade,
+ *   circuito ou limite de taxa não são cacheadas.
+ */
+@Component
+public class NfeCachePolicy {
+
+    private static final Logger log = LoggerFactory.getLogger(NfeCachePolicy.class);
+
+    private record FalhaCacheada(String tipo, RuntimeException erro, long ttlNanos) {}
+
+    private final TieredNfeCache nfeCache;
+    private final ScrapingProperties properties;
+    private final Cache<String, FalhaCacheada> negativos;
+    private final Map<String, Boolean> atualizando = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> acertosNegativos = new ConcurrentHashMap<>();
+    private final AtomicLong servidasVencidas = new AtomicLong();
+    private final AtomicLong atualizacoes = new AtomicLong();
+    private final AtomicLong falhasAtualizacao = new AtomicLong();
+
+    public NfeCachePolicy(TieredNfeCache nfeCache, ScrapingProperties properties) {
+        this.nfeCache = nfeCache;
+        this.properties = properties;
+        this.negativos = Caffeine.newBuilder()
+            .maximumSize(properties.getCache().getNegativeMaxSize())
+            .expireAfter(new Expiry<String, FalhaCacheada>() {
+                @Override
+                public long expireAfterCreate(String chave, FalhaCacheada falha, long agora) {
+                    return falha.ttlNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String chave, FalhaCacheada falha, long agora, long restante) {
+                    return falha.ttlNanos();
+                }
+
+                @Override
+                public long expireAfterRead(String chave, FalhaCacheada falha, long agora, long restante) {
+                    return restante;
+                }
+            })
+            .build();
+    }
+
+    /**
+     * Devolve a nota da chave: do cache, da falha em cache, ou executando o scraping.
+     *
+     * @param scrape extração em primeiro plano, no miss
+     * @param atualizacao extração usada para atualizar em background uma nota
+     *                    envelhecida; recebe a versão em cache
+     */
+    public DadosNotaResponseDTO obter(String chave, Supplier<DadosNotaResponseDTO> scrape,
+            UnaryOperator<DadosNotaResponseDTO> atualizacao) {
+        NotaSerializada emCache = buscar(chave, atualizacao);
+        if (emCache != null) {
+            return nfeCache.getCodec().ler(emCache);
+        }
+
+        // Quem executou o scraping já gravou a nota no cache (InFlightScrapeRegistry)
+        return executar(chave, scrape);
+    }
+
+    /**
+     * Como {@link #obter}, devolvendo a nota já serializada, para ser escrita
+     * direto na resposta.
+     */
+    public NotaSerializada obterSerializada(String chave, Supplier<DadosNotaResponseDTO> scrape,
+            UnaryOperator<DadosNotaResponseDTO> atualizacao) {
+        NotaSerializada emCache = buscar(chave, atualizacao);
+        if (emCache != null) {
+            return emCache;
+        }
+        DadosNotaResponseDTO dados = executar(chave, scrape);
+        NotaSerializada gravada = nfeCache.getSerializada(chave);
+        return gravada != null ? gravada : nfeCache.getCodec().serializar(dados);
+    }
+
+    private NotaSerializada buscar(String chave, UnaryOperator<DadosNotaResponseDTO> atualizacao) {
+        FalhaCacheada falha = negativos.getIfPresent(chave);
+        if (falha != null) {
+            acertosNegativos.computeIfAbsent(falha.tipo(), k -> new AtomicLong()).incrementAndGet();
+            log.debug("Falha em cache ({}) para a chave {}", falha.tipo(), chave);
+            throw relancar(falha.erro());
+        }
+
+        NotaSerializada emCache = nfeCache.getSerializada(chave);
+        if (emCache != null) {
+            verificarIdade(chave, emCache, atualizacao);
+        }
+        return emCache;
+    }
+
+    private DadosNotaResponseDTO executar(String chave, Supplier<DadosNotaResponseDTO> scrape) {
+        try {
+            return scrape.get();
+        } catch (RuntimeException e) {
+            registrarFalha(chave, e);
+            throw e;
+        }
+    }
+
+    private void verificarIdade(String chave, NotaSerializada emCache, UnaryOperator<DadosNotaResponseDTO> atualizacao) {
+        ScrapingProperties.Cache config = properties.getCache();
+        // Notas gravadas sem o instante (formato 1 do disco) contam como vencidas e são atualizadas
+        Duration idade = Duration.ofMillis(System.currentTimeMillis() - emCache.obtidaEm());
+        if (idade.toHours() < config.getRefreshAfterHours()) {
+            return;
+        }
+
+        if (idade.toHours() >= config.getTtlHours()) {
+            servidasVencidas.incrementAndGet();
+        }
+
+        if (atualizando.putIfAbsent(chave, Boolean.TRUE) != null) {
+            return;
+        }
+        Thread.ofVirtual().name("atualizar-nota-" + chave).start(() -> {
+            try {
+                atualizacao.apply(nfeCache.getCodec().ler(emCache));
+                atualizacoes.incrementAndGet();
+                log.debug("Nota {} atualizada em background", chave);
+            } catch (RuntimeException e) {
+                // A versão em cache continua valendo até o fim da janela
+                falhasAtualizacao.incrementAndGet();
+                log.warn("Falha ao atualizar a nota {} em background: {}", chave, e.getMessage());
+            } finally {
+                atualizando.remove(chave);
+            }
+        });
+    }
+
+    private void registrarFalha(String chave, RuntimeException e) {
+        if (e instanceof CapacidadeExcedidaException || e instanceof IllegalArgumentException) {
+            return;
+        }
+
+        String tipo = ScrapingMetrics.resultado(e);
+        long ttlSegundos = properties.getCache().getNegativeTtlSeconds().getOrDefault(tipo, 0L);
+        if (ttlSegundos > 0) {
+            negativos.put(chave, new FalhaCacheada(tipo, e, TimeUnit.SECONDS.toNanos(ttlSegundos)));
+        }
+    }
+
+    /**
+     * Nova exceção do mesmo tipo, para não compartilhar a instância entre requisições.
+     */
+    private static RuntimeException relancar(RuntimeException original) {
+        String url = original instanceof ScrapingException scraping ? scraping.getUrl() : null;
+        return switch (original) {
+            case CaptchaException e -> new CaptchaException(e.getMessage(), url, e);
+            case NotaIndisponivelException e -> new NotaIndisponivelException(e.getMessage(), url);
+            default -> new ScrapingException(original.getMessage(), url, original);
+        };
+    }
+
+    public void limparNegativos() {
+        negativos.invalidateAll();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Long> porTipo = new ConcurrentHashMap<>();
+        acertosNegativos.forEach((tipo, total) -> porTipo.put(tipo, total.get()));
+        return Map.of(
+            "negativos", negativos.estimatedSize(),
+            "acertosNegativos", porTipo,
+            "servidasVencidas", servidasVencidas.get(),
+            "atualizacoes", atualizacoes.get(),
+            "falhasAtualizacao", falhasAtualizacao.get()
+        );
+    }
+}
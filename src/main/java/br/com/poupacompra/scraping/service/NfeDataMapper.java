@@ -0,0 +1,271 @@
+package br.com.poupacompra.scraping.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.dto.EstabelecimentoDTO;
+import br.com.poupacompra.scraping.dto.ItemNotaDTO;
+import br.com.poupacompra.scraping.dto.NotaDTO;
+
+/**
+ * Converte os campos brutos extraídos da página da NFC-e em {@link DadosNotaResponseDTO}.
+ *
+ * A extração HTTP entrega mapas de campos ({@link #toResponse}); a extração via
+ * browser entrega o payload compactado do script de extração ({@link #fromPacked}).
+ */
+@Component
+public class NfeDataMapper {
+
+    private static final Logger log = LoggerFactory.getLogger(NfeDataMapper.class);
+
+    private static final Pattern REGEX_UF = Pattern.compile("\\.([a-z]{2})\\.gov\\.br");
+
+    /**
+     * Separador de campos do payload compactado (ASCII unit separator).
+     */
+    public static final char SEPARADOR = '\u001F';
+
+    private static final int CAMPOS_CABECALHO = 7;
+    private static final int COLUNAS_ITEM = 5;
+    private static final long MAX_MANTISSA_EXATA = 1L << 53;
+    private static final double[] POTENCIAS_10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * @param dadosPrincipais campos qtdItens, valorTotal, chaveAcesso, nomeEstab, cpfCnpj e endereco
+     * @param produtosData um mapa por item com nome, qtd, un, vlUnit e vlTotal
+     * @param url URL da nota
+     */
+    public DadosNotaResponseDTO toResponse(
+            Map<String, Object> dadosPrincipais,
+            List<Map<String, String>> produtosData,
+            String url) {
+        String cpfCnpjRaw = extractAfterColon((String) dadosPrincipais.get("cpfCnpj"));
+        String cpfCnpj = cpfCnpjRaw.replaceAll("[.\\-/]", "");
+
+        EstabelecimentoDTO estabelecimento = EstabelecimentoDTO.builder()
+            .nomeEstabelecimento((String) dadosPrincipais.get("nomeEstab"))
+            .cpfCnpj(cpfCnpj)
+            .endereco(clearAddress((String) dadosPrincipais.get("endereco")))
+            .build();
+
+        List<ItemNotaDTO> itensNota = new ArrayList<>();
+        for (Map<String, String> prod : produtosData) {
+            try {
+                ItemNotaDTO item = ItemNotaDTO.builder()
+                    .descricao(prod.get("nome"))
+                    .quantidade(extractNumeric(extractAfterColon(prod.get("qtd"))))
+                    .tipoUnidade(extractAfterColon(prod.get("un")))
+                    .valorUnitario(extractNumeric(extractAfterColon(prod.get("vlUnit"))))
+                    .valorTotal(extractNumeric(prod.get("vlTotal")))
+                    .build();
+                itensNota.add(item);
+            } catch (Exception e) {
+                log.warn("  ⚠ Erro ao processar produto: {}", e.getMessage());
+            }
+        }
+
+        NotaDTO nota = NotaDTO.builder()
+            .quantidadeItens((int) extractNumeric((String) dadosPrincipais.get("qtdItens")))
+            .valorTotal(extractNumeric((String) dadosPrincipais.get("valorTotal")))
+            .usuario(3)
+            .ufCfe(extractUf(url))
+            .urlCfe(url + " via scrapping docker")
+            .chaveAcesso(dadosPrincipais.get("chaveAcesso") + " via scrapping docker")
+            .build();
+
+        return DadosNotaResponseDTO.builder()
+            .estabelecimento(estabelecimento)
+            .itensNota(itensNota)
+            .nota(nota)
+            .build();
+    }
+
+    /**
+     * Decodifica o payload do script de extração: campos separados por {@link #SEPARADOR},
+     * na ordem n, qtdItens, valorTotal, chaveAcesso, nomeEstab, cpfCnpj, endereco e
+     * depois as colunas nome, qtd, un, vlUnit e vlTotal com n valores cada.
+     *
+     * Os campos numéricos dos itens são lidos direto do payload, sem substrings.
+     */
+    public DadosNotaResponseDTO fromPacked(String payload, String url) {
+        int n = (int) parseNumeric(payload, 0, proximoSeparador(payload, 0));
+        int totalCampos = CAMPOS_CABECALHO + COLUNAS_ITEM * n;
+
+        // inicios[i] é o início do campo i; inicios[totalCampos] fica logo após o fim do payload
+        int[] inicios = new int[totalCampos + 1];
+        int pos = 0;
+        for (int i = 0; i < totalCampos; i++) {
+            inicios[i] = pos;
+            int fim = proximoSeparador(payload, pos);
+            if (fim == payload.length() && i < totalCampos - 1) {
+                throw new IllegalStateException("Payload de extração incompleto: " + (i + 1) + " de " + totalCampos + " campos");
+            }
+            pos = fim + 1;
+        }
+        inicios[totalCampos] = pos;
+
+        String cpfCnpj = extractAfterColon(campo(payload, inicios, 5)).replaceAll("[.\\-/]", "");
+
+        EstabelecimentoDTO estabelecimento = EstabelecimentoDTO.builder()
+            .nomeEstabelecimento(campo(payload, inicios, 4))
+            .cpfCnpj(cpfCnpj)
+            .endereco(clearAddress(campo(payload, inicios, 6)))
+            .build();
+
+        int colNome = CAMPOS_CABECALHO;
+        int colQtd = colNome + n;
+        int colUn = colQtd + n;
+        int colVlUnit = colUn + n;
+        int colVlTotal = colVlUnit + n;
+
+        List<ItemNotaDTO> itensNota = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            itensNota.add(new ItemNotaDTO(
+                campo(payload, inicios, colNome + i),
+                parseNumericAfterColon(payload, inicios[colQtd + i], inicios[colQtd + i + 1] - 1),
+                extractAfterColon(campo(payload, inicios, colUn + i)),
+                parseNumericAfterColon(payload, inicios[colVlUnit + i], inicios[colVlUnit + i + 1] - 1),
+                parseNumeric(payload, inicios[colVlTotal + i], inicios[colVlTotal + i + 1] - 1)
+            ));
+        }
+
+        NotaDTO nota = NotaDTO.builder()
+            .quantidadeItens((int) parseNumeric(payload, inicios[1], inicios[2] - 1))
+            .valorTotal(parseNumeric(payload, inicios[2], inicios[3] - 1))
+            .usuario(3)
+            .ufCfe(extractUf(url))
+            .urlCfe(url + " via scrapping docker")
+            .chaveAcesso(campo(payload, inicios, 3) + " via scrapping docker")
+            .build();
+
+        return DadosNotaResponseDTO.builder()
+            .estabelecimento(estabelecimento)
+            .itensNota(itensNota)
+            .nota(nota)
+            .build();
+    }
+
+    private static int proximoSeparador(String payload, int inicio) {
+        int fim = payload.indexOf(SEPARADOR, inicio);
+        return fim >= 0 ? fim : payload.length();
+    }
+
+    private static String campo(String payload, int[] inicios, int indice) {
+        return payload.substring(inicios[indice], inicios[indice + 1] - 1);
+    }
+
+    public static String extractUf(String url) {
+        Matcher ufMatcher = REGEX_UF.matcher(url);
+        return ufMatcher.find() ? ufMatcher.group(1).toUpperCase() : "";
+    }
+
+    public static String clearAddress(String texto) {
+        if (texto == null) return null;
+
+        return texto.replace("\n", "")
+                    .replace("\t", "")
+                    .replaceAll("[ \\u00A0]{2,}", "")
+                    .trim();
+    }
+
+    public static double extractNumeric(String text) {
+        if (text == null) {
+            return 0;
+        }
+        return parseNumeric(text, 0, text.length());
+    }
+
+    /**
+     * Equivale a extractNumeric(extractAfterColon(text)) sobre o intervalo [inicio, fim).
+     */
+    static double parseNumericAfterColon(CharSequence text, int inicio, int fim) {
+        if (fim > inicio && text.charAt(fim - 1) == ':') {
+            return parseNumeric(text, inicio, fim);
+        }
+        for (int i = fim - 2; i >= inicio; i--) {
+            if (text.charAt(i) == ':') {
+                return parseNumeric(text, i + 1, fim);
+            }
+        }
+        return parseNumeric(text, inicio, fim);
+    }
+
+    /**
+     * Lê o número contido em [inicio, fim) considerando só dígitos, '.' e ',' (ambos
+     * separador decimal). Mesmo resultado de remover os demais caracteres e chamar
+     * Double.parseDouble: 0 quando não há dígitos ou há mais de um separador.
+     */
+    static double parseNumeric(CharSequence text, int inicio, int fim) {
+        long mantissa = 0;
+        int digitos = 0;
+        int decimais = -1;
+
+        for (int i = inicio; i < fim; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digitos++;
+                if (decimais >= 0) {
+                    decimais++;
+                }
+                if (mantissa >= MAX_MANTISSA_EXATA) {
+                    return parseNumericLento(text, inicio, fim);
+                }
+            } else if (c == '.' || c == ',') {
+                if (decimais >= 0) {
+                    return 0;
+                }
+                decimais = 0;
+            }
+        }
+
+        if (digitos == 0) {
+            return 0;
+        }
+        if (decimais <= 0) {
+            return mantissa;
+        }
+        if (decimais >= POTENCIAS_10.length) {
+            return parseNumericLento(text, inicio, fim);
+        }
+        // Mantissa e potência exatas em double: a divisão já sai corretamente arredondada
+        return mantissa / POTENCIAS_10[decimais];
+    }
+
+    private static double parseNumericLento(CharSequence text, int inicio, int fim) {
+        StringBuilder limpo = new StringBuilder(fim - inicio);
+        for (int i = inicio; i < fim; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9' || c == '.') {
+                limpo.append(c);
+            } else if (c == ',') {
+                limpo.append('.');
+            }
+        }
+        try {
+            return Double.parseDouble(limpo.toString());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public static String extractAfterColon(String text) {
+        if (text == null) return "";
+        int colonIndex = text.lastIndexOf(':');
+        if (colonIndex >= 0 && colonIndex < text.length() - 1) {
+            return text.substring(colonIndex + 1).trim();
+        }
+        return text.trim();
+    }
+}
@@ -1,77 +1,273 @@
 package br.com.poupacompra.scraping.service;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
-import com.microsoft.playwright.Locator;
 import com.microsoft.playwright.Page;
 import com.microsoft.playwright.TimeoutError;
-import com.microsoft.playwright.options.WaitForSelectorState;
 import com.microsoft.playwright.options.WaitUntilState;
 
-import br.com.poupacompra.scraping.client.PoupaCompraApiClient;
-import br.com.poupacompra.scraping.config.CacheConfig;
 import br.com.poupacompra.scraping.config.ScrapingProperties;
 import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
-import br.com.poupacompra.scraping.dto.EstabelecimentoDTO;
-import br.com.poupacompra.scraping.dto.ItemNotaDTO;
-import br.com.poupacompra.scraping.dto.NotaDTO;
+import br.com.poupacompra.scraping.exception.CaptchaException;
+import br.com.poupacompra.scraping.exception.NotaIndisponivelException;
 import br.com.poupacompra.scraping.exception.ScrapingException;
+import br.com.poupacompra.scraping.service.BrowserPoolService.AcquireRequest;
+import br.com.poupacompra.scraping.service.BrowserPoolService.Afinidade;
 import br.com.poupacompra.scraping.service.BrowserPoolService.BrowserInstance;
+import br.com.poupacompra.scraping.service.NfceUrlParser.NfceUrl;
+import br.com.poupacompra.scraping.service.NotaJsonCodec.NotaSerializada;
 
 @Service
 public class NfeScrapingService {
     
     private static final Logger log = LoggerFactory.getLogger(NfeScrapingService.class);
 
-    private static final Pattern REGEX_UF = Pattern.compile("\\.([a-z]{2})\\.gov\\.br");
-    
+    /**
+     * Extrai cabeçalho e itens numa única ida ao browser. Retorna uma string só,
+     * no formato lido por {@link NfeDataMapper#fromPacked}: campos separados por
+     * U+001F, cabeçalho primeiro e depois os itens em colunas.
+     */
+    static final String EXTRACTION_SCRIPT = """
+        () => {
+            const SEP = String.fromCharCode(31);
+            const texto = el => (el?.textContent || '').split(SEP).join('');
+            
+            const totalNota = document.querySelector('#totalNota');
+            const infos = document.querySelector('#infos');
+            const infoEstab = document.querySelector('.txtCenter');
+            const linhasTotal = totalNota?.querySelectorAll('#linhaTotal');
+            const textElements = infoEstab?.querySelectorAll('.text');
+            
+            const nome = [], qtd = [], un = [], vlUnit = [], vlTotal = [];
+            for (const row of document.querySelectorAll("tr[id^='Item +']")) {
+                const colunas = row.querySelectorAll('td');
+                if (colunas.length < 2) continue;
+                const col0 = colunas[0];
+                nome.push(texto(col0.querySelector('.txtTit')));
+                qtd.push(texto(col0.querySelector('.Rqtd')));
+                un.push(texto(col0.querySelector('.RUN')));
+                vlUnit.push(texto(col0.querySelector('.RvlUnit')));
+                vlTotal.push(texto(colunas[1].querySelector('span')));
+            }
+            
+            return [
+                nome.length,
+                texto(linhasTotal?.[0]?.querySelector('span')),
+                texto(linhasTotal?.[1]?.querySelector('span')),
+                texto(infos?.querySelector('.chave')),
+                texto(infoEstab?.querySelector('#u20')),
+                texto(textElements?.[0]),
+                texto(textElements?.[1]),
+                ...nome, ...qtd, ...un, ...vlUnit, ...vlTotal
+            ].join(SEP);
+        }
+        """;
+
     private final BrowserPoolService browserPoolService;
     private final ScrapingProperties properties;
-    private final PoupaCompraApiClient poupaCompraApiClient;
+    private final OutboxService outboxService;
+    private final InFlightScrapeRegistry inFlightScrapeRegistry;
+    private final NfceUrlParser nfceUrlParser;
+    private final HttpNfeExtractor httpNfeExtractor;
+    private final NfeDataMapper nfeDataMapper;
+    private final ScrapingMetrics scrapingMetrics;
+    private final PageCaptureService pageCaptureService;
+    private final ReplayServer replayServer;
+    private final ReadinessDetector readinessDetector;
+    private final PortalCircuitBreakers portalCircuitBreakers;
+    private final PortalRateLimiter portalRateLimiter;
+    private final NfeCachePolicy nfeCachePolicy;
+    private final AdmissionLimiter admissionLimiter;
+    private final PriceIndex priceIndex;
     
-    public NfeScrapingService(BrowserPoolService browserPoolService, ScrapingProperties properties, PoupaCompraApiClient poupaCompraApiClient) {
+    public NfeScrapingService(
+            BrowserPoolService browserPoolService,
+            ScrapingProperties properties,
+            OutboxService outboxService,
+            InFlightScrapeRegistry inFlightScrapeRegistry,
+            NfceUrlParser nfceUrlParser,
+            HttpNfeExtractor httpNfeExtractor,
+            NfeDataMapper nfeDataMapper,
+            ScrapingMetrics scrapingMetrics,
+            PageCaptureService pageCaptureService,
+            ReplayServer replayServer,
+            ReadinessDetector readinessDetector,
+            PortalCircuitBreakers portalCircuitBreakers,
+            PortalRateLimiter portalRateLimiter,
+            NfeCachePolicy nfeCachePolicy,
+            AdmissionLimiter admissionLimiter,
+            PriceIndex priceIndex) {
         this.browserPoolService = browserPoolService;
         this.properties = properties;
-        this.poupaCompraApiClient = poupaCompraApiClient;
+        this.outboxService = outboxService;
+        this.inFlightScrapeRegistry = inFlightScrapeRegistry;
+        this.nfceUrlParser = nfceUrlParser;
+        this.httpNfeExtractor = httpNfeExtractor;
+        this.nfeDataMapper = nfeDataMapper;
+        this.scrapingMetrics = scrapingMetrics;
+        this.pageCaptureService = pageCaptureService;
+        this.replayServer = replayServer;
+        this.readinessDetector = readinessDetector;
+        this.portalCircuitBreakers = portalCircuitBreakers;
+        this.portalRateLimiter = portalRateLimiter;
+        this.nfeCachePolicy = nfeCachePolicy;
+        this.admissionLimiter = admissionLimiter;
+        this.priceIndex = priceIndex;
     }
     
     /**
+     * Requisições concorrentes para a mesma nota compartilham um único scraping.
+     * URLs sem chave de acesso válida são rejeitadas antes de ocupar um browser.
+     * O cache (inclusive de falhas) segue o {@link NfeCachePolicy}.
+     * 
      * @param url URL da NFe
      * @return Dados extraídos da nota fiscal
      */
-    @Cacheable(value = CacheConfig.NFE_CACHE, key = "#root.target.getCacheKey(#url)")
     public DadosNotaResponseDTO scrapeNfe(String url) {
+        return scrapeNfe(url, AcquireRequest.interactive());
+    }
+    
+    /**
+     * Como {@link #scrapeNfe(String)}, informando prioridade e tenant para a fila de browsers.
+     */
+    public DadosNotaResponseDTO scrapeNfe(String url, AcquireRequest acquireRequest) {
+        NfceUrl nfceUrl = nfceUrlParser.parse(url);
+        String chave = nfceUrl.chaveAcesso();
+        return nfeCachePolicy.obter(chave, scrape(nfceUrl, acquireRequest), atualizacao(nfceUrl, acquireRequest));
+    }
+    
+    /**
+     * Como {@link #scrapeNfe(String, AcquireRequest)}, devolvendo a nota no
+     * formato do cache, pronta para ser escrita no corpo da resposta.
+     */
+    public NotaSerializada scrapeNfeSerializada(String url, AcquireRequest acquireRequest) {
+        NfceUrl nfceUrl = nfceUrlParser.parse(url);
+        String chave = nfceUrl.chaveAcesso();
+        return nfeCachePolicy.obterSerializada(chave, scrape(nfceUrl, acquireRequest), atualizacao(nfceUrl, acquireRequest));
+    }
+    
+    private Supplier<DadosNotaResponseDTO> scrape(NfceUrl nfceUrl, AcquireRequest acquireRequest) {
+        String chave = nfceUrl.chaveAcesso();
+        return () -> inFlightScrapeRegistry.execute(chave, acquireRequest.prioridade(),
+            () -> entregar(doScrape(nfceUrl, acquireRequest.comChave(chave))));
+    }
+    
+    /**
+     * A atualização em background de nota envelhecida não disputa browser com
+     * requisições interativas. A versão em cache já foi entregue e indexada
+     * quando entrou no cache: só uma nota que mudou vai de novo para a API.
+     */
+    private UnaryOperator<DadosNotaResponseDTO> atualizacao(NfceUrl nfceUrl, AcquireRequest acquireRequest) {
+        String chave = nfceUrl.chaveAcesso();
+        AcquireRequest atualizacao = new AcquireRequest(ScrapePriority.BATCH, acquireRequest.tenant(), chave);
+        return anterior -> inFlightScrapeRegistry.execute(chave, atualizacao.prioridade(), () -> {
+            DadosNotaResponseDTO result = doScrape(nfceUrl, atualizacao);
+            if (result.equals(anterior)) {
+                log.debug("Nota {} sem alterações na atualização", chave);
+                return result;
+            }
+            return entregar(result);
+        });
+    }
+    
+    private DadosNotaResponseDTO doScrape(NfceUrl nfceUrl, AcquireRequest acquireRequest) {
+        String url = nfceUrl.url();
+        String uf = NfeDataMapper.extractUf(url);
+        
+        // Portal instável: rejeita antes de qualquer consulta
+        boolean teste = portalCircuitBreakers.permitir(uf);
+        
         log.info("→ Iniciando scraping para: {}...", truncateUrl(url, 60));
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
+        
+        // Portais com HTML estático dispensam o browser
+        DadosNotaResponseDTO result = httpNfeExtractor.tryExtract(nfceUrl).orElse(null);
+        String fonte = result != null ? "http" : "browser";
+        
+        // O limite de taxa vale para o caminho do browser; a extração HTTP é um GET só, com timeout curto
+        if (result == null) {
+            try {
+                portalRateLimiter.aguardar(uf, url);
+            } catch (RuntimeException e) {
+                portalCircuitBreakers.cancelar(uf, teste);
+                throw e;
+            }
+        }
+        
+        try {
+            if (result == null) {
+                result = scrapeWithBrowser(nfceUrl, uf, acquireRequest);
+            }
+        } catch (RuntimeException e) {
+            String resultado = ScrapingMetrics.resultado(e);
+            scrapingMetrics.registrarNota(uf, fonte, resultado, System.nanoTime() - startTime);
+            portalCircuitBreakers.registrar(uf, resultado, teste);
+            throw e;
+        }
         
+        long elapsed = System.nanoTime() - startTime;
+        scrapingMetrics.registrarNota(uf, fonte, ScrapingMetrics.SUCESSO, elapsed);
+        portalCircuitBreakers.registrar(uf, ScrapingMetrics.SUCESSO, teste);
+        log.info("✓ Scraping completo em {}ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
+        
+        return result;
+    }
+    
+    /**
+     * Envia a nota extraída para a API (pelo outbox) e registra os preços.
+     */
+    private DadosNotaResponseDTO entregar(DadosNotaResponseDTO result) {
+        enviarParaApi(result);
+        priceIndex.registrar(result);
+        return result;
+    }
+    
+    /**
+     * O browser volta ao pool assim que a extração termina. Sem vaga no
+     * {@link AdmissionLimiter}, rejeita antes de esperar pelo pool.
+     */
+    private DadosNotaResponseDTO scrapeWithBrowser(NfceUrl nfceUrl, String uf, AcquireRequest acquireRequest) {
+        admissionLimiter.admitir();
+        try {
+            return scrapeWithBrowserAdmitido(nfceUrl, uf, acquireRequest);
+        } finally {
+            admissionLimiter.liberar();
+        }
+    }
+    
+    private DadosNotaResponseDTO scrapeWithBrowserAdmitido(NfceUrl nfceUrl, String uf, AcquireRequest acquireRequest) {
+        String url = nfceUrl.url();
+        String destino = replayServer.destino(nfceUrl);
         BrowserInstance browserInstance = null;
         
         try {
-            browserInstance = browserPoolService.acquireBrowser(10);
+            // Prefere um slot que já tem conexão e cache do portal de destino
+            Afinidade afinidade = Afinidade.de(uf, destino);
+            browserInstance = scrapingMetrics.fase("acquire", uf,
+                () -> browserPoolService.acquireBrowser(10, acquireRequest, afinidade));
             log.info("✓ Browser {} obtido do pool", browserInstance.id());
             
             Page page = browserInstance.page();
             
-            DadosNotaResponseDTO result = performScraping(page, url);
-            
-            long elapsed = System.currentTimeMillis() - startTime;
-            log.info("✓ Scraping completo em {}ms", elapsed);
-            
-            enviarParaApi(result);
-            
-            return result;
+            // Na thread do Playwright do slot: a virtual thread da requisição só espera o resultado
+            return browserInstance.executar(() -> {
+                DadosNotaResponseDTO result = performScraping(page, url, destino, uf);
+                
+                if (pageCaptureService.isAtivo()) {
+                    pageCaptureService.salvar(nfceUrl, page.content());
+                }
+                return result;
+            });
             
+        } catch (CaptchaException | NotaIndisponivelException e) {
+            log.error("✗ Erro ao realizar scraping: {}", e.getMessage(), e);
+            throw e;
         } catch (Exception e) {
             log.error("✗ Erro ao realizar scraping: {}", e.getMessage(), e);
             throw new ScrapingException("Erro ao realizar scraping: " + e.getMessage(), url, e);
@@ -84,34 +280,30 @@ public class NfeScrapingService {
         }
     }
     
+    /**
+     * A chave de cache é a chave de acesso de 44 dígitos, não a URL:
+     * formas diferentes de URL para a mesma nota compartilham a entrada.
+     */
     public String getCacheKey(String url) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] digest = md.digest(url.getBytes());
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            return String.valueOf(url.hashCode());
-        }
+        return nfceUrlParser.parse(url).chaveAcesso();
     }
     
-    private DadosNotaResponseDTO performScraping(Page page, String url) {
-        log.debug("Acessando: {}...", truncateUrl(url, 60));
+    /**
+     * @param url URL original da nota, usada no mapeamento
+     * @param destino URL efetivamente navegada (a original, ou o replay local)
+     */
+    private DadosNotaResponseDTO performScraping(Page page, String url, String destino, String uf) {
+        log.debug("Acessando: {}...", truncateUrl(destino, 60));
         
         try {
-            page.navigate(url, new Page.NavigateOptions()
+            scrapingMetrics.fase("navigate", uf, () -> page.navigate(destino, new Page.NavigateOptions()
                 .setTimeout(properties.getBrowser().getPageLoadTimeoutMs())
-                .setWaitUntil(WaitUntilState.COMMIT));
+                .setWaitUntil(WaitUntilState.COMMIT)));
             
             log.debug("Página carregada, URL atual: {}...", truncateUrl(page.url(), 70));
             
-            // Aguarda reCAPTCHA e conteúdo
-            if (!waitForContent(page)) {
-                throw new ScrapingException("Página não carregou - possível bloqueio por reCAPTCHA ou timeout", url);
-            }
+            // Termina no primeiro estado final: conteúdo, reCAPTCHA, erro do portal ou redirecionamento
+            scrapingMetrics.fase("wait_content", uf, () -> readinessDetector.aguardar(page, url, destino, uf));
             
         } catch (TimeoutError e) {
             log.error("Timeout ao acessar URL: {}", e.getMessage());
@@ -124,176 +316,35 @@ public class NfeScrapingService {
         }
         
         // Extrai dados
-        return extractData(page, url);
+        return extractData(page, url, uf);
     }
     
-    private boolean waitForContent(Page page) {
-        long startTime = System.currentTimeMillis();
-        log.debug("  → Aguardando conteúdo carregar...");
+    private DadosNotaResponseDTO extractData(Page page, String url, String uf) {
+        String payload = scrapingMetrics.fase("evaluate", uf, () -> (String) page.evaluate(EXTRACTION_SCRIPT));
         
+        // Qualquer falha no mapeamento é um campo em formato inesperado
+        long inicioMapeamento = System.nanoTime();
         try {
-            page.waitForSelector("#totalNota", new Page.WaitForSelectorOptions()
-                .setTimeout(properties.getBrowser().getTimeoutMs())
-                .setState(WaitForSelectorState.ATTACHED));
-            
-            long elapsed = System.currentTimeMillis() - startTime;
-            log.debug("Elemento 'totalNota' encontrado em {}ms", elapsed);
-            
-            page.waitForSelector("#totalNota", new Page.WaitForSelectorOptions()
-                .setTimeout(3000)
-                .setState(WaitForSelectorState.VISIBLE));
-            
-            log.debug("Página totalmente carregada em {}ms", System.currentTimeMillis() - startTime);
-            return true;
-            
-        } catch (TimeoutError e) {
-            long elapsed = System.currentTimeMillis() - startTime;
-            log.warn("Timeout após {}ms", elapsed);
-            log.warn("URL atual: {}", page.url());
-            
-            try {
-                String bodyText = page.locator("body").textContent(new Locator.TextContentOptions().setTimeout(2000));
-                log.warn("Conteúdo da página: {}", bodyText.substring(0, Math.min(300, bodyText.length())));
-            } catch (Exception ex) {
-                log.warn("Não foi possível ler conteúdo da página");
-            }
-            
-            return false;
-        } catch (Exception e) {
-            log.error("✗ Erro inesperado: {}", e.getMessage());
-            return false;
+            DadosNotaResponseDTO dados = nfeDataMapper.fromPacked(payload, url);
+            scrapingMetrics.registrarFase("mapping", uf, ScrapingMetrics.SUCESSO, System.nanoTime() - inicioMapeamento);
+            return dados;
+        } catch (RuntimeException e) {
+            scrapingMetrics.registrarFase("mapping", uf, ScrapingMetrics.ERRO_PARSE, System.nanoTime() - inicioMapeamento);
+            throw new ScrapingException("Erro ao interpretar dados da nota: " + e.getMessage(), url, e);
         }
     }
     
-    @SuppressWarnings("unchecked")
-    private DadosNotaResponseDTO extractData(Page page, String url) {
-        Matcher ufMatcher = REGEX_UF.matcher(url);
-        String ufCfe = ufMatcher.find() ? ufMatcher.group(1).toUpperCase() : "";
-        
-        Map<String, Object> dadosPrincipais = (Map<String, Object>) page.evaluate("""
-            () => {
-                const totalNota = document.querySelector('#totalNota');
-                const infos = document.querySelector('#infos');
-                const infoEstab = document.querySelector('.txtCenter');
-                
-                const linhasTotal = totalNota?.querySelectorAll('#linhaTotal');
-                const textElements = infoEstab?.querySelectorAll('.text');
-                
-                return {
-                    qtdItens: linhasTotal?.[0]?.querySelector('span')?.textContent || '',
-                    valorTotal: linhasTotal?.[1]?.querySelector('span')?.textContent || '',
-                    chaveAcesso: infos?.querySelector('.chave')?.textContent || '',
-                    nomeEstab: infoEstab?.querySelector('#u20')?.textContent || '',
-                    cpfCnpj: textElements?.[0]?.textContent || '',
-                    endereco: textElements?.[1]?.textContent || ''
-                };
-            }
-        """);
-        
-        String cpfCnpjRaw = extractAfterColon((String) dadosPrincipais.get("cpfCnpj"));
-        String cpfCnpj = cpfCnpjRaw.replaceAll("[.\\-/]", "");
-        
-        EstabelecimentoDTO estabelecimento = EstabelecimentoDTO.builder()
-            .nomeEstabelecimento((String) dadosPrincipais.get("nomeEstab"))
-            .cpfCnpj(cpfCnpj)
-            .endereco(clearAddress((String) dadosPrincipais.get("endereco")))
-            .build();
-        
-        List<Map<String, String>> produtosData = (List<Map<String, String>>) page.evaluate("""
-            () => {
-                const produtos = [];
-                const rows = document.querySelectorAll("tr[id^='Item +']");
-                
-                rows.forEach(row => {
-                    const colunas = row.querySelectorAll('td');
-                    if (colunas.length >= 2) {
-                        const col0 = colunas[0];
-                        produtos.push({
-                            nome: col0.querySelector('.txtTit')?.textContent || '',
-                            qtd: col0.querySelector('.Rqtd')?.textContent || '',
-                            un: col0.querySelector('.RUN')?.textContent || '',
-                            vlUnit: col0.querySelector('.RvlUnit')?.textContent || '',
-                            vlTotal: colunas[1].querySelector('span')?.textContent || ''
-                        });
-                    }
-                });
-                
-                return produtos;
-            }
-        """);
-        
-        List<ItemNotaDTO> itensNota = new ArrayList<>();
-        for (Map<String, String> prod : produtosData) {
-            try {
-                ItemNotaDTO item = ItemNotaDTO.builder()
-                    .descricao(prod.get("nome"))
-                    .quantidade(extractNumeric(extractAfterColon(prod.get("qtd"))))
-                    .tipoUnidade(extractAfterColon(prod.get("un")))
-                    .valorUnitario(extractNumeric(extractAfterColon(prod.get("vlUnit"))))
-                    .valorTotal(extractNumeric(prod.get("vlTotal")))
-                    .build();
-                itensNota.add(item);
-            } catch (Exception e) {
-                log.warn("  ⚠ Erro ao processar produto: {}", e.getMessage());
-            }
-        }
-        
-        NotaDTO nota = NotaDTO.builder()
-            .quantidadeItens((int) extractNumeric((String) dadosPrincipais.get("qtdItens")))
-            .valorTotal(extractNumeric((String) dadosPrincipais.get("valorTotal")))
-            .usuario(3)
-            .ufCfe(ufCfe)
-            .urlCfe(url + " via scrapping docker")
-            .chaveAcesso(dadosPrincipais.get("chaveAcesso") + " via scrapping docker")
-            .build();
-
-        return DadosNotaResponseDTO.builder()
-            .estabelecimento(estabelecimento)
-            .itensNota(itensNota)
-            .nota(nota)
-            .build();
-    }
-    
+    /**
+     * Grava a nota no outbox; o envio à API Poupa Compra acontece em background.
+     */
     private void enviarParaApi(DadosNotaResponseDTO dadosNota) {
         try {
-            log.info("Enviando dados da nota para a API Poupa Compra");
-            poupaCompraApiClient.salvarNota(dadosNota);
-            log.info("Dados da nota enviados com sucesso para a API");
+            outboxService.enqueue(dadosNota);
         } catch (Exception e) {
             log.error("Erro ao enviar dados para a API Poupa Compra: {}", e.getMessage(), e);
         }
     }
 
-    public static String clearAddress(String texto) {
-        if (texto == null) return null;
-
-        return texto.replace("\n", "")
-                    .replace("\t", "")
-                    .replaceAll("[ \\u00A0]{2,}", "") 
-                    .trim();
-    }
-    
-    private double extractNumeric(String text) {
-        if (text == null || text.isBlank()) {
-            return 0;
-        }
-        String cleaned = text.replaceAll("[^\\d.,]", "").replace(",", ".");
-        try {
-            return Double.parseDouble(cleaned);
-        } catch (NumberFormatException e) {
-            return 0;
-        }
-    }
-    
-    private String extractAfterColon(String text) {
-        if (text == null) return "";
-        int colonIndex = text.lastIndexOf(':');
-        if (colonIndex >= 0 && colonIndex < text.length() - 1) {
-            return text.substring(colonIndex + 1).trim();
-        }
-        return text.trim();
-    }
-    
     private String truncateUrl(String url, int maxLength) {
         if (url == null) return "";
         return url.length() > maxLength ? url.substring(0, maxLength) + "..." : url;
@@ -0,0 +1,105 @@
+package br.com.poupacompra.scraping.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.dto.EstabelecimentoDTO;
+import br.com.poupacompra.scraping.dto.ItemNotaDTO;
+import br.com.poupacompra.scraping.dto.NotaDTO;
+
+/**
+ * Serialização binária compacta de {@link DadosNotaResponseDTO} para o cache em disco.
+ *
+ * Formato: byte de versão, o instante em que a nota foi obtida do portal e os
+ * campos em ordem fixa (strings UTF-8 com prefixo de tamanho, números como
+ * double/int), tudo comprimido com deflate. A versão 1 não tinha o instante.
+ */
+public final class NotaBinaryCodec {
+
+    private static final byte VERSAO = 2;
+    private static final byte VERSAO_SEM_DATA = 1;
+
+    /**
+     * @param obtidaEm epoch millis em que a nota foi extraída, ou 0 se desconhecido (versão 1)
+     */
+    public record NotaDatada(DadosNotaResponseDTO dados, long obtidaEm) {}
+
+    private NotaBinaryCodec() {
+    }
+
+    public static byte[] encode(DadosNotaResponseDTO dados, long obtidaEm) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (DataOutputStream out = new DataOutputStream(
+                new DeflaterOutputStream(bytes, new Deflater(Deflater.BEST_SPEED)))) {
+            out.writeByte(VERSAO);
+            out.writeLong(obtidaEm);
+
+            EstabelecimentoDTO estab = dados.estabelecimento();
+            writeString(out, estab.nomeEstabelecimento());
+            writeString(out, estab.cpfCnpj());
+            writeString(out, estab.endereco());
+
+            NotaDTO nota = dados.nota();
+            out.writeInt(nota.quantidadeItens());
+            out.writeDouble(nota.valorTotal());
+            out.writeInt(nota.usuario());
+            writeString(out, nota.ufCfe());
+            writeString(out, nota.urlCfe());
+            writeString(out, nota.chaveAcesso());
+
+            out.writeInt(dados.itensNota().size());
+            for (ItemNotaDTO item : dados.itensNota()) {
+                writeString(out, item.descricao());
+                out.writeDouble(item.quantidade());
+                writeString(out, item.tipoUnidade());
+                out.writeDouble(item.valorUnitario());
+                out.writeDouble(item.valorTotal());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static NotaDatada decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            byte versao = in.readByte();
+            if (versao != VERSAO && versao != VERSAO_SEM_DATA) {
+                throw new IOException("Versão de codec não suportada: " + versao);
+            }
+            long obtidaEm = versao == VERSAO ? in.readLong() : 0;
+
+            EstabelecimentoDTO estabelecimento = new EstabelecimentoDTO(readString(in), readString(in), readString(in));
+            NotaDTO nota = new NotaDTO(in.readInt(), in.readDouble(), in.readInt(),
+                readString(in), readString(in), readString(in));
+
+            int quantidade = in.readInt();
+            List<ItemNotaDTO> itens = new ArrayList<>(quantidade);
+            for (int i = 0; i < quantidade; i++) {
+                itens.add(new ItemNotaDTO(readString(in), in.readDouble(), readString(in), in.readDouble(), in.readDouble()));
+            }
+
+            return new NotaDatada(new DadosNotaResponseDTO(estabelecimento, itens, nota), obtidaEm);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
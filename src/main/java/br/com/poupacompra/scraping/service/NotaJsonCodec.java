@@ -0,0 +1,388 @@
+package br.com.poupacompra.scraping.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.dto.EstabelecimentoDTO;
+import br.com.poupacompra.scraping.dto.ItemNotaDTO;
+import br.com.poupacompra.scraping.dto.NotaDTO;
+
+/**
+ * Formato das notas no L1: o JSON final da resposta, serializado uma vez na
+ * gravação e comprimido com deflate sobre um dicionário compartilhado.
+ *
+ * Num acerto, os bytes são descomprimidos direto no corpo da resposta, sem
+ * montar o DTO nem passar pelo Jackson. O dicionário é aprendido das próprias
+ * notas: os trechos de estabelecimento e as descrições de produto que mais se
+ * repetem, mais o esqueleto das chaves JSON. Cada versão é imutável e fica
+ * referenciada pelas entradas comprimidas com ela; a cada rebuildEvery notas
+ * uma versão nova passa a valer para as gravações seguintes, e as contagens
+ * caem pela metade, para o dicionário acompanhar o que está sendo gravado agora.
+ *
+ * O deflate com dicionário não é decodificável pelo cliente (nem o
+ * Content-Encoding deflate prevê dicionário), por isso a descompressão é
+ * no servidor.
+ */
+public class NotaJsonCodec {
+
+    private static final Logger log = LoggerFactory.getLogger(NotaJsonCodec.class);
+
+    /**
+     * Janela do deflate: bytes do dicionário além disso não são alcançáveis.
+     */
+    private static final int TAMANHO_DICIONARIO = 32 * 1024;
+
+    private static final int MAX_CANDIDATOS = 20_000;
+    private static final int MAX_INFLATERS = 64;
+    private static final int BUFFER = 8 * 1024;
+
+    /**
+     * Entrada do L1.
+     *
+     * @param tamanho bytes do JSON descomprimido (Content-Length da resposta)
+     * @param obtidaEm epoch millis em que a nota foi extraída do portal, mantido
+     *                 quando a entrada é promovida do disco ou do compartilhado
+     */
+    public record NotaSerializada(byte[] comprimido, int tamanho, Dicionario dicionario, long obtidaEm) {
+
+        /**
+         * Cabeçalho do array, o record, a chave (44 dígitos) e o nó do Caffeine.
+         */
+        private static final int BYTES_POR_ENTRADA = 192;
+
+        /**
+         * Bytes que a entrada ocupa no heap, mais a sua parte do dicionário:
+         * cada versão é usada por {@link Dicionario#notas()} serializações, e
+         * enquanto elas estão no L1 a soma das partes cobre o dicionário retido.
+         */
+        public int bytesRetidos() {
+            return comprimido.length + BYTES_POR_ENTRADA + dicionario.bytesPorNota();
+        }
+    }
+
+    /**
+     * @param notas serializações feitas com a versão antes da próxima substituí-la
+     */
+    public record Dicionario(int versao, byte[] bytes, int notas) {
+
+        int bytesPorNota() {
+            return (bytes.length + notas - 1) / notas;
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final int reconstruirACada;
+    private final byte[] esqueleto;
+
+    private final Map<String, AtomicLong> frequencias = new ConcurrentHashMap<>();
+    private final AtomicLong desdeReconstrucao = new AtomicLong();
+    private final ReentrantLock reconstrucaoLock = new ReentrantLock();
+    private volatile Dicionario atual;
+
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inflatersLivres = new AtomicInteger();
+
+    private final LongAdder serializadas = new LongAdder();
+    private final LongAdder bytesComprimidos = new LongAdder();
+    private final LongAdder bytesJson = new LongAdder();
+    private final LongAdder bytesObjetos = new LongAdder();
+    private final LongAdder escritas = new LongAdder();
+    private final LongAdder nanosEscrita = new LongAdder();
+
+    /**
+     * @param reconstruirACada notas serializadas entre uma versão do dicionário e a seguinte
+     */
+    public NotaJsonCodec(ObjectMapper objectMapper, int reconstruirACada) {
+        this.objectMapper = objectMapper;
+        this.reconstruirACada = Math.max(1, reconstruirACada);
+        this.esqueleto = esqueleto(objectMapper);
+        this.atual = new Dicionario(0, esqueleto, this.reconstruirACada);
+    }
+
+    /**
+     * JSON de uma nota de um item com strings vazias: todas as chaves, na
+     * ordem em que o Jackson as escreve, e as unidades mais comuns.
+     */
+    private static byte[] esqueleto(ObjectMapper objectMapper) {
+        DadosNotaResponseDTO modelo = DadosNotaResponseDTO.builder()
+            .estabelecimento(new EstabelecimentoDTO("", "", ""))
+            .itensNota(List.of(
+                new ItemNotaDTO("", 1.0, "UN", 0.0, 0.0),
+                new ItemNotaDTO("", 1.0, "KG", 0.0, 0.0)))
+            .nota(new NotaDTO(0, 0.0, 0, "", "", ""))
+            .build();
+        try {
+            return objectMapper.writeValueAsBytes(modelo);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("DTO de nota não serializável", e);
+        }
+    }
+
+    /**
+     * Serializa e comprime a nota com a versão atual do dicionário, como obtida agora.
+     */
+    public NotaSerializada serializar(DadosNotaResponseDTO dados) {
+        return serializar(dados, System.currentTimeMillis());
+    }
+
+    /**
+     * Serializa e comprime a nota com a versão atual do dicionário.
+     *
+     * @param obtidaEm epoch millis em que a nota foi extraída do portal
+     */
+    public NotaSerializada serializar(DadosNotaResponseDTO dados, long obtidaEm) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(dados);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        aprender(dados);
+        Dicionario dicionario = atual;
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setDictionary(dicionario.bytes());
+            deflater.setInput(json);
+            deflater.finish();
+            ByteArrayOutputStream saida = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+            byte[] buffer = new byte[BUFFER];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                saida.write(buffer, 0, n);
+            }
+            NotaSerializada nota = new NotaSerializada(saida.toByteArray(), json.length, dicionario, obtidaEm);
+
+            serializadas.increment();
+            bytesComprimidos.add(nota.comprimido().length);
+            bytesJson.add(json.length);
+            bytesObjetos.add(estimarBytesObjetos(dados));
+            return nota;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Escreve o JSON da nota na saída, descomprimindo por partes.
+     */
+    public void escrever(NotaSerializada nota, OutputStream out) throws IOException {
+        long inicio = System.nanoTime();
+        inflar(nota, out);
+        escritas.increment();
+        nanosEscrita.add(System.nanoTime() - inicio);
+    }
+
+    private void inflar(NotaSerializada nota, OutputStream out) throws IOException {
+        Inflater inflater = emprestarInflater();
+        try {
+            inflater.setDictionary(nota.dicionario().bytes());
+            inflater.setInput(nota.comprimido());
+            byte[] buffer = new byte[Math.min(nota.tamanho(), BUFFER)];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Nota em cache truncada");
+                }
+                out.write(buffer, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Nota em cache corrompida", e);
+        } finally {
+            devolverInflater(inflater);
+        }
+    }
+
+    /**
+     * Volta ao DTO, para quem precisa dos campos (lotes, streaming em eventos).
+     */
+    public DadosNotaResponseDTO ler(NotaSerializada nota) {
+        ByteArrayOutputStream json = new ByteArrayOutputStream(nota.tamanho());
+        try {
+            inflar(nota, json);
+            return objectMapper.readValue(json.toByteArray(), DadosNotaResponseDTO.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Inflater emprestarInflater() {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            return new Inflater(true);
+        }
+        inflatersLivres.decrementAndGet();
+        return inflater;
+    }
+
+    private void devolverInflater(Inflater inflater) {
+        inflater.reset();
+        // Com virtual threads a concorrência de pico é alta; só uma parte fica guardada
+        if (inflatersLivres.incrementAndGet() <= MAX_INFLATERS) {
+            inflaters.offer(inflater);
+        } else {
+            inflatersLivres.decrementAndGet();
+            inflater.end();
+        }
+    }
+
+    private void aprender(DadosNotaResponseDTO dados) {
+        try {
+            contar("\"estabelecimento\":" + objectMapper.writeValueAsString(dados.estabelecimento()));
+            for (ItemNotaDTO item : dados.itensNota()) {
+                if (item.descricao() != null && !item.descricao().isEmpty()) {
+                    contar("{\"descricao\":" + objectMapper.writeValueAsString(item.descricao()) + ",\"quantidade\":");
+                }
+            }
+        } catch (JsonProcessingException e) {
+            return;
+        }
+
+        if (desdeReconstrucao.incrementAndGet() >= reconstruirACada && reconstrucaoLock.tryLock()) {
+            try {
+                desdeReconstrucao.set(0);
+                reconstruir();
+            } finally {
+                reconstrucaoLock.unlock();
+            }
+        }
+    }
+
+    private void contar(String trecho) {
+        AtomicLong contagem = frequencias.get(trecho);
+        if (contagem == null) {
+            // Cheio, só os já conhecidos contam até a próxima limpeza
+            if (frequencias.size() >= MAX_CANDIDATOS) {
+                return;
+            }
+            contagem = frequencias.computeIfAbsent(trecho, k -> new AtomicLong());
+        }
+        contagem.incrementAndGet();
+    }
+
+    /**
+     * Nova versão: trechos vistos mais de uma vez, pelo quanto economizam
+     * (frequência x tamanho), com os de maior peso no fim do dicionário, que
+     * é onde o deflate os alcança com as distâncias mais curtas.
+     */
+    private void reconstruir() {
+        List<Map.Entry<String, Long>> candidatos = new ArrayList<>();
+        frequencias.forEach((trecho, contagem) -> {
+            if (contagem.get() > 1) {
+                candidatos.add(Map.entry(trecho, contagem.get() * trecho.length()));
+            }
+        });
+        candidatos.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+
+        List<byte[]> escolhidos = new ArrayList<>();
+        int espaco = TAMANHO_DICIONARIO - esqueleto.length;
+        for (Map.Entry<String, Long> candidato : candidatos) {
+            byte[] bytes = candidato.getKey().getBytes(StandardCharsets.UTF_8);
+            if (bytes.length <= espaco) {
+                escolhidos.add(bytes);
+                espaco -= bytes.length;
+            }
+        }
+
+        ByteArrayOutputStream dicionario = new ByteArrayOutputStream(TAMANHO_DICIONARIO);
+        for (int i = escolhidos.size() - 1; i >= 0; i--) {
+            dicionario.writeBytes(escolhidos.get(i));
+        }
+        dicionario.writeBytes(esqueleto);
+
+        Dicionario novo = new Dicionario(atual.versao() + 1, dicionario.toByteArray(), reconstruirACada);
+        atual = novo;
+
+        // Meia-vida de uma reconstrução: trechos que pararam de aparecer perdem
+        // peso e saem, dando lugar aos novos mesmo com o limite de candidatos
+        frequencias.values().removeIf(contagem -> contagem.updateAndGet(c -> c / 2) == 0);
+        log.debug("Dicionário de notas v{}: {} trechos, {} bytes", novo.versao(), escolhidos.size(), novo.bytes().length);
+    }
+
+    /**
+     * Estimativa do que a nota ocupa como DTO no heap (oops comprimidos,
+     * strings Latin-1 compactas), para comparar com o formato serializado.
+     */
+    public static long estimarBytesObjetos(DadosNotaResponseDTO dados) {
+        EstabelecimentoDTO estab = dados.estabelecimento();
+        NotaDTO nota = dados.nota();
+        List<ItemNotaDTO> itens = dados.itensNota();
+
+        long total = 24;
+        total += 24 + bytesString(estab.nomeEstabelecimento()) + bytesString(estab.cpfCnpj()) + bytesString(estab.endereco());
+        total += 40 + bytesString(nota.ufCfe()) + bytesString(nota.urlCfe()) + bytesString(nota.chaveAcesso());
+        total += 24 + alinhar(16 + 4L * itens.size());
+        for (ItemNotaDTO item : itens) {
+            total += 48 + bytesString(item.descricao()) + bytesString(item.tipoUnidade());
+        }
+        return total;
+    }
+
+    private static long bytesString(String s) {
+        if (s == null) {
+            return 0;
+        }
+        int bytesPorChar = 1;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) {
+                bytesPorChar = 2;
+                break;
+            }
+        }
+        return 24 + alinhar(16 + (long) s.length() * bytesPorChar);
+    }
+
+    private static long alinhar(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    public Map<String, Object> getStats() {
+        long total = serializadas.sum();
+        long comprimido = bytesComprimidos.sum();
+        long json = bytesJson.sum();
+        long objetos = bytesObjetos.sum();
+        long totalEscritas = escritas.sum();
+        Dicionario dicionario = atual;
+        return Map.of(
+            "dicionario", Map.of(
+                "versao", dicionario.versao(),
+                "bytes", dicionario.bytes().length,
+                "candidatos", frequencias.size()
+            ),
+            "serializadas", total,
+            "bytesPorEntrada", Map.of(
+                "comprimido", total > 0 ? comprimido / total : 0,
+                "json", total > 0 ? json / total : 0,
+                "objetos", total > 0 ? objetos / total : 0
+            ),
+            "taxaCompressao", String.format("%.2f", comprimido > 0 ? (double) json / comprimido : 0),
+            "escritas", totalEscritas,
+            "escritaMediaUs", String.format("%.1f", totalEscritas > 0 ? nanosEscrita.sum() / 1000.0 / totalEscritas : 0)
+        );
+    }
+}
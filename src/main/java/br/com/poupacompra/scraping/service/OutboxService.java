@@ -0,0 +1,383 @@
+package br.com.poupacompra.scraping.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.poupacompra.scraping.client.PoupaCompraApiClient;
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.exception.ScrapingException;
+import feign.FeignException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Outbox local para envio das notas à API Poupa Compra.
+ *
+ * As notas são gravadas em um log append-only (uma linha JSON por nota) e
+ * enviadas em lotes por um worker agendado, fora do caminho da requisição.
+ * O offset do próximo registro a enviar é persistido em arquivo separado,
+ * então notas pendentes sobrevivem a reinícios. Falhas de envio são
+ * repetidas com backoff exponencial; erros 4xx descartam o registro.
+ */
+@Service
+public class OutboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxService.class);
+
+    private static final String LOG_FILE = "outbox.log";
+    private static final String OFFSET_FILE = "outbox.offset";
+
+    private final ScrapingProperties properties;
+    private final PoupaCompraApiClient poupaCompraApiClient;
+    private final ObjectMapper objectMapper;
+    private final ScrapingMetrics scrapingMetrics;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong pendentes = new AtomicLong();
+    private final AtomicLong enviadas = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    private final Counter corrompidas;
+
+    private Path offsetPath;
+    private FileChannel logChannel;
+    private long offset;
+    private int falhasConsecutivas;
+    private long proximaTentativa;
+
+    private record Registro(DadosNotaResponseDTO nota, long fim) {}
+
+    /**
+     * Registros lidos e o fim da última linha consumida, incluindo as
+     * descartadas por não decodificarem. Uma linha descartada depois de um
+     * registro estende o fim dele.
+     */
+    private record Lote(List<Registro> registros, long fim) {}
+
+    public OutboxService(
+            ScrapingProperties properties,
+            PoupaCompraApiClient poupaCompraApiClient,
+            ObjectMapper objectMapper,
+            ScrapingMetrics scrapingMetrics,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.poupaCompraApiClient = poupaCompraApiClient;
+        this.objectMapper = objectMapper;
+        this.scrapingMetrics = scrapingMetrics;
+
+        Gauge.builder("scraping.outbox.pending", pendentes, AtomicLong::get)
+            .description("Notas aguardando envio à API")
+            .register(meterRegistry);
+        this.corrompidas = Counter.builder("scraping.outbox.corrupted")
+            .description("Linhas do outbox descartadas por não decodificarem")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            Path dir = Path.of(properties.getOutbox().getDirectory());
+            Files.createDirectories(dir);
+            offsetPath = dir.resolve(OFFSET_FILE);
+
+            logChannel = FileChannel.open(dir.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            descartarLinhaIncompleta();
+            offset = Files.exists(offsetPath)
+                ? Long.parseLong(Files.readString(offsetPath).trim())
+                : 0;
+            offset = Math.min(offset, logChannel.size());
+            pendentes.set(contarPendentes());
+
+            log.info("Outbox em {}: {} notas pendentes", dir.toAbsolutePath(), pendentes.get());
+        } catch (IOException e) {
+            throw new ScrapingException("Falha ao abrir outbox", e);
+        }
+    }
+
+    /**
+     * Remove do fim do log uma linha sem quebra final, deixada por um crash no
+     * meio da gravação. Sem isso, a próxima nota seria anexada a ela e as duas
+     * se perderiam como uma única linha que não decodifica.
+     */
+    private void descartarLinhaIncompleta() throws IOException {
+        long tamanho = logChannel.size();
+        if (tamanho == 0) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long fim = tamanho;
+        while (fim > 0) {
+            long inicio = Math.max(0, fim - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (fim - inicio));
+            logChannel.read(buffer, inicio);
+            int i = buffer.position() - 1;
+            while (i >= 0 && buffer.get(i) != '\n') {
+                i--;
+            }
+            if (i >= 0) {
+                fim = inicio + i + 1;
+                break;
+            }
+            fim = inicio;
+        }
+
+        if (fim < tamanho) {
+            corrompidas.increment();
+            log.error("Outbox terminava em uma linha incompleta ({} bytes), descartando", tamanho - fim);
+            logChannel.truncate(fim);
+            logChannel.force(false);
+        }
+    }
+
+    /**
+     * Grava a nota no outbox. O envio à API acontece em background.
+     */
+    public void enqueue(DadosNotaResponseDTO nota) {
+        try {
+            byte[] linha = (objectMapper.writeValueAsString(nota) + "\n").getBytes(StandardCharsets.UTF_8);
+            // ReentrantLock: o fsync sob synchronized prenderia a virtual thread ao carrier
+            lock.lock();
+            try {
+                logChannel.write(ByteBuffer.wrap(linha), logChannel.size());
+                if (properties.getOutbox().isFsync()) {
+                    logChannel.force(false);
+                }
+                pendentes.incrementAndGet();
+            } finally {
+                lock.unlock();
+            }
+            log.debug("Nota gravada no outbox ({} pendentes)", pendentes.get());
+        } catch (IOException e) {
+            // Sem outbox, tenta o envio direto para não perder a nota
+            log.error("Erro ao gravar nota no outbox, enviando diretamente: {}", e.getMessage(), e);
+            salvarNota(nota);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${scraping.outbox.flush-interval-ms:1000}")
+    public void flush() {
+        if (pendentes.get() == 0 || System.currentTimeMillis() < proximaTentativa) {
+            return;
+        }
+
+        try {
+            Lote lote = lerLote(properties.getOutbox().getBatchSize());
+            if (lote.registros().isEmpty()) {
+                // Só linhas descartadas
+                avancarOffset(lote.fim());
+                return;
+            }
+
+            enviar(lote.registros());
+            falhasConsecutivas = 0;
+            proximaTentativa = 0;
+
+        } catch (Exception e) {
+            falhas.incrementAndGet();
+            falhasConsecutivas++;
+            long backoff = Math.min(
+                properties.getOutbox().getMaxBackoffMs(),
+                properties.getOutbox().getInitialBackoffMs() << Math.min(falhasConsecutivas - 1, 20));
+            proximaTentativa = System.currentTimeMillis() + backoff;
+            log.warn("Erro ao enviar lote do outbox ({} falhas seguidas), nova tentativa em {}ms: {}",
+                falhasConsecutivas, backoff, e.getMessage());
+        }
+    }
+
+    /**
+     * Envia o lote e avança o offset. Usa o endpoint em lote quando habilitado;
+     * senão envia nota a nota, avançando o offset a cada sucesso para não
+     * reenviar em caso de falha parcial.
+     */
+    private void salvarNota(DadosNotaResponseDTO nota) {
+        String uf = nota.nota() != null ? nota.nota().ufCfe() : null;
+        scrapingMetrics.fase("salvar_nota", uf, () -> poupaCompraApiClient.salvarNota(nota));
+    }
+
+    private void enviar(List<Registro> lote) throws IOException {
+        if (properties.getOutbox().isBatchEndpoint()) {
+            try {
+                List<DadosNotaResponseDTO> notas = lote.stream().map(Registro::nota).toList();
+                scrapingMetrics.fase("salvar_nota", "lote", () -> poupaCompraApiClient.salvarNotas(notas));
+                enviadas.addAndGet(lote.size());
+                log.info("Lote de {} notas enviado para a API", lote.size());
+            } catch (FeignException e) {
+                if (!erroDoCliente(e)) {
+                    throw e;
+                }
+                descartadas.addAndGet(lote.size());
+                log.error("API rejeitou lote de {} notas ({}), descartando", lote.size(), e.status());
+            }
+            avancarOffset(lote.get(lote.size() - 1).fim());
+            return;
+        }
+
+        for (Registro registro : lote) {
+            try {
+                salvarNota(registro.nota());
+                enviadas.incrementAndGet();
+            } catch (FeignException e) {
+                if (!erroDoCliente(e)) {
+                    throw e;
+                }
+                descartadas.incrementAndGet();
+                log.error("API rejeitou nota {} ({}), descartando", registro.nota().nota().chaveAcesso(), e.status());
+            }
+            avancarOffset(registro.fim());
+        }
+        log.info("{} notas enviadas para a API", lote.size());
+    }
+
+    private static boolean erroDoCliente(FeignException e) {
+        return e.status() >= 400 && e.status() < 500;
+    }
+
+    /**
+     * Lê até {@code tamanho} linhas completas a partir do offset. Uma linha
+     * ainda sem quebra final (gravação em andamento) fica para o próximo ciclo.
+     * Uma linha que não decodifica (gravação interrompida por um crash, schema
+     * antigo) é descartada: sem isso, o offset nunca passaria dela.
+     */
+    private Lote lerLote(int tamanho) throws IOException {
+        List<Registro> lote = new ArrayList<>(tamanho);
+        ByteArrayOutputStream linha = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long posicao = offset;
+        long fim = offset;
+
+        while (lote.size() < tamanho) {
+            buffer.clear();
+            int lidos = logChannel.read(buffer, posicao);
+            if (lidos <= 0) {
+                break;
+            }
+            int i = 0;
+            for (; i < lidos && lote.size() < tamanho; i++) {
+                byte b = buffer.get(i);
+                if (b != '\n') {
+                    linha.write(b);
+                    continue;
+                }
+                fim = posicao + i + 1;
+                if (linha.size() > 0) {
+                    try {
+                        DadosNotaResponseDTO nota = objectMapper.readValue(linha.toByteArray(), DadosNotaResponseDTO.class);
+                        lote.add(new Registro(nota, fim));
+                    } catch (JacksonException e) {
+                        if (!lote.isEmpty()) {
+                            lote.set(lote.size() - 1, new Registro(lote.get(lote.size() - 1).nota(), fim));
+                        }
+                        corrompidas.increment();
+                        log.error("Registro do outbox na posição {} ({} bytes) não decodifica, descartando: {}",
+                            fim - linha.size() - 1, linha.size(), e.getOriginalMessage());
+                    }
+                }
+                linha.reset();
+            }
+            posicao += i;
+        }
+        return new Lote(lote, fim);
+    }
+
+    /**
+     * Persiste o novo offset e compacta o log quando tudo foi enviado.
+     */
+    private void avancarOffset(long novoOffset) throws IOException {
+        if (novoOffset <= offset) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            pendentes.addAndGet(-contarLinhas(offset, novoOffset));
+            offset = novoOffset;
+
+            if (offset == logChannel.size()) {
+                logChannel.truncate(0);
+                logChannel.force(false);
+                offset = 0;
+            }
+
+            Path tmp = offsetPath.resolveSibling(OFFSET_FILE + ".tmp");
+            Files.writeString(tmp, Long.toString(offset));
+            Files.move(tmp, offsetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long contarPendentes() throws IOException {
+        return contarLinhas(offset, logChannel.size());
+    }
+
+    private long contarLinhas(long inicio, long fim) throws IOException {
+        long linhas = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long posicao = inicio;
+        while (posicao < fim) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), fim - posicao));
+            int lidos = logChannel.read(buffer, posicao);
+            if (lidos <= 0) {
+                break;
+            }
+            for (int i = 0; i < lidos; i++) {
+                if (buffer.get(i) == '\n') {
+                    linhas++;
+                }
+            }
+            posicao += lidos;
+        }
+        return linhas;
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "pendentes", pendentes.get(),
+            "enviadas", enviadas.get(),
+            "descartadas", descartadas.get(),
+            "corrompidas", (long) corrompidas.count(),
+            "falhas", falhas.get(),
+            "falhasConsecutivas", falhasConsecutivas
+        );
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            if (logChannel != null) {
+                logChannel.force(true);
+                logChannel.close();
+            }
+        } catch (IOException e) {
+            log.warn("Erro ao fechar outbox", e);
+        }
+    }
+}
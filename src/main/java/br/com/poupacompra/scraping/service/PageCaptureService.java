@@ -0,0 +1,64 @@
+package br.com.poupacompra.scraping.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.service.NfceUrlParser.NfceUrl;
+
+/**
+ * Modo de captura: grava o HTML de cada nota extraída com sucesso em
+ * {directory}/{UF}/{chave}.html, o formato lido pelo {@link ReplayServer}.
+ *
+ * Do caminho via browser é gravado o DOM já renderizado (page.content()),
+ * então a página capturada não depende de JavaScript no replay.
+ */
+@Service
+public class PageCaptureService {
+
+    private static final Logger log = LoggerFactory.getLogger(PageCaptureService.class);
+
+    private final ScrapingProperties properties;
+    private final AtomicLong capturadas = new AtomicLong();
+
+    public PageCaptureService(ScrapingProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Captura só faz sentido contra os portais reais, não contra o replay.
+     */
+    public boolean isAtivo() {
+        return properties.getCapture().isEnabled() && !properties.getReplay().isEnabled();
+    }
+
+    public void salvar(NfceUrl nfceUrl, String html) {
+        if (!isAtivo() || html == null || html.isEmpty()) {
+            return;
+        }
+
+        Path arquivo = Path.of(properties.getCapture().getDirectory(), nfceUrl.uf(), nfceUrl.chaveAcesso() + ".html");
+        try {
+            Files.createDirectories(arquivo.getParent());
+            Path tmp = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+            Files.writeString(tmp, html, StandardCharsets.UTF_8);
+            Files.move(tmp, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            capturadas.incrementAndGet();
+            log.debug("Página capturada: {}", arquivo);
+        } catch (IOException e) {
+            log.warn("Erro ao capturar página da nota {}: {}", nfceUrl.chaveAcesso(), e.getMessage());
+        }
+    }
+
+    public long getCapturadas() {
+        return capturadas.get();
+    }
+}
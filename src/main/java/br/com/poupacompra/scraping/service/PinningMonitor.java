@@ -0,0 +1,115 @@
+package br.com.poupacompra.scraping.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Acompanha, via JFR, virtual threads que bloquearam presas ao carrier
+ * (jdk.VirtualThreadPinned): synchronized em volta de I/O, código nativo...
+ * Cada uma tira um carrier de circulação enquanto dura, e com poucos carriers
+ * a aplicação inteira para.
+ *
+ * O caminho do scraping não deveria gerar nenhum evento: o Playwright roda nas
+ * {@link BrowserThread}s, que são de plataforma. Os eventos são agrupados pelo
+ * primeiro frame fora do JDK, que é onde a correção costuma estar.
+ *
+ * Métrica: scraping.virtual.pinned (origem), com a duração de cada evento.
+ */
+@Component
+public class PinningMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(PinningMonitor.class);
+
+    private static final String EVENTO = "jdk.VirtualThreadPinned";
+
+    private final ScrapingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicLong> porOrigem = new ConcurrentHashMap<>();
+    private final AtomicLong total = new AtomicLong();
+
+    private RecordingStream stream;
+
+    public PinningMonitor(ScrapingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        ScrapingProperties.Pinning config = properties.getPinning();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        try {
+            stream = new RecordingStream();
+            stream.enable(EVENTO).withThreshold(Duration.ofMillis(config.getThresholdMs())).withStackTrace();
+            stream.onEvent(EVENTO, this::registrar);
+            stream.startAsync();
+            log.info("Monitor de pinning ativo (limite de {}ms)", config.getThresholdMs());
+        } catch (RuntimeException e) {
+            // JFR desabilitado na JVM não impede a aplicação de subir
+            log.warn("Monitor de pinning indisponível: {}", e.getMessage());
+            stream = null;
+        }
+    }
+
+    private void registrar(RecordedEvent evento) {
+        String origem = origem(evento);
+        total.incrementAndGet();
+        porOrigem.computeIfAbsent(origem, k -> new AtomicLong()).incrementAndGet();
+        Timer.builder("scraping.virtual.pinned")
+            .description("Virtual threads bloqueadas presas ao carrier")
+            .tag("origem", origem)
+            .register(meterRegistry)
+            .record(evento.getDuration().toNanos(), TimeUnit.NANOSECONDS);
+        log.warn("Virtual thread presa ao carrier por {}ms em {}", evento.getDuration().toMillis(), origem);
+    }
+
+    private static String origem(RecordedEvent evento) {
+        if (evento.getStackTrace() == null) {
+            return "desconhecida";
+        }
+        for (RecordedFrame frame : evento.getStackTrace().getFrames()) {
+            String classe = frame.getMethod().getType().getName();
+            if (!classe.startsWith("java.") && !classe.startsWith("jdk.") && !classe.startsWith("sun.")) {
+                return classe + "." + frame.getMethod().getName();
+            }
+        }
+        return "jdk";
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Long> origens = new TreeMap<>();
+        porOrigem.forEach((origem, eventos) -> origens.put(origem, eventos.get()));
+        return Map.of(
+            "ativo", stream != null,
+            "eventos", total.get(),
+            "porOrigem", origens
+        );
+    }
+
+    @PreDestroy
+    public void close() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+}
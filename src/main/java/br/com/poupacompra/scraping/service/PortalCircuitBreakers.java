@@ -0,0 +1,279 @@
+package br.com.poupacompra.scraping.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.exception.CircuitoAbertoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Um circuit breaker por UF, na frente do caminho HTTP e do pool de browsers.
+ *
+ * Com o portal de uma UF fora do ar, cada consulta seguraria um browser até o
+ * timeout e drenaria o pool para as outras UFs. O circuito aberto rejeita na
+ * hora com {@link CircuitoAbertoException}; passado o openMs, algumas
+ * requisições de teste decidem se ele fecha ou volta a abrir.
+ *
+ * Contam como falha timeout, erro e captcha. Nota indisponível e erro de parse
+ * não dizem nada sobre a saúde do portal e ficam fora da janela.
+ *
+ * Métricas: scraping.circuit.state (0 fechado, 1 semiaberto, 2 aberto),
+ * scraping.circuit.transitions (uf, para) e scraping.portal.rejected (uf, motivo).
+ */
+@Component
+public class PortalCircuitBreakers {
+
+    private static final Logger log = LoggerFactory.getLogger(PortalCircuitBreakers.class);
+
+    public enum Estado {
+        FECHADO, SEMI_ABERTO, ABERTO
+    }
+
+    private static final byte SUCESSO = 0;
+    private static final byte FALHA = 1;
+    private static final byte TIMEOUT = 2;
+    private static final byte NEUTRO = -1;
+
+    private final ScrapingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Circuito> circuitos = new ConcurrentHashMap<>();
+
+    public PortalCircuitBreakers(ScrapingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Libera ou rejeita uma consulta ao portal da UF.
+     *
+     * @return true se a consulta é uma requisição de teste do estado semiaberto;
+     *         o valor deve ser repassado para {@link #registrar} ou {@link #cancelar}
+     * @throws CircuitoAbertoException se o circuito não admite a consulta agora
+     */
+    public boolean permitir(String uf) {
+        if (!properties.getCircuitBreaker().isEnabled()) {
+            return false;
+        }
+        return circuito(uf).permitir();
+    }
+
+    /**
+     * Registra o resultado de uma consulta liberada por {@link #permitir}.
+     *
+     * @param resultado um dos resultados de {@link ScrapingMetrics}
+     */
+    public void registrar(String uf, String resultado, boolean teste) {
+        if (!properties.getCircuitBreaker().isEnabled()) {
+            return;
+        }
+        circuito(uf).registrar(codigo(resultado), teste);
+    }
+
+    /**
+     * A consulta liberada não chegou ao portal (ex.: rejeitada pelo limite de taxa).
+     */
+    public void cancelar(String uf, boolean teste) {
+        if (teste) {
+            circuito(uf).registrar(NEUTRO, true);
+        }
+    }
+
+    public Estado estado(String uf) {
+        Circuito circuito = circuitos.get(uf);
+        return circuito != null ? circuito.estado : Estado.FECHADO;
+    }
+
+    private static byte codigo(String resultado) {
+        return switch (resultado) {
+            case ScrapingMetrics.SUCESSO -> SUCESSO;
+            case ScrapingMetrics.TIMEOUT -> TIMEOUT;
+            case ScrapingMetrics.ERRO, ScrapingMetrics.CAPTCHA -> FALHA;
+            default -> NEUTRO;
+        };
+    }
+
+    private Circuito circuito(String uf) {
+        return circuitos.computeIfAbsent(uf, k -> {
+            Circuito circuito = new Circuito(k, properties.getCircuitBreaker().getWindowSize());
+            Gauge.builder("scraping.circuit.state", circuito, c -> c.estado.ordinal())
+                .description("Estado do circuito da UF (0 fechado, 1 semiaberto, 2 aberto)")
+                .tag("uf", k)
+                .register(meterRegistry);
+            return circuito;
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> porUf = new TreeMap<>();
+        circuitos.forEach((uf, circuito) -> porUf.put(uf, circuito.stats()));
+        return Map.of(
+            "enabled", properties.getCircuitBreaker().isEnabled(),
+            "porUf", porUf
+        );
+    }
+
+    private class Circuito {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final String uf;
+        private final byte[] janela;
+        private final Counter rejeitadas;
+        private int total;
+        private int proxima;
+        private int falhas;
+        private int timeouts;
+        private volatile Estado estado = Estado.FECHADO;
+        private long abertoAte;
+        private int testesEmAndamento;
+        private int testesOk;
+
+        Circuito(String uf, int tamanho) {
+            this.uf = uf;
+            this.janela = new byte[tamanho];
+            this.rejeitadas = Counter.builder("scraping.portal.rejected")
+                .description("Consultas rejeitadas antes de chegar ao portal")
+                .tag("uf", uf)
+                .tag("motivo", "circuito_aberto")
+                .register(meterRegistry);
+        }
+
+        boolean permitir() {
+            ScrapingProperties.CircuitBreaker config = properties.getCircuitBreaker();
+            long agora = System.nanoTime();
+
+            lock.lock();
+            try {
+                if (estado == Estado.ABERTO) {
+                    if (agora - abertoAte < 0) {
+                        rejeitadas.increment();
+                        throw new CircuitoAbertoException(uf, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(abertoAte - agora)));
+                    }
+                    testesEmAndamento = 0;
+                    testesOk = 0;
+                    transicionar(Estado.SEMI_ABERTO);
+                }
+
+                if (estado == Estado.SEMI_ABERTO) {
+                    if (testesEmAndamento + testesOk >= config.getHalfOpenProbes()) {
+                        rejeitadas.increment();
+                        throw new CircuitoAbertoException(uf, 1);
+                    }
+                    testesEmAndamento++;
+                    return true;
+                }
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void registrar(byte codigo, boolean teste) {
+            ScrapingProperties.CircuitBreaker config = properties.getCircuitBreaker();
+
+            lock.lock();
+            try {
+                if (teste) {
+                    if (estado != Estado.SEMI_ABERTO) {
+                        return;
+                    }
+                    testesEmAndamento--;
+                    if (codigo == SUCESSO && ++testesOk >= config.getHalfOpenProbes()) {
+                        limparJanela();
+                        transicionar(Estado.FECHADO);
+                    } else if (codigo == FALHA || codigo == TIMEOUT) {
+                        abrir(config);
+                    }
+                    return;
+                }
+
+                // Resultados de consultas anteriores à abertura não contam mais
+                if (estado != Estado.FECHADO || codigo == NEUTRO) {
+                    return;
+                }
+
+                if (total == janela.length) {
+                    descontar(janela[proxima]);
+                } else {
+                    total++;
+                }
+                janela[proxima] = codigo;
+                proxima = (proxima + 1) % janela.length;
+                if (codigo == FALHA) {
+                    falhas++;
+                } else if (codigo == TIMEOUT) {
+                    timeouts++;
+                }
+
+                if (total >= config.getMinCalls()
+                        && ((double) (falhas + timeouts) / total >= config.getFailureRateThreshold()
+                            || (double) timeouts / total >= config.getTimeoutRateThreshold())) {
+                    log.warn("⚡ Circuito da UF {} aberto: {} falhas e {} timeouts nas últimas {} consultas",
+                        uf, falhas, timeouts, total);
+                    abrir(config);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void abrir(ScrapingProperties.CircuitBreaker config) {
+            abertoAte = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getOpenMs());
+            limparJanela();
+            transicionar(Estado.ABERTO);
+        }
+
+        private void descontar(byte codigo) {
+            if (codigo == FALHA) {
+                falhas--;
+            } else if (codigo == TIMEOUT) {
+                timeouts--;
+            }
+        }
+
+        private void limparJanela() {
+            total = 0;
+            proxima = 0;
+            falhas = 0;
+            timeouts = 0;
+        }
+
+        private void transicionar(Estado novo) {
+            if (novo == estado) {
+                return;
+            }
+            log.info("Circuito da UF {}: {} → {}", uf, estado, novo);
+            estado = novo;
+            Counter.builder("scraping.circuit.transitions")
+                .description("Mudanças de estado do circuito da UF")
+                .tag("uf", uf)
+                .tag("para", novo.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+        }
+
+        Map<String, Object> stats() {
+            lock.lock();
+            try {
+                return Map.of(
+                    "estado", estado.name(),
+                    "consultas", total,
+                    "falhas", falhas,
+                    "timeouts", timeouts,
+                    "rejeitadas", (long) rejeitadas.count()
+                );
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
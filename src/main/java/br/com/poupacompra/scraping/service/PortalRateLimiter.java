@@ -0,0 +1,150 @@
+package br.com.poupacompra.scraping.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.stereotype.Component;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.exception.LimiteTaxaPortalException;
+import br.com.poupacompra.scraping.exception.ScrapingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Token bucket por portal (UF), para não sermos bloqueados por excesso de consultas.
+ *
+ * Sem token disponível, a requisição reserva o próximo e espera a vez dela
+ * (barato em virtual thread). Se a vez passaria de maxWaitMs, é rejeitada com
+ * {@link LimiteTaxaPortalException} sem reservar nada.
+ *
+ * Métricas: scraping.portal.throttle (uf), o tempo de espera por token, e
+ * scraping.portal.rejected (uf, motivo=limite_taxa).
+ */
+@Component
+public class PortalRateLimiter {
+
+    private final ScrapingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Balde> baldes = new ConcurrentHashMap<>();
+
+    public PortalRateLimiter(ScrapingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Aguarda um token do portal da UF.
+     *
+     * @throws LimiteTaxaPortalException se a espera passaria de maxWaitMs
+     */
+    public void aguardar(String uf, String url) {
+        ScrapingProperties.RateLimit config = properties.getRateLimit();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        Balde balde = baldes.computeIfAbsent(uf, Balde::new);
+        long espera = balde.reservar(TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMs()));
+        if (espera < 0) {
+            balde.rejeitadas.increment();
+            throw new LimiteTaxaPortalException(uf, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(-espera)));
+        }
+
+        balde.espera.record(espera, TimeUnit.NANOSECONDS);
+        if (espera > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(espera);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ScrapingException("Interrompido aguardando vez no portal", url, e);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> porUf = new TreeMap<>();
+        baldes.forEach((uf, balde) -> porUf.put(uf, balde.stats()));
+        return Map.of(
+            "enabled", properties.getRateLimit().isEnabled(),
+            "porUf", porUf
+        );
+    }
+
+    private class Balde {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final String uf;
+        private final Counter rejeitadas;
+        private final Timer espera;
+        private double tokens;
+        private long ultimaReposicao = System.nanoTime();
+
+        Balde(String uf) {
+            this.uf = uf;
+            this.tokens = properties.getRateLimit().getBurst();
+            this.rejeitadas = Counter.builder("scraping.portal.rejected")
+                .description("Consultas rejeitadas antes de chegar ao portal")
+                .tag("uf", uf)
+                .tag("motivo", "limite_taxa")
+                .register(meterRegistry);
+            this.espera = Timer.builder("scraping.portal.throttle")
+                .description("Espera por token do limite de taxa do portal")
+                .tag("uf", uf)
+                .register(meterRegistry);
+        }
+
+        /**
+         * @return a espera em nanos até o token reservado (0 se havia token),
+         *         ou a espera negada, negativa, se passaria do máximo
+         */
+        long reservar(long maxEsperaNanos) {
+            lock.lock();
+            try {
+                repor();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return 0;
+                }
+                long ate = (long) ((1 - tokens) / taxa() * TimeUnit.SECONDS.toNanos(1));
+                if (ate > maxEsperaNanos) {
+                    return -ate;
+                }
+                // Token negativo: a vez já está reservada para quem vier depois
+                tokens -= 1;
+                return ate;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void repor() {
+            long agora = System.nanoTime();
+            double segundos = (agora - ultimaReposicao) / 1e9;
+            tokens = Math.min(properties.getRateLimit().getBurst(), tokens + segundos * taxa());
+            ultimaReposicao = agora;
+        }
+
+        private double taxa() {
+            return Math.max(0.01, properties.getRateLimit().ratePara(uf));
+        }
+
+        Map<String, Object> stats() {
+            lock.lock();
+            try {
+                repor();
+                return Map.of(
+                    "porSegundo", taxa(),
+                    "tokens", Math.round(tokens * 100) / 100.0,
+                    "rejeitadas", (long) rejeitadas.count()
+                );
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package br.com.poupacompra.scraping.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.microsoft.playwright.APIResponse;
+import com.microsoft.playwright.PlaywrightException;
+import com.microsoft.playwright.Route;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+
+/**
+ * Cache em disco dos scripts estáticos dos portais, compartilhado por todos
+ * os slots e processos do pool (e entre reinícios).
+ *
+ * Cada slot é um contexto isolado, com o seu próprio cache HTTP: sem este
+ * cache, todo slot novo ou reciclado baixa de novo os mesmos scripts da SEFAZ.
+ * Só entram respostas 200 de GET sem Cache-Control no-store; o arquivo vale
+ * por maxAgeHours.
+ *
+ * Formato de {directory}/{sha256 da URL}.js: o Content-Type original na
+ * primeira linha e o corpo em seguida.
+ */
+@Service
+public class PortalScriptCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PortalScriptCache.class);
+
+    private final ScrapingProperties properties;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong gravados = new AtomicLong();
+    private final AtomicLong bytesServidos = new AtomicLong();
+
+    public PortalScriptCache(ScrapingProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isAtivo() {
+        return properties.getScriptCache().isEnabled();
+    }
+
+    /**
+     * Responde a requisição de script do browser, do disco ou do portal.
+     * Roda no handler de rota, na thread do Playwright do slot.
+     */
+    public void servir(Route route) {
+        if (!"GET".equals(route.request().method())) {
+            route.resume();
+            return;
+        }
+
+        String url = route.request().url();
+        Path arquivo = arquivo(url);
+        byte[] conteudo = ler(arquivo);
+        if (conteudo != null) {
+            int fimLinha = indiceFimLinha(conteudo);
+            if (fimLinha >= 0) {
+                hits.incrementAndGet();
+                bytesServidos.addAndGet(conteudo.length - fimLinha - 1);
+                route.fulfill(new Route.FulfillOptions()
+                    .setStatus(200)
+                    .setContentType(new String(conteudo, 0, fimLinha, StandardCharsets.ISO_8859_1))
+                    .setBodyBytes(Arrays.copyOfRange(conteudo, fimLinha + 1, conteudo.length)));
+                return;
+            }
+        }
+
+        misses.incrementAndGet();
+        APIResponse resposta;
+        try {
+            resposta = route.fetch();
+        } catch (PlaywrightException e) {
+            // O browser tenta por conta própria e trata a falha como trataria sem o cache
+            log.debug("Erro ao buscar script {}: {}", url, e.getMessage());
+            route.resume();
+            return;
+        }
+        if (resposta.status() == 200 && cacheavel(resposta.headers())) {
+            gravar(arquivo, resposta.headers().getOrDefault("content-type", "application/javascript"), resposta.body());
+        }
+        route.fulfill(new Route.FulfillOptions().setResponse(resposta));
+    }
+
+    private boolean cacheavel(Map<String, String> headers) {
+        String cacheControl = headers.getOrDefault("cache-control", "").toLowerCase();
+        return !cacheControl.contains("no-store");
+    }
+
+    private byte[] ler(Path arquivo) {
+        try {
+            long idadeMs = System.currentTimeMillis() - Files.getLastModifiedTime(arquivo).toMillis();
+            if (idadeMs > TimeUnit.HOURS.toMillis(properties.getScriptCache().getMaxAgeHours())) {
+                return null;
+            }
+            return Files.readAllBytes(arquivo);
+        } catch (IOException e) {
+            // Ausente ou removido entre a checagem e a leitura: miss
+            return null;
+        }
+    }
+
+    private void gravar(Path arquivo, String contentType, byte[] corpo) {
+        if (corpo == null || corpo.length > properties.getScriptCache().getMaxEntryKb() * 1024L) {
+            return;
+        }
+        try {
+            Files.createDirectories(arquivo.getParent());
+            // Vários processos podem gravar o mesmo script: cada um no seu temporário
+            Path tmp = Files.createTempFile(arquivo.getParent(), arquivo.getFileName().toString(), ".tmp");
+            byte[] cabecalho = (contentType.replace("\n", "") + "\n").getBytes(StandardCharsets.ISO_8859_1);
+            byte[] conteudo = Arrays.copyOf(cabecalho, cabecalho.length + corpo.length);
+            System.arraycopy(corpo, 0, conteudo, cabecalho.length, corpo.length);
+            Files.write(tmp, conteudo);
+            Files.move(tmp, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            gravados.incrementAndGet();
+        } catch (IOException e) {
+            log.debug("Erro ao gravar script em cache {}: {}", arquivo, e.getMessage());
+        }
+    }
+
+    private Path arquivo(String url) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return Path.of(properties.getScriptCache().getDirectory(), HexFormat.of().formatHex(hash) + ".js");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int indiceFimLinha(byte[] conteudo) {
+        for (int i = 0; i < conteudo.length; i++) {
+            if (conteudo[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public Map<String, Object> getStats() {
+        long total = hits.get() + misses.get();
+        return Map.of(
+            "ativo", isAtivo(),
+            "hitCount", hits.get(),
+            "missCount", misses.get(),
+            "hitRate", String.format("%.2f%%", total > 0 ? hits.get() * 100.0 / total : 0),
+            "gravados", gravados.get(),
+            "bytesServidos", bytesServidos.get()
+        );
+    }
+}
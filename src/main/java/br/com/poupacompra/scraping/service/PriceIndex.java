@@ -0,0 +1,754 @@
+package br.com.poupacompra.scraping.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.dto.EstabelecimentoDTO;
+import br.com.poupacompra.scraping.dto.ItemNotaDTO;
+import br.com.poupacompra.scraping.dto.OfertaPrecoDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Índice em memória dos preços das notas extraídas: o último preço de cada
+ * produto em cada estabelecimento, para responder "onde está mais barato"
+ * sem ida à API.
+ *
+ * Estabelecimentos são identificados pelo CNPJ e produtos pela descrição
+ * normalizada (maiúsculas, sem acentos), guardada uma vez só. As ofertas
+ * ficam em colunas de arrays primitivos; o par estabelecimento/produto chega
+ * à oferta por um {@link LongIntHashMap}. Cada token de descrição aponta para
+ * a lista crescente dos produtos que o contêm: uma busca intersecta as listas
+ * dos tokens da consulta e percorre só as ofertas dos produtos resultantes.
+ *
+ * Alimentado a cada nota extraída. É salvo em snapshotFile periodicamente
+ * (se mudou) e no encerramento, e restaurado dele na inicialização.
+ *
+ * Métrica: scraping.price.index.query (consulta).
+ */
+@Service
+public class PriceIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceIndex.class);
+
+    private static final byte VERSAO_SNAPSHOT = 1;
+    private static final int CAPACIDADE_INICIAL = 1024;
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACOS = Pattern.compile("\\s+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^A-Z0-9]+");
+
+    private final ScrapingProperties.PriceIndex config;
+    private final Timer buscas;
+    private final Timer consultasEstabelecimento;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+
+    // Estabelecimentos, por id
+    private final Map<String, Integer> estabelecimentoPorCnpj = new HashMap<>();
+    private String[] cnpjs = new String[CAPACIDADE_INICIAL];
+    private String[] nomes = new String[CAPACIDADE_INICIAL];
+    private String[] enderecos = new String[CAPACIDADE_INICIAL];
+    private String[] ufs = new String[CAPACIDADE_INICIAL];
+    private IntArrayList[] ofertasPorEstabelecimento = new IntArrayList[CAPACIDADE_INICIAL];
+    private int totalEstabelecimentos;
+
+    // Produtos, por id, e o índice invertido por token
+    private final Map<String, Integer> produtoPorDescricao = new HashMap<>();
+    private String[] descricoes = new String[CAPACIDADE_INICIAL];
+    private IntArrayList[] ofertasPorProduto = new IntArrayList[CAPACIDADE_INICIAL];
+    private double[] menorPreco = new double[CAPACIDADE_INICIAL];
+    private int totalProdutos;
+    private final Map<String, IntArrayList> produtosPorToken = new HashMap<>();
+
+    private final Map<String, Integer> unidadePorNome = new HashMap<>();
+    private final List<String> unidades = new ArrayList<>();
+
+    // Ofertas, em colunas, por slot
+    private final LongIntHashMap ofertaPorPar = new LongIntHashMap(CAPACIDADE_INICIAL);
+    private int[] ofertaEstabelecimento = new int[CAPACIDADE_INICIAL];
+    private int[] ofertaProduto = new int[CAPACIDADE_INICIAL];
+    private int[] ofertaUnidade = new int[CAPACIDADE_INICIAL];
+    private double[] ofertaPreco = new double[CAPACIDADE_INICIAL];
+    private long[] ofertaData = new long[CAPACIDADE_INICIAL];
+    private int totalOfertas;
+
+    private long notas;
+    private long alteracoes;
+    private volatile long alteracoesSalvas;
+    private volatile long ultimoSnapshot;
+
+    public PriceIndex(ScrapingProperties properties, MeterRegistry meterRegistry) {
+        this.config = properties.getPriceIndex();
+        this.buscas = Timer.builder("scraping.price.index.query")
+            .description("Consultas ao índice de preços")
+            .tag("consulta", "busca")
+            .register(meterRegistry);
+        this.consultasEstabelecimento = Timer.builder("scraping.price.index.query")
+            .description("Consultas ao índice de preços")
+            .tag("consulta", "estabelecimento")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Registra os preços da nota. Itens sem descrição ou sem valor unitário
+     * ficam de fora; um preço mais novo substitui o anterior do mesmo produto
+     * no mesmo estabelecimento.
+     */
+    public void registrar(DadosNotaResponseDTO dados) {
+        if (!config.isEnabled() || dados == null || dados.estabelecimento() == null) {
+            return;
+        }
+        EstabelecimentoDTO estab = dados.estabelecimento();
+        String cnpj = somenteDigitos(estab.cpfCnpj());
+        if (cnpj.isEmpty()) {
+            return;
+        }
+        String uf = dados.nota() != null ? dados.nota().ufCfe() : null;
+        long agora = System.currentTimeMillis();
+
+        // Normalização fora do lock de escrita
+        List<ItemNotaDTO> itens = dados.itensNota();
+        String[] normalizadas = new String[itens.size()];
+        for (int i = 0; i < normalizadas.length; i++) {
+            ItemNotaDTO item = itens.get(i);
+            if (item.valorUnitario() > 0) {
+                String descricao = normalizar(item.descricao());
+                normalizadas[i] = descricao.isEmpty() ? null : descricao;
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            int e = estabelecimento(cnpj, estab.nomeEstabelecimento(), estab.endereco(), uf);
+            for (int i = 0; i < normalizadas.length; i++) {
+                if (normalizadas[i] != null) {
+                    ItemNotaDTO item = itens.get(i);
+                    ofertar(e, produto(normalizadas[i]), unidade(item.tipoUnidade()), item.valorUnitario(), agora);
+                }
+            }
+            notas++;
+            alteracoes++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ofertas mais baratas dos produtos com todos os termos da consulta, em
+     * ordem crescente de preço.
+     *
+     * @param uf só estabelecimentos da UF, ou null para todas
+     */
+    public List<OfertaPrecoDTO> maisBaratas(String consulta, String uf, int limite) {
+        return buscas.record(() -> {
+            lock.readLock().lock();
+            try {
+                int[] produtos = candidatos(consulta);
+                if (produtos == null) {
+                    return List.of();
+                }
+                String filtroUf = uf == null || uf.isBlank() ? null : uf.trim().toUpperCase(Locale.ROOT);
+                MaisBaratas melhores = new MaisBaratas(ofertaPreco, limite(limite));
+                for (long chave : porMenorPreco(produtos)) {
+                    int produto = (int) chave;
+                    // Nenhum produto daqui em diante tem oferta abaixo da pior das escolhidas
+                    if (melhores.completa() && menorPreco[produto] >= melhores.pior()) {
+                        break;
+                    }
+                    IntArrayList ofertas = ofertasPorProduto[produto];
+                    for (int i = 0; i < ofertas.size(); i++) {
+                        int slot = ofertas.get(i);
+                        if (filtroUf == null || filtroUf.equals(ufs[ofertaEstabelecimento[slot]])) {
+                            melhores.oferecer(slot);
+                        }
+                    }
+                }
+                return ofertas(melhores);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Preços num estabelecimento, do mais barato para o mais caro.
+     *
+     * @param consulta termos da descrição, ou vazio para todos os produtos
+     */
+    public List<OfertaPrecoDTO> doEstabelecimento(String cnpj, String consulta, int limite) {
+        return consultasEstabelecimento.record(() -> {
+            lock.readLock().lock();
+            try {
+                Integer e = estabelecimentoPorCnpj.get(somenteDigitos(cnpj));
+                if (e == null) {
+                    return List.of();
+                }
+                int[] produtos = consulta == null || consulta.isBlank() ? null : candidatos(consulta);
+                if (produtos == null && consulta != null && !consulta.isBlank()) {
+                    return List.of();
+                }
+                MaisBaratas melhores = new MaisBaratas(ofertaPreco, limite(limite));
+                IntArrayList ofertas = ofertasPorEstabelecimento[e];
+                for (int i = 0; i < ofertas.size(); i++) {
+                    int slot = ofertas.get(i);
+                    if (produtos == null || Arrays.binarySearch(produtos, ofertaProduto[slot]) >= 0) {
+                        melhores.oferecer(slot);
+                    }
+                }
+                return ofertas(melhores);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    private int limite(int limite) {
+        return Math.max(1, Math.min(limite, config.getMaxResults()));
+    }
+
+    /**
+     * Ids dos produtos com todos os tokens da consulta, em ordem crescente;
+     * null se a consulta não tem tokens ou algum token não existe.
+     */
+    private int[] candidatos(String consulta) {
+        List<String> tokens = tokens(normalizar(consulta));
+        if (tokens.isEmpty()) {
+            return null;
+        }
+
+        List<IntArrayList> listas = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            IntArrayList produtos = produtosPorToken.get(token);
+            if (produtos == null) {
+                return null;
+            }
+            listas.add(produtos);
+        }
+        // A menor lista define o máximo de candidatos; as outras só são consultadas
+        listas.sort(Comparator.comparingInt(IntArrayList::size));
+
+        IntArrayList menor = listas.get(0);
+        int[] resultado = new int[menor.size()];
+        int tamanho = 0;
+        for (int i = 0; i < menor.size(); i++) {
+            int produto = menor.get(i);
+            boolean emTodas = true;
+            for (int j = 1; j < listas.size() && emTodas; j++) {
+                emTodas = listas.get(j).containsSorted(produto);
+            }
+            if (emTodas) {
+                resultado[tamanho++] = produto;
+            }
+        }
+        return Arrays.copyOf(resultado, tamanho);
+    }
+
+    /**
+     * Os produtos em ordem crescente do menor preço de cada um (em qualquer
+     * UF), como chaves long: o preço como float nos 32 bits altos (a ordem
+     * dos bits de floats positivos é a dos valores) e o id nos baixos.
+     */
+    private long[] porMenorPreco(int[] produtos) {
+        long[] chaves = new long[produtos.length];
+        for (int i = 0; i < produtos.length; i++) {
+            float preco = Math.nextDown((float) menorPreco[produtos[i]]);
+            chaves[i] = ((long) Float.floatToIntBits(Math.max(0f, preco)) << 32) | produtos[i];
+        }
+        Arrays.sort(chaves);
+        return chaves;
+    }
+
+    private List<OfertaPrecoDTO> ofertas(MaisBaratas melhores) {
+        List<OfertaPrecoDTO> resultado = new ArrayList<>(melhores.tamanho);
+        for (int i = 0; i < melhores.tamanho; i++) {
+            int slot = melhores.slots[i];
+            int e = ofertaEstabelecimento[slot];
+            resultado.add(new OfertaPrecoDTO(
+                descricoes[ofertaProduto[slot]],
+                ofertaPreco[slot],
+                unidades.get(ofertaUnidade[slot]),
+                cnpjs[e], nomes[e], enderecos[e], ufs[e],
+                Instant.ofEpochMilli(ofertaData[slot]).toString()));
+        }
+        return resultado;
+    }
+
+    /**
+     * As ofertas mais baratas vistas, até o limite, em ordem crescente de preço.
+     */
+    private static final class MaisBaratas {
+
+        private final double[] precos;
+        private final int[] slots;
+        private int tamanho;
+
+        MaisBaratas(double[] precos, int limite) {
+            this.precos = precos;
+            this.slots = new int[limite];
+        }
+
+        boolean completa() {
+            return tamanho == slots.length;
+        }
+
+        double pior() {
+            return precos[slots[tamanho - 1]];
+        }
+
+        void oferecer(int slot) {
+            double preco = precos[slot];
+            if (tamanho == slots.length && preco >= precos[slots[tamanho - 1]]) {
+                return;
+            }
+            int i = tamanho < slots.length ? tamanho++ : tamanho - 1;
+            while (i > 0 && precos[slots[i - 1]] > preco) {
+                slots[i] = slots[i - 1];
+                i--;
+            }
+            slots[i] = slot;
+        }
+    }
+
+    // --- Escrita, sempre com o lock de escrita ---
+
+    private int estabelecimento(String cnpj, String nome, String endereco, String uf) {
+        Integer existente = estabelecimentoPorCnpj.get(cnpj);
+        int e;
+        if (existente != null) {
+            e = existente;
+        } else {
+            e = totalEstabelecimentos++;
+            if (e == cnpjs.length) {
+                int capacidade = e + (e >> 1);
+                cnpjs = Arrays.copyOf(cnpjs, capacidade);
+                nomes = Arrays.copyOf(nomes, capacidade);
+                enderecos = Arrays.copyOf(enderecos, capacidade);
+                ufs = Arrays.copyOf(ufs, capacidade);
+                ofertasPorEstabelecimento = Arrays.copyOf(ofertasPorEstabelecimento, capacidade);
+            }
+            cnpjs[e] = cnpj;
+            ofertasPorEstabelecimento[e] = new IntArrayList(16);
+            estabelecimentoPorCnpj.put(cnpj, e);
+        }
+        // Nome e endereço da nota mais recente
+        nomes[e] = nome;
+        enderecos[e] = endereco;
+        ufs[e] = uf != null ? uf.toUpperCase(Locale.ROOT) : null;
+        return e;
+    }
+
+    private int produto(String descricao) {
+        Integer existente = produtoPorDescricao.get(descricao);
+        if (existente != null) {
+            return existente;
+        }
+
+        int p = totalProdutos++;
+        if (p == descricoes.length) {
+            int capacidade = p + (p >> 1);
+            descricoes = Arrays.copyOf(descricoes, capacidade);
+            ofertasPorProduto = Arrays.copyOf(ofertasPorProduto, capacidade);
+            menorPreco = Arrays.copyOf(menorPreco, capacidade);
+        }
+        descricoes[p] = descricao;
+        ofertasPorProduto[p] = new IntArrayList(2);
+        menorPreco[p] = Double.POSITIVE_INFINITY;
+        produtoPorDescricao.put(descricao, p);
+
+        // Ids crescentes: as listas por token saem ordenadas
+        for (String token : tokens(descricao)) {
+            IntArrayList produtos = produtosPorToken.computeIfAbsent(token, k -> new IntArrayList());
+            if (produtos.last() != p) {
+                produtos.add(p);
+            }
+        }
+        return p;
+    }
+
+    private int unidade(String tipoUnidade) {
+        String nome = tipoUnidade != null ? tipoUnidade.trim().toUpperCase(Locale.ROOT) : "";
+        return unidadePorNome.computeIfAbsent(nome, k -> {
+            unidades.add(k);
+            return unidades.size() - 1;
+        });
+    }
+
+    private void ofertar(int e, int p, int u, double preco, long data) {
+        long par = ((long) e << 32) | p;
+        int slot = ofertaPorPar.get(par, -1);
+        if (slot < 0) {
+            slot = totalOfertas++;
+            if (slot == ofertaPreco.length) {
+                int capacidade = slot + (slot >> 1);
+                ofertaEstabelecimento = Arrays.copyOf(ofertaEstabelecimento, capacidade);
+                ofertaProduto = Arrays.copyOf(ofertaProduto, capacidade);
+                ofertaUnidade = Arrays.copyOf(ofertaUnidade, capacidade);
+                ofertaPreco = Arrays.copyOf(ofertaPreco, capacidade);
+                ofertaData = Arrays.copyOf(ofertaData, capacidade);
+            }
+            ofertaEstabelecimento[slot] = e;
+            ofertaProduto[slot] = p;
+            ofertaPorPar.put(par, slot);
+            ofertasPorProduto[p].add(slot);
+            ofertasPorEstabelecimento[e].add(slot);
+        } else if (data < ofertaData[slot]) {
+            return;
+        }
+        double anterior = ofertaPreco[slot];
+        ofertaUnidade[slot] = u;
+        ofertaPreco[slot] = preco;
+        ofertaData[slot] = data;
+
+        if (preco < menorPreco[p]) {
+            menorPreco[p] = preco;
+        } else if (anterior == menorPreco[p] && preco > anterior) {
+            // A oferta mais barata do produto subiu: o mínimo pode ser outra
+            IntArrayList ofertas = ofertasPorProduto[p];
+            double menor = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < ofertas.size(); i++) {
+                menor = Math.min(menor, ofertaPreco[ofertas.get(i)]);
+            }
+            menorPreco[p] = menor;
+        }
+    }
+
+    // --- Normalização ---
+
+    static String normalizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return "";
+        }
+        String semAcentos = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACOS.matcher(semAcentos.toUpperCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+
+    /**
+     * Tokens distintos de uma descrição normalizada: sequências de letras e
+     * dígitos, com pelo menos dois caracteres ou só dígitos.
+     */
+    static List<String> tokens(String normalizada) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : SEPARADORES.split(normalizada)) {
+            if (token.length() >= 2 || (!token.isEmpty() && Character.isDigit(token.charAt(0)))) {
+                tokens.add(token);
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private static String somenteDigitos(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        StringBuilder digitos = new StringBuilder(texto.length());
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digitos.append(c);
+            }
+        }
+        return digitos.toString();
+    }
+
+    // --- Snapshot ---
+
+    /**
+     * Cópia das colunas, para gravar o snapshot sem segurar o lock.
+     */
+    private record Copia(String[] cnpjs, String[] nomes, String[] enderecos, String[] ufs,
+            String[] unidades, String[] descricoes,
+            int[] estabelecimentos, int[] produtos, int[] unidadesOferta, double[] precos, long[] datas) {}
+
+    @PostConstruct
+    public void restaurar() {
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        Path arquivo = Path.of(config.getSnapshotFile());
+        long startTime = System.currentTimeMillis();
+        Copia copia;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(Files.newInputStream(arquivo)), 64 * 1024))) {
+            copia = ler(in);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            log.warn("Snapshot do índice de preços ilegível em {}, começando vazio: {}", arquivo, e.getMessage());
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            carregar(copia);
+            alteracoesSalvas = alteracoes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Índice de preços restaurado: {} ofertas de {} produtos em {} estabelecimentos em {}ms",
+            totalOfertas, totalProdutos, totalEstabelecimentos, System.currentTimeMillis() - startTime);
+    }
+
+    @Scheduled(fixedDelayString = "${scraping.price-index.snapshot-interval-ms:600000}",
+        initialDelayString = "${scraping.price-index.snapshot-interval-ms:600000}")
+    public void salvarSeAlterado() {
+        if (config.isEnabled() && alteracoes() != alteracoesSalvas) {
+            salvar();
+        }
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        salvarSeAlterado();
+    }
+
+    /**
+     * Grava o índice em snapshotFile (temporário e move atômico).
+     */
+    public void salvar() {
+        snapshotLock.lock();
+        try {
+            long versao;
+            Copia copia;
+            lock.readLock().lock();
+            try {
+                versao = alteracoes;
+                copia = copiar();
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            long startTime = System.currentTimeMillis();
+            Path arquivo = Path.of(config.getSnapshotFile()).toAbsolutePath();
+            Files.createDirectories(arquivo.getParent());
+            Path tmp = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+            // Nível mais rápido: milhões de ofertas saem em poucos segundos, e só uns 10% maiores
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new DeflaterOutputStream(Files.newOutputStream(tmp), deflater), 64 * 1024))) {
+                escrever(out, copia);
+            } finally {
+                deflater.end();
+            }
+            Files.move(tmp, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            alteracoesSalvas = versao;
+            ultimoSnapshot = System.currentTimeMillis();
+            log.info("Índice de preços salvo: {} ofertas em {}ms", copia.precos().length, ultimoSnapshot - startTime);
+        } catch (IOException e) {
+            log.error("Erro ao salvar o índice de preços: {}", e.getMessage());
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private long alteracoes() {
+        lock.readLock().lock();
+        try {
+            return alteracoes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Copia copiar() {
+        return new Copia(
+            Arrays.copyOf(cnpjs, totalEstabelecimentos),
+            Arrays.copyOf(nomes, totalEstabelecimentos),
+            Arrays.copyOf(enderecos, totalEstabelecimentos),
+            Arrays.copyOf(ufs, totalEstabelecimentos),
+            unidades.toArray(String[]::new),
+            Arrays.copyOf(descricoes, totalProdutos),
+            Arrays.copyOf(ofertaEstabelecimento, totalOfertas),
+            Arrays.copyOf(ofertaProduto, totalOfertas),
+            Arrays.copyOf(ofertaUnidade, totalOfertas),
+            Arrays.copyOf(ofertaPreco, totalOfertas),
+            Arrays.copyOf(ofertaData, totalOfertas));
+    }
+
+    /**
+     * Com o índice vazio, os ids atribuídos na carga são os mesmos do snapshot.
+     */
+    private void carregar(Copia copia) {
+        for (int e = 0; e < copia.cnpjs().length; e++) {
+            estabelecimento(copia.cnpjs()[e], copia.nomes()[e], copia.enderecos()[e], copia.ufs()[e]);
+        }
+        for (String unidade : copia.unidades()) {
+            unidade(unidade);
+        }
+        for (String descricao : copia.descricoes()) {
+            produto(descricao);
+        }
+        for (int i = 0; i < copia.precos().length; i++) {
+            ofertar(copia.estabelecimentos()[i], copia.produtos()[i], copia.unidadesOferta()[i],
+                copia.precos()[i], copia.datas()[i]);
+        }
+    }
+
+    /**
+     * Formato: byte de versão; estabelecimentos (cnpj, nome, endereço, uf);
+     * unidades; descrições; ofertas (estabelecimento, produto, unidade,
+     * preço, data), cada bloco com a quantidade na frente.
+     */
+    private static void escrever(DataOutputStream out, Copia copia) throws IOException {
+        out.writeByte(VERSAO_SNAPSHOT);
+
+        out.writeInt(copia.cnpjs().length);
+        for (int e = 0; e < copia.cnpjs().length; e++) {
+            writeString(out, copia.cnpjs()[e]);
+            writeString(out, copia.nomes()[e]);
+            writeString(out, copia.enderecos()[e]);
+            writeString(out, copia.ufs()[e]);
+        }
+
+        out.writeInt(copia.unidades().length);
+        for (String unidade : copia.unidades()) {
+            writeString(out, unidade);
+        }
+
+        out.writeInt(copia.descricoes().length);
+        for (String descricao : copia.descricoes()) {
+            writeString(out, descricao);
+        }
+
+        out.writeInt(copia.precos().length);
+        for (int i = 0; i < copia.precos().length; i++) {
+            out.writeInt(copia.estabelecimentos()[i]);
+            out.writeInt(copia.produtos()[i]);
+            out.writeInt(copia.unidadesOferta()[i]);
+            out.writeDouble(copia.precos()[i]);
+            out.writeLong(copia.datas()[i]);
+        }
+    }
+
+    private static Copia ler(DataInputStream in) throws IOException {
+        byte versao = in.readByte();
+        if (versao != VERSAO_SNAPSHOT) {
+            throw new IOException("Versão de snapshot não suportada: " + versao);
+        }
+
+        int totalEstabelecimentos = in.readInt();
+        String[] cnpjs = new String[totalEstabelecimentos];
+        String[] nomes = new String[totalEstabelecimentos];
+        String[] enderecos = new String[totalEstabelecimentos];
+        String[] ufs = new String[totalEstabelecimentos];
+        for (int e = 0; e < totalEstabelecimentos; e++) {
+            cnpjs[e] = readString(in);
+            nomes[e] = readString(in);
+            enderecos[e] = readString(in);
+            ufs[e] = readString(in);
+        }
+
+        String[] unidades = new String[in.readInt()];
+        for (int u = 0; u < unidades.length; u++) {
+            unidades[u] = readString(in);
+        }
+
+        String[] descricoes = new String[in.readInt()];
+        for (int p = 0; p < descricoes.length; p++) {
+            descricoes[p] = readString(in);
+        }
+
+        int totalOfertas = in.readInt();
+        int[] estabelecimentos = new int[totalOfertas];
+        int[] produtos = new int[totalOfertas];
+        int[] unidadesOferta = new int[totalOfertas];
+        double[] precos = new double[totalOfertas];
+        long[] datas = new long[totalOfertas];
+        for (int i = 0; i < totalOfertas; i++) {
+            estabelecimentos[i] = in.readInt();
+            produtos[i] = in.readInt();
+            unidadesOferta[i] = in.readInt();
+            precos[i] = in.readDouble();
+            datas[i] = in.readLong();
+        }
+
+        return new Copia(cnpjs, nomes, enderecos, ufs, unidades, descricoes,
+            estabelecimentos, produtos, unidadesOferta, precos, datas);
+    }
+
+    /**
+     * Strings UTF-8 com prefixo de tamanho; -1 para null.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int tamanho = in.readInt();
+        if (tamanho < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[tamanho];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            return Map.of(
+                "ativo", config.isEnabled(),
+                "notas", notas,
+                "estabelecimentos", totalEstabelecimentos,
+                "produtos", totalProdutos,
+                "ofertas", totalOfertas,
+                "tokens", produtosPorToken.size(),
+                "consultaMediaUs", Map.of(
+                    "busca", String.format("%.1f", buscas.mean(TimeUnit.MICROSECONDS)),
+                    "estabelecimento", String.format("%.1f", consultasEstabelecimento.mean(TimeUnit.MICROSECONDS))
+                ),
+                "snapshot", Map.of(
+                    "arquivo", config.getSnapshotFile(),
+                    "ultimo", ultimoSnapshot > 0 ? Instant.ofEpochMilli(ultimoSnapshot).toString() : "nunca",
+                    "pendente", alteracoes != alteracoesSalvas
+                )
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package br.com.poupacompra.scraping.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.microsoft.playwright.JSHandle;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.TimeoutError;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.exception.CaptchaException;
+import br.com.poupacompra.scraping.exception.NotaIndisponivelException;
+import br.com.poupacompra.scraping.exception.ScrapingException;
+
+/**
+ * Espera a página da nota chegar a um estado final: o conteúdo da nota,
+ * um reCAPTCHA, uma página de erro do portal ou um redirecionamento para
+ * outro site. O que aparecer primeiro encerra a espera, então páginas ruins
+ * falham em centenas de milissegundos em vez de esgotar o timeout.
+ *
+ * O prazo de cada UF é aprendido das esperas bem-sucedidas (ver
+ * {@link ScrapingProperties.Readiness}). Um timeout dobra o prazo da UF até o
+ * máximo, para um portal que ficou lento não falhar indefinidamente no prazo antigo.
+ */
+@Component
+public class ReadinessDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadinessDetector.class);
+
+    /**
+     * Textos de página de erro dos portais, comparados em minúsculas.
+     */
+    private static final List<String> PADROES_ERRO = List.of(
+        "não encontrada",
+        "nao encontrada",
+        "não localizada",
+        "inexistente",
+        "chave de acesso inválida",
+        "erro ao processar",
+        "tente novamente mais tarde",
+        "serviço indisponível",
+        "servico indisponivel"
+    );
+
+    /**
+     * Dos {@link #PADROES_ERRO}, os de instabilidade do portal: a nota pode
+     * existir, então a falha é um erro comum (nova tentativa, cache negativo
+     * curto) e não {@link NotaIndisponivelException}.
+     */
+    private static final List<String> PADROES_TRANSITORIOS = List.of(
+        "erro ao processar",
+        "tente novamente mais tarde",
+        "serviço indisponível",
+        "servico indisponivel"
+    );
+
+    /**
+     * Retorna o estado final como "conteudo", "captcha", "erro:{trecho}" ou
+     * "redirecionado:{url}", ou null enquanto a página não chegou a nenhum.
+     * Erro e redirecionamento só valem com o documento carregado, para não
+     * confundir uma página ainda montando com uma página de erro.
+     */
+    static final String SCRIPT = """
+        ({ destino, padroes }) => {
+            const total = document.querySelector('#totalNota');
+            if (total && total.getClientRects().length > 0) return 'conteudo';
+
+            const captcha = document.querySelector("iframe[src*='recaptcha/api2/anchor'], iframe[src*='recaptcha/enterprise/anchor'], .g-recaptcha:not([data-size='invisible'])");
+            if (captcha && captcha.getClientRects().length > 0) return 'captcha';
+
+            if (document.readyState !== 'complete') return null;
+
+            const semWww = host => host.replace(/^www\\./, '');
+            if (semWww(location.host) !== semWww(new URL(destino).host)) return 'redirecionado:' + location.href;
+
+            const texto = (document.body?.innerText || '').slice(0, 3000).toLowerCase();
+            const padrao = padroes.find(p => texto.includes(p));
+            if (padrao) {
+                const i = texto.indexOf(padrao);
+                return 'erro:' + texto.slice(Math.max(0, i - 60), i + padrao.length + 60).replace(/\\s+/g, ' ').trim();
+            }
+            return null;
+        }
+        """;
+
+    private final ScrapingProperties properties;
+    private final Map<String, Janela> janelas = new ConcurrentHashMap<>();
+
+    public ReadinessDetector(ScrapingProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Espera o conteúdo da nota.
+     *
+     * @param url URL original da nota, para as mensagens de erro
+     * @param destino URL navegada, referência para detectar redirecionamento
+     * @throws CaptchaException se o portal exibiu um reCAPTCHA
+     * @throws NotaIndisponivelException se o portal informou que a nota não existe ou redirecionou
+     * @throws ScrapingException se o portal está instável ou nenhum estado final
+     *         apareceu dentro do prazo
+     */
+    public void aguardar(Page page, String url, String destino, String uf) {
+        Janela janela = janelas.computeIfAbsent(uf, k -> new Janela(properties.getReadiness().getWindow()));
+        long prazo = janela.prazoMs();
+        long inicio = System.nanoTime();
+
+        String estado;
+        try {
+            JSHandle handle = page.waitForFunction(SCRIPT,
+                Map.of("destino", destino, "padroes", PADROES_ERRO),
+                new Page.WaitForFunctionOptions()
+                    .setTimeout(prazo)
+                    .setPollingInterval(properties.getReadiness().getPollingMs()));
+            estado = (String) handle.jsonValue();
+            handle.dispose();
+        } catch (TimeoutError e) {
+            janela.registrarTimeout(prazo);
+            log.warn("Timeout após {}ms aguardando conteúdo (UF {}), URL atual: {}", prazo, uf, page.url());
+            throw new ScrapingException("Página não carregou - timeout de " + prazo + "ms aguardando conteúdo", url, e);
+        }
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        if ("conteudo".equals(estado)) {
+            janela.registrarSucesso(elapsed);
+            log.debug("Página totalmente carregada em {}ms", elapsed);
+        } else if ("captcha".equals(estado)) {
+            throw new CaptchaException("Página não carregou - bloqueio por reCAPTCHA", url, null);
+        } else if (estado.startsWith("redirecionado:")) {
+            throw new NotaIndisponivelException(
+                "Portal redirecionou para " + estado.substring("redirecionado:".length()), url);
+        } else {
+            String trecho = estado.substring("erro:".length());
+            if (PADROES_TRANSITORIOS.stream().anyMatch(trecho::contains)) {
+                throw new ScrapingException("Portal instável, retornou página de erro: " + trecho, url);
+            }
+            throw new NotaIndisponivelException("Portal retornou página de erro: " + trecho, url);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> porUf = new TreeMap<>();
+        janelas.forEach((uf, janela) -> porUf.put(uf, janela.stats()));
+        return Map.of(
+            "adaptiveTimeout", properties.getReadiness().isAdaptiveTimeout(),
+            "porUf", porUf
+        );
+    }
+
+    /**
+     * Últimas esperas bem-sucedidas de uma UF e o prazo derivado delas.
+     */
+    private class Janela {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long[] amostras;
+        private int total;
+        private int proxima;
+        private volatile long prazoMs;
+
+        Janela(int tamanho) {
+            this.amostras = new long[tamanho];
+            this.prazoMs = maximo();
+        }
+
+        long prazoMs() {
+            return properties.getReadiness().isAdaptiveTimeout() ? prazoMs : maximo();
+        }
+
+        void registrarSucesso(long ms) {
+            lock.lock();
+            try {
+                amostras[proxima] = ms;
+                proxima = (proxima + 1) % amostras.length;
+                total = Math.min(total + 1, amostras.length);
+
+                ScrapingProperties.Readiness config = properties.getReadiness();
+                if (total >= config.getMinSamples()) {
+                    long aprendido = (long) (percentil(config.getPercentile()) * config.getMultiplier());
+                    prazoMs = Math.min(maximo(), Math.max(config.getMinTimeoutMs(), aprendido));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void registrarTimeout(long prazoUsado) {
+            lock.lock();
+            try {
+                prazoMs = Math.min(maximo(), Math.max(prazoMs, prazoUsado * 2));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Map<String, Object> stats() {
+            lock.lock();
+            try {
+                return Map.of(
+                    "prazoMs", prazoMs(),
+                    "amostras", total,
+                    "p50Ms", total > 0 ? percentil(0.5) : 0,
+                    "p99Ms", total > 0 ? percentil(0.99) : 0
+                );
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long percentil(double p) {
+            long[] ordenadas = Arrays.copyOf(amostras, total);
+            Arrays.sort(ordenadas);
+            return ordenadas[Math.max(0, (int) Math.ceil(p * total) - 1)];
+        }
+
+        private long maximo() {
+            return properties.getBrowser().getTimeoutMs();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package br.com.poupacompra.scraping.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.exception.ScrapingException;
+import br.com.poupacompra.scraping.service.NfceUrlParser.NfceUrl;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Servidor local que faz o papel dos portais da SEFAZ em testes de carga.
+ *
+ * Com scraping.replay.enabled, a navegação (browser e caminho HTTP) vai para
+ * http://127.0.0.1:{port}/nfce/{UF}/{chave} em vez da URL real. A página servida
+ * é a captura da própria chave; sem ela, uma captura qualquer da mesma UF; sem
+ * capturas, a página de exemplo embutida. Latência e falhas (erro do portal,
+ * reCAPTCHA e timeout) são injetadas conforme a configuração.
+ */
+@Service
+public class ReplayServer {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayServer.class);
+
+    private static final String PREFIXO = "/nfce/";
+
+    private static final String PAGINA_ERRO = """
+        <!DOCTYPE html>
+        <html><body><div class="erro">Erro ao processar a consulta. Tente novamente mais tarde.</div></body></html>
+        """;
+
+    private static final String PAGINA_CAPTCHA = """
+        <!DOCTYPE html>
+        <html><body>
+          <div class="g-recaptcha" data-sitekey="replay"></div>
+          <iframe src="https://www.google.com/recaptcha/api2/anchor?k=replay" width="304" height="78"></iframe>
+        </body></html>
+        """;
+
+    private final ScrapingProperties properties;
+    private final Map<String, Path> porChave = new ConcurrentHashMap<>();
+    private final Map<String, List<Path>> porUf = new ConcurrentHashMap<>();
+    private final List<Path> todas = new ArrayList<>();
+    private final Map<String, AtomicLong> respostas = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String paginaExemplo;
+
+    public ReplayServer(ScrapingProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!properties.getReplay().isEnabled()) {
+            return;
+        }
+
+        carregarCapturas();
+
+        try (InputStream in = getClass().getResourceAsStream("/replay/exemplo.html")) {
+            paginaExemplo = in != null ? new String(in.readAllBytes(), StandardCharsets.UTF_8) : PAGINA_ERRO;
+
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", properties.getReplay().getPort()), 0);
+            server.createContext(PREFIXO, this::responder);
+            server.setExecutor(executor);
+            server.start();
+        } catch (IOException e) {
+            throw new ScrapingException("Falha ao iniciar servidor de replay", e);
+        }
+
+        log.warn("⚠ Replay ativo: navegação redirecionada para http://127.0.0.1:{} ({} páginas capturadas)",
+            properties.getReplay().getPort(), todas.size());
+    }
+
+    private void carregarCapturas() {
+        Path diretorio = Path.of(properties.getReplay().getDirectory());
+        if (!Files.isDirectory(diretorio)) {
+            return;
+        }
+
+        try (Stream<Path> arquivos = Files.walk(diretorio, 2)) {
+            arquivos.filter(p -> p.getFileName().toString().endsWith(".html")).forEach(p -> {
+                String chave = p.getFileName().toString().replace(".html", "");
+                String uf = p.getParent().getFileName().toString();
+                porChave.put(chave, p);
+                porUf.computeIfAbsent(uf, k -> new ArrayList<>()).add(p);
+                todas.add(p);
+            });
+        } catch (IOException e) {
+            log.warn("Erro ao ler capturas em {}: {}", diretorio, e.getMessage());
+        }
+    }
+
+    public boolean isAtivo() {
+        return server != null;
+    }
+
+    /**
+     * URL a navegar para a nota: o replay local quando ativo, senão a própria URL.
+     */
+    public String destino(NfceUrl nfceUrl) {
+        if (!isAtivo()) {
+            return nfceUrl.url();
+        }
+        return "http://127.0.0.1:" + properties.getReplay().getPort() + PREFIXO + nfceUrl.uf() + "/" + nfceUrl.chaveAcesso();
+    }
+
+    /**
+     * Como {@link #destino}, já codificada para clientes HTTP.
+     */
+    public URI destinoUri(NfceUrl nfceUrl) {
+        return isAtivo() ? URI.create(destino(nfceUrl)) : nfceUrl.uri();
+    }
+
+    private void responder(HttpExchange exchange) throws IOException {
+        ScrapingProperties.Replay config = properties.getReplay();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        try {
+            String[] partes = exchange.getRequestURI().getPath().substring(PREFIXO.length()).split("/");
+            String uf = partes.length > 0 ? partes[0] : "";
+            String chave = partes.length > 1 ? partes[1] : "";
+
+            double sorteio = random.nextDouble();
+            if (sorteio < config.getTimeoutRate()) {
+                Thread.sleep(config.getTimeoutDelayMs());
+                enviar(exchange, "timeout", 504, PAGINA_ERRO);
+                return;
+            }
+
+            Thread.sleep(config.getLatencyMs() + (config.getJitterMs() > 0 ? random.nextLong(config.getJitterMs() + 1) : 0));
+
+            sorteio -= config.getTimeoutRate();
+            if (sorteio < config.getErrorRate()) {
+                enviar(exchange, "erro", 500, PAGINA_ERRO);
+            } else if (sorteio - config.getErrorRate() < config.getCaptchaRate()) {
+                enviar(exchange, "captcha", 200, PAGINA_CAPTCHA);
+            } else {
+                enviar(exchange, "nota", 200, pagina(uf, chave));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String pagina(String uf, String chave) throws IOException {
+        Path captura = porChave.get(chave);
+        if (captura == null) {
+            List<Path> daUf = porUf.getOrDefault(uf, todas);
+            if (!daUf.isEmpty()) {
+                captura = daUf.get(ThreadLocalRandom.current().nextInt(daUf.size()));
+            }
+        }
+        return captura != null
+            ? Files.readString(captura, StandardCharsets.UTF_8)
+            : paginaExemplo.replace("{{chave}}", chave);
+    }
+
+    private void enviar(HttpExchange exchange, String tipo, int status, String html) throws IOException {
+        byte[] corpo = html.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(status, corpo.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(corpo);
+        }
+        respostas.computeIfAbsent(tipo, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ativo", isAtivo());
+        stats.put("capturas", todas.size());
+        respostas.forEach((tipo, total) -> stats.put(tipo, total.get()));
+        return stats;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package br.com.poupacompra.scraping.service;
+
+/**
+ * Classes de prioridade na obtenção de browsers, em ordem de precedência.
+ */
+public enum ScrapePriority {
+    
+    /** Usuário aguardando a resposta no app. */
+    INTERACTIVE,
+    
+    /** Nova tentativa de um scraping que falhou. */
+    RETRY,
+    
+    /** Reprocessamento em lote, sem usuário aguardando. */
+    BATCH;
+    
+    public String tag() {
+        return name().toLowerCase();
+    }
+    
+    /**
+     * Se esta classe é atendida antes da outra.
+     */
+    public boolean precede(ScrapePriority outra) {
+        return ordinal() < outra.ordinal();
+    }
+}
@@ -0,0 +1,126 @@
+package br.com.poupacompra.scraping.service;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.microsoft.playwright.TimeoutError;
+
+import br.com.poupacompra.scraping.exception.CapacidadeExcedidaException;
+import br.com.poupacompra.scraping.exception.CaptchaException;
+import br.com.poupacompra.scraping.exception.NotaIndisponivelException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Timers das fases do scraping, por UF e resultado.
+ *
+ * scraping.phase.duration (fase, uf, resultado): acquire, navigate, wait_content,
+ * evaluate, mapping e salvar_nota (uf "lote" quando enviado pelo endpoint de
+ * lote).
+ * scraping.nota.duration (uf, fonte, resultado): a nota inteira, de ponta a ponta.
+ *
+ * Os dois publicam histograma de percentis para o /actuator/prometheus.
+ */
+@Component
+public class ScrapingMetrics {
+
+    public static final String SUCESSO = "sucesso";
+    public static final String TIMEOUT = "timeout";
+    public static final String CAPTCHA = "captcha";
+    public static final String INDISPONIVEL = "indisponivel";
+    public static final String ERRO_PARSE = "erro_parse";
+    public static final String ERRO = "erro";
+    public static final String REJEITADA = "rejeitada";
+
+    private static final String UF_DESCONHECIDA = "desconhecida";
+
+    private final MeterRegistry meterRegistry;
+
+    public ScrapingMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Executa a fase e registra a duração com o resultado derivado da exceção, se houver.
+     */
+    public <T> T fase(String fase, String uf, Supplier<T> acao) {
+        long inicio = System.nanoTime();
+        try {
+            T resultado = acao.get();
+            registrarFase(fase, uf, SUCESSO, System.nanoTime() - inicio);
+            return resultado;
+        } catch (RuntimeException e) {
+            registrarFase(fase, uf, resultado(e), System.nanoTime() - inicio);
+            throw e;
+        }
+    }
+
+    public void fase(String fase, String uf, Runnable acao) {
+        fase(fase, uf, () -> {
+            acao.run();
+            return null;
+        });
+    }
+
+    public void registrarFase(String fase, String uf, String resultado, long nanos) {
+        Timer.builder("scraping.phase.duration")
+            .description("Duração de cada fase do scraping")
+            .tag("fase", fase)
+            .tag("uf", tagUf(uf))
+            .tag("resultado", resultado)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void registrarNota(String uf, String fonte, String resultado, long nanos) {
+        Timer.builder("scraping.nota.duration")
+            .description("Duração total da extração de uma nota")
+            .tag("uf", tagUf(uf))
+            .tag("fonte", fonte)
+            .tag("resultado", resultado)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Classifica a falha: captcha, nota indisponível no portal, rejeitada por
+     * falta de capacidade, timeout, erro de parse ou erro genérico.
+     */
+    public static String resultado(Throwable e) {
+        if (e instanceof CapacidadeExcedidaException) {
+            return REJEITADA;
+        }
+        if (e instanceof CaptchaException) {
+            return CAPTCHA;
+        }
+        if (e instanceof NotaIndisponivelException) {
+            return INDISPONIVEL;
+        }
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof TimeoutError
+                    || causa instanceof HttpTimeoutException
+                    || causa instanceof SocketTimeoutException
+                    || causa instanceof TimeoutException) {
+                return TIMEOUT;
+            }
+            if (causa instanceof NumberFormatException
+                    || causa instanceof ClassCastException
+                    || causa instanceof DateTimeParseException) {
+                return ERRO_PARSE;
+            }
+        }
+        return ERRO;
+    }
+
+    private static String tagUf(String uf) {
+        return uf == null || uf.isBlank() ? UF_DESCONHECIDA : uf;
+    }
+}
@@ -0,0 +1,230 @@
+package br.com.poupacompra.scraping.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.service.NotaBinaryCodec.NotaDatada;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+
+/**
+ * Cache de notas compartilhado entre réplicas, num servidor com protocolo Redis.
+ *
+ * - {prefixo}{chave}: a nota no formato do {@link NotaBinaryCodec}, com TTL
+ * - {prefixo}lease:{chave}: a réplica que está fazendo o scraping da chave
+ * - {prefixo}invalidacao: canal pub/sub avisando as outras réplicas de um /cache/clear
+ *
+ * Falhas de comunicação com o servidor viram miss: o cache compartilhado é uma
+ * otimização, e cada réplica segue funcionando sozinha sem ele.
+ */
+public class SharedNotaStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedNotaStore.class);
+
+    /**
+     * Apaga o lease só se ele ainda for desta réplica.
+     */
+    private static final String LIBERAR_LEASE = """
+        if redis.call('get', KEYS[1]) == ARGV[1] then
+            return redis.call('del', KEYS[1])
+        end
+        return 0
+        """;
+
+    private final RedisClient client;
+    private final StatefulRedisConnection<String, byte[]> conexao;
+    private final StatefulRedisPubSubConnection<String, String> assinatura;
+    private final String prefixo;
+    private final String canal;
+    private final Duration ttl;
+    private final String replica = UUID.randomUUID().toString();
+    private final byte[] replicaBytes = replica.getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong erros = new AtomicLong();
+    private final AtomicLong invalidacoesRecebidas = new AtomicLong();
+
+    /**
+     * @param ttl validade das notas gravadas no servidor
+     */
+    public SharedNotaStore(String uri, String prefixo, Duration ttl) {
+        this.client = RedisClient.create(uri);
+        this.conexao = client.connect(RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE));
+        this.assinatura = client.connectPubSub();
+        this.prefixo = prefixo;
+        this.canal = prefixo + "invalidacao";
+        this.ttl = ttl;
+        log.info("Cache compartilhado em {} (réplica {})", uri, replica);
+    }
+
+    public NotaDatada get(String chave) {
+        try {
+            byte[] bytes = comandos().get(prefixo + chave);
+            if (bytes == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return NotaBinaryCodec.decode(bytes);
+        } catch (RedisException | IOException e) {
+            erros.incrementAndGet();
+            log.debug("Erro ao ler nota {} do cache compartilhado: {}", chave, e.getMessage());
+            return null;
+        }
+    }
+
+    public void put(String chave, DadosNotaResponseDTO dados, long obtidaEm) {
+        try {
+            comandos().set(prefixo + chave, NotaBinaryCodec.encode(dados, obtidaEm), SetArgs.Builder.px(ttl));
+        } catch (RedisException | IOException e) {
+            erros.incrementAndGet();
+            log.debug("Erro ao gravar nota {} no cache compartilhado: {}", chave, e.getMessage());
+        }
+    }
+
+    public void evict(String chave) {
+        try {
+            comandos().del(prefixo + chave);
+        } catch (RedisException e) {
+            erros.incrementAndGet();
+        }
+    }
+
+    /**
+     * Remove todas as notas do prefixo (não os leases em andamento).
+     *
+     * @return quantidade de notas removidas
+     */
+    public long clear() {
+        long removidas = 0;
+        try {
+            RedisCommands<String, byte[]> comandos = comandos();
+            ScanArgs args = ScanArgs.Builder.matches(prefixo + "*").limit(500);
+            ScanCursor cursor = ScanCursor.INITIAL;
+            do {
+                KeyScanCursor<String> pagina = comandos.scan(cursor, args);
+                List<String> notas = new ArrayList<>();
+                for (String chave : pagina.getKeys()) {
+                    if (!chave.startsWith(prefixo + "lease:")) {
+                        notas.add(chave);
+                    }
+                }
+                if (!notas.isEmpty()) {
+                    removidas += comandos.del(notas.toArray(String[]::new));
+                }
+                cursor = pagina;
+            } while (!cursor.isFinished());
+        } catch (RedisException e) {
+            erros.incrementAndGet();
+            log.warn("Erro ao limpar o cache compartilhado: {}", e.getMessage());
+        }
+        return removidas;
+    }
+
+    /**
+     * Tenta obter o lease da chave para esta réplica.
+     *
+     * @return true se esta réplica deve fazer o scraping; também true se o
+     *         servidor estiver inacessível, para a réplica seguir sozinha
+     */
+    public boolean adquirirLease(String chave, Duration duracao) {
+        try {
+            return "OK".equals(comandos().set(prefixo + "lease:" + chave, replicaBytes, SetArgs.Builder.nx().px(duracao)));
+        } catch (RedisException e) {
+            erros.incrementAndGet();
+            return true;
+        }
+    }
+
+    public boolean leaseAtivo(String chave) {
+        try {
+            return comandos().exists(prefixo + "lease:" + chave) > 0;
+        } catch (RedisException e) {
+            erros.incrementAndGet();
+            return false;
+        }
+    }
+
+    public void liberarLease(String chave) {
+        try {
+            comandos().eval(LIBERAR_LEASE, ScriptOutputType.INTEGER, new String[] {prefixo + "lease:" + chave}, replicaBytes);
+        } catch (RedisException e) {
+            erros.incrementAndGet();
+        }
+    }
+
+    /**
+     * Avisa as outras réplicas para limparem seus caches locais.
+     */
+    public void publicarInvalidacao() {
+        try {
+            comandos().publish(canal, replicaBytes);
+        } catch (RedisException e) {
+            erros.incrementAndGet();
+            log.warn("Erro ao publicar invalidação do cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Registra a ação executada quando outra réplica publicar uma invalidação.
+     */
+    public void aoInvalidar(Runnable acao) {
+        assinatura.addListener(new RedisPubSubAdapter<>() {
+            @Override
+            public void message(String canalRecebido, String origem) {
+                if (canal.equals(canalRecebido) && !replica.equals(origem)) {
+                    invalidacoesRecebidas.incrementAndGet();
+                    log.info("Invalidação do cache recebida da réplica {}", origem);
+                    // Fora da thread de I/O do cliente: a limpeza inclui o disco
+                    Thread.ofVirtual().name("invalidacao-cache").start(acao);
+                }
+            }
+        });
+        assinatura.sync().subscribe(canal);
+    }
+
+    private RedisCommands<String, byte[]> comandos() {
+        return conexao.sync();
+    }
+
+    public Map<String, Object> getStats() {
+        long total = hits.get() + misses.get();
+        return Map.of(
+            "conectado", conexao.isOpen(),
+            "hitCount", hits.get(),
+            "missCount", misses.get(),
+            "hitRate", String.format("%.2f%%", total > 0 ? hits.get() * 100.0 / total : 0),
+            "erros", erros.get(),
+            "invalidacoesRecebidas", invalidacoesRecebidas.get()
+        );
+    }
+
+    public void close() {
+        assinatura.close();
+        conexao.close();
+        client.shutdown();
+    }
+}
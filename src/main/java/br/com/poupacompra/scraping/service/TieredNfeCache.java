@@ -0,0 +1,204 @@
+package br.com.poupacompra.scraping.service;
+
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.service.NotaBinaryCodec.NotaDatada;
+import br.com.poupacompra.scraping.service.NotaJsonCodec.NotaSerializada;
+
+/**
+ * nfeCache em níveis: Caffeine em memória (L1) na frente do
+ * {@link DiskNotaStore} (L2) e, opcionalmente, do {@link SharedNotaStore}
+ * compartilhado entre réplicas. Misses consultam o nível seguinte e promovem
+ * a entrada para os anteriores; gravações vão para todos os níveis.
+ *
+ * O L1 guarda a nota já serializada ({@link NotaJsonCodec}); pela API de
+ * {@link org.springframework.cache.Cache} as leituras devolvem o DTO, e
+ * {@link #getSerializada} devolve os bytes para escrever direto na resposta.
+ */
+public class TieredNfeCache extends AbstractValueAdaptingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TieredNfeCache.class);
+
+    private final CaffeineCache l1;
+    private final DiskNotaStore l2;
+    private final SharedNotaStore compartilhado;
+    private final NotaJsonCodec codec;
+
+    /**
+     * @param l2 cache em disco, ou null para operar só em memória
+     * @param compartilhado cache entre réplicas, ou null se desabilitado
+     */
+    public TieredNfeCache(CaffeineCache l1, DiskNotaStore l2, SharedNotaStore compartilhado, NotaJsonCodec codec) {
+        super(false);
+        this.l1 = l1;
+        this.l2 = l2;
+        this.compartilhado = compartilhado;
+        this.codec = codec;
+    }
+
+    @Override
+    public String getName() {
+        return l1.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l1.getNativeCache();
+    }
+
+    public CaffeineCache getL1() {
+        return l1;
+    }
+
+    public DiskNotaStore getL2() {
+        return l2;
+    }
+
+    public SharedNotaStore getCompartilhado() {
+        return compartilhado;
+    }
+
+    public NotaJsonCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        NotaSerializada nota = getSerializada(key);
+        return nota != null ? codec.ler(nota) : null;
+    }
+
+    /**
+     * A nota como está no L1, buscando e promovendo dos níveis de baixo no miss.
+     */
+    public NotaSerializada getSerializada(Object key) {
+        ValueWrapper valor = l1.get(key);
+        if (valor != null) {
+            return (NotaSerializada) valor.get();
+        }
+
+        // A promoção mantém o instante em que a nota foi obtida: a idade vale entre níveis
+        if (l2 != null) {
+            NotaDatada datada = l2.get(key.toString());
+            if (datada != null) {
+                NotaSerializada nota = codec.serializar(datada.dados(), datada.obtidaEm());
+                l1.put(key, nota);
+                return nota;
+            }
+        }
+
+        if (compartilhado != null) {
+            NotaDatada datada = compartilhado.get(key.toString());
+            if (datada != null) {
+                return gravarLocal(key.toString(), datada);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object valor = lookup(key);
+        if (valor != null) {
+            return (T) valor;
+        }
+        try {
+            T carregado = valueLoader.call();
+            put(key, carregado);
+            return carregado;
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value instanceof DadosNotaResponseDTO dados) {
+            gravar(key.toString(), dados);
+        }
+    }
+
+    /**
+     * Grava a nota em todos os níveis e devolve a versão serializada do L1.
+     */
+    public NotaSerializada gravar(String chave, DadosNotaResponseDTO dados) {
+        long obtidaEm = System.currentTimeMillis();
+        NotaSerializada nota = codec.serializar(dados, obtidaEm);
+        l1.put(chave, nota);
+        if (l2 != null) {
+            l2.put(chave, dados, obtidaEm);
+        }
+        if (compartilhado != null) {
+            compartilhado.put(chave, dados, obtidaEm);
+        }
+        return nota;
+    }
+
+    /**
+     * Grava nos níveis desta réplica (L1 e disco) uma nota que veio do cache
+     * compartilhado, mantendo o instante em que foi obtida.
+     */
+    public NotaSerializada gravarLocal(String chave, NotaDatada datada) {
+        NotaSerializada nota = codec.serializar(datada.dados(), datada.obtidaEm());
+        l1.put(chave, nota);
+        if (l2 != null) {
+            l2.put(chave, datada.dados(), datada.obtidaEm());
+        }
+        return nota;
+    }
+
+    @Override
+    public void evict(Object key) {
+        l1.evict(key);
+        if (l2 != null) {
+            l2.evict(key.toString());
+        }
+        if (compartilhado != null) {
+            compartilhado.evict(key.toString());
+        }
+    }
+
+    @Override
+    public void clear() {
+        l1.clear();
+        if (l2 != null) {
+            l2.clear();
+        }
+        if (compartilhado != null) {
+            compartilhado.clear();
+        }
+    }
+
+    public void fechar() {
+        if (compartilhado != null) {
+            compartilhado.close();
+        }
+    }
+
+    /**
+     * Pré-carrega no L1 as entradas acessadas mais recentemente no disco.
+     */
+    public void warmUp(int limite) {
+        if (l2 == null || limite <= 0) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        int carregadas = 0;
+        for (String chave : l2.chavesMaisRecentes(limite)) {
+            NotaDatada datada = l2.get(chave);
+            if (datada != null) {
+                l1.put(chave, codec.serializar(datada.dados(), datada.obtidaEm()));
+                carregadas++;
+            }
+        }
+        log.info("{} notas pré-carregadas do disco em {}ms", carregadas, System.currentTimeMillis() - startTime);
+    }
+}
@@ -0,0 +1,52 @@
+package br.com.poupacompra.scraping.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import br.com.poupacompra.scraping.service.BrowserPoolService.Afinidade;
+
+class AfinidadeTest {
+
+    private static final Path URLS = Path.of("src/test/resources/fixtures/urls.txt");
+
+    @Test
+    void origemDeTodasAsUrlsDasFixtures() throws IOException {
+        List<String> urls = Files.readAllLines(URLS).stream().filter(l -> !l.isBlank()).toList();
+        assertThat(urls).isNotEmpty().anyMatch(u -> u.contains("|"));
+
+        for (String url : urls) {
+            // A UF como o NfeScrapingService a passa: a sigla tirada da URL
+            Afinidade afinidade = Afinidade.de(NfeDataMapper.extractUf(url), url);
+            assertThat(afinidade).as(url).isNotNull();
+            assertThat(afinidade.origem()).as(url).matches("https://[a-z0-9.-]+");
+        }
+    }
+
+    @Test
+    void urlV2ComPipeNaQuery() {
+        Afinidade afinidade = Afinidade.de("PR",
+            "https://www.fazenda.pr.gov.br/nfce/qrcode?p=41250110433218196001650012347607391312272169|2|1|1|06D7E805DA846A32C3BB81E3C29B62179273C8EB");
+
+        assertThat(afinidade.uf()).isEqualTo("PR");
+        assertThat(afinidade.origem()).isEqualTo("https://www.fazenda.pr.gov.br");
+    }
+
+    @Test
+    void preservaPortaEIgnoraCaixa() {
+        assertThat(Afinidade.de("SP", "http://127.0.0.1:8199/nfce/35/123").origem()).isEqualTo("http://127.0.0.1:8199");
+        assertThat(Afinidade.de("RS", "HTTPS://WWW.Sefaz.RS.gov.br?p=1|2").origem()).isEqualTo("https://www.sefaz.rs.gov.br");
+    }
+
+    @Test
+    void semOrigemNaoHaAfinidade() {
+        assertThat(Afinidade.de("PR", null)).isNull();
+        assertThat(Afinidade.de("PR", "qrcode?p=1|2")).isNull();
+        assertThat(Afinidade.de("PR", "https:///caminho")).isNull();
+    }
+}
@@ -0,0 +1,62 @@
+package br.com.poupacompra.scraping.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.dto.LoteStatusDTO;
+
+class BatchScrapingServiceTest {
+
+    private final ScrapingProperties properties = new ScrapingProperties();
+    private final TieredNfeCache nfeCache = mock(TieredNfeCache.class);
+    private final BatchScrapingService service = new BatchScrapingService(
+        properties, mock(NfeScrapingService.class), new NfceUrlParser(), nfeCache);
+
+    @AfterEach
+    void encerrar() {
+        service.shutdown();
+    }
+
+    @Test
+    void mantemSoOsLotesConcluidosMaisRecentes() throws Exception {
+        // Todas as notas em cache: o lote conclui na criação
+        when(nfeCache.get(any(), eq(DadosNotaResponseDTO.class))).thenReturn(new DadosNotaResponseDTO());
+        properties.getBatch().setMaxRetainedJobs(2);
+        String url = Files.readAllLines(Path.of("src/test/resources/fixtures/urls.txt")).get(0);
+
+        // Concluídos no mesmo milissegundo: a ordem de conclusão decide quem sai
+        LoteStatusDTO primeiro = service.criarLote(List.of(url), null);
+        LoteStatusDTO segundo = service.criarLote(List.of(url), null);
+        LoteStatusDTO terceiro = service.criarLote(List.of(url), null);
+        service.removerLotesAntigos();
+
+        assertThat(terceiro.status()).isEqualTo("CONCLUIDO");
+        assertThat(service.existe(primeiro.id())).isFalse();
+        assertThat(service.existe(segundo.id())).isTrue();
+        assertThat(service.existe(terceiro.id())).isTrue();
+    }
+
+    @Test
+    void removeLotesConcluidosAposARetencao() {
+        // URL inválida: o lote conclui na criação com a falha
+        properties.getBatch().setRetentionMinutes(0);
+
+        LoteStatusDTO lote = service.criarLote(List.of("não é uma URL de NFC-e"), null);
+        assertThat(service.existe(lote.id())).isTrue();
+
+        service.removerLotesAntigos();
+        assertThat(service.existe(lote.id())).isFalse();
+    }
+}
@@ -0,0 +1,241 @@
+package br.com.poupacompra.scraping.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.poupacompra.scraping.service.BrowserPoolService.AcquireRequest;
+import br.com.poupacompra.scraping.service.BrowserPoolService.BrowserInstance;
+
+class BrowserSlotQueueTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger proximoId = new AtomicInteger();
+
+    @AfterEach
+    void encerrar() {
+        executor.shutdownNow();
+    }
+
+    private static BrowserSlotQueue fila(double interactive, double retry, double batch, int total) {
+        return new BrowserSlotQueue(Map.of(
+            ScrapePriority.INTERACTIVE, interactive,
+            ScrapePriority.RETRY, retry,
+            ScrapePriority.BATCH, batch
+        ), () -> total);
+    }
+
+    private BrowserInstance slot() {
+        return new BrowserInstance(proximoId.getAndIncrement(), null, null, null, null, System.currentTimeMillis(),
+            new AtomicInteger(), new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Coloca a requisição na fila e só retorna quando ela está aguardando,
+     * para a ordem de chegada ser a ordem das chamadas.
+     */
+    private Future<BrowserInstance> aguardar(BrowserSlotQueue fila, AcquireRequest request) throws InterruptedException {
+        int antes = fila.aguardando();
+        Future<BrowserInstance> futuro = executor.submit(() ->
+            fila.poll(request, null, System.nanoTime() + TimeUnit.SECONDS.toNanos(10), () -> { }));
+        long prazo = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (fila.aguardando() == antes) {
+            assertThat(System.nanoTime()).as("requisição não entrou na fila").isLessThan(prazo);
+            Thread.sleep(1);
+        }
+        return futuro;
+    }
+
+    /**
+     * Devolve um slot por vez e registra qual requisição recebeu cada um.
+     */
+    private List<String> atender(BrowserSlotQueue fila, Map<String, Future<BrowserInstance>> esperas) throws Exception {
+        List<String> ordem = new ArrayList<>();
+        for (int i = 0; i < esperas.size(); i++) {
+            BrowserInstance slot = slot();
+            fila.offer(slot);
+            // A requisição atendida ainda precisa acordar para o Future concluir
+            long prazo = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (ordem.size() == i) {
+                assertThat(System.nanoTime()).as("nenhuma requisição recebeu o slot").isLessThan(prazo);
+                for (Map.Entry<String, Future<BrowserInstance>> e : esperas.entrySet()) {
+                    if (e.getValue().isDone() && !ordem.contains(e.getKey())) {
+                        assertThat(e.getValue().get()).isSameAs(slot);
+                        ordem.add(e.getKey());
+                    }
+                }
+                Thread.sleep(1);
+            }
+        }
+        return ordem;
+    }
+
+    @Test
+    void slotLivreSemEsperaEhEntregueNaHoraEmLifo() throws Exception {
+        BrowserSlotQueue fila = fila(0, 0, 0, 2);
+        BrowserInstance primeiro = slot();
+        BrowserInstance segundo = slot();
+        fila.offer(primeiro);
+        fila.offer(segundo);
+
+        assertThat(fila.poll(AcquireRequest.interactive(), null, System.nanoTime(), () -> { })).isSameAs(segundo);
+        assertThat(fila.emUso(ScrapePriority.INTERACTIVE)).isEqualTo(1);
+        assertThat(fila.livres()).isEqualTo(1);
+    }
+
+    @Test
+    void preferenciaEscolheOLivreQueSatisfaz() throws Exception {
+        BrowserSlotQueue fila = fila(0, 0, 0, 3);
+        BrowserInstance aquecido = slot();
+        fila.offer(aquecido);
+        fila.offer(slot());
+        fila.offer(slot());
+
+        BrowserInstance obtido = fila.poll(AcquireRequest.interactive(), s -> s == aquecido, System.nanoTime(), () -> { });
+
+        assertThat(obtido).isSameAs(aquecido);
+    }
+
+    @Test
+    void semCotasAtendePorPrecedencia() throws Exception {
+        BrowserSlotQueue fila = fila(0, 0, 0, 3);
+        Map<String, Future<BrowserInstance>> esperas = new LinkedHashMap<>();
+        esperas.put("batch", aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "a")));
+        esperas.put("retry", aguardar(fila, new AcquireRequest(ScrapePriority.RETRY, "a")));
+        esperas.put("interactive", aguardar(fila, new AcquireRequest(ScrapePriority.INTERACTIVE, "a")));
+
+        assertThat(atender(fila, esperas)).containsExactly("interactive", "retry", "batch");
+    }
+
+    @Test
+    void classeAbaixoDaCotaMinimaPassaNaFrente() throws Exception {
+        // 4 slots, 25% reservados para BATCH: 1 slot
+        BrowserSlotQueue fila = fila(0, 0, 0.25, 4);
+        Map<String, Future<BrowserInstance>> esperas = new LinkedHashMap<>();
+        esperas.put("interactive-1", aguardar(fila, new AcquireRequest(ScrapePriority.INTERACTIVE, "a")));
+        esperas.put("batch-1", aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "a")));
+        esperas.put("batch-2", aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "a")));
+        esperas.put("interactive-2", aguardar(fila, new AcquireRequest(ScrapePriority.INTERACTIVE, "a")));
+
+        // A cota garante um BATCH em uso; depois disso, a precedência volta a valer
+        assertThat(atender(fila, esperas)).containsExactly("batch-1", "interactive-1", "interactive-2", "batch-2");
+        assertThat(fila.emUso(ScrapePriority.BATCH)).isEqualTo(2);
+    }
+
+    @Test
+    void cotaVoltaAValerQuandoOSlotDaClasseTerminaDeSerUsado() throws Exception {
+        BrowserSlotQueue fila = fila(0, 0, 0.25, 4);
+        Future<BrowserInstance> batch1 = aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "a"));
+        fila.offer(slot());
+        BrowserInstance usadoPeloBatch = batch1.get();
+
+        Future<BrowserInstance> interactive = aguardar(fila, new AcquireRequest(ScrapePriority.INTERACTIVE, "a"));
+        Future<BrowserInstance> batch2 = aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "a"));
+        fila.fimDeUso(usadoPeloBatch);
+        fila.offer(slot());
+
+        assertThat(batch2.get(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(interactive.isDone()).isFalse();
+    }
+
+    @Test
+    void tenantsDaMesmaClasseEmRoundRobin() throws Exception {
+        BrowserSlotQueue fila = fila(0, 0, 0, 4);
+        Map<String, Future<BrowserInstance>> esperas = new LinkedHashMap<>();
+        esperas.put("a1", aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "a")));
+        esperas.put("a2", aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "a")));
+        esperas.put("a3", aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "a")));
+        esperas.put("b1", aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "b")));
+        esperas.put("c1", aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "c")));
+
+        assertThat(atender(fila, esperas)).containsExactly("a1", "b1", "c1", "a2", "a3");
+    }
+
+    @Test
+    void prazoExpiradoRetornaNullESaiDaFila() throws Exception {
+        BrowserSlotQueue fila = fila(0, 0, 0, 1);
+
+        BrowserInstance obtido = fila.poll(AcquireRequest.interactive(), null,
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20), () -> { });
+
+        assertThat(obtido).isNull();
+        assertThat(fila.aguardando()).isZero();
+        BrowserInstance livre = slot();
+        fila.offer(livre);
+        assertThat(fila.livres()).isEqualTo(1);
+    }
+
+    @Test
+    void elevarMoveARequisicaoQueAguardaParaAClasseMaisPrioritaria() throws Exception {
+        BrowserSlotQueue fila = fila(0, 0, 0, 2);
+        Future<BrowserInstance> retry = aguardar(fila, new AcquireRequest(ScrapePriority.RETRY, "a"));
+        Future<BrowserInstance> atualizacao = aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "a", "chave"));
+
+        fila.elevar("chave", ScrapePriority.INTERACTIVE);
+
+        assertThat(fila.aguardando(ScrapePriority.BATCH)).isZero();
+        assertThat(fila.aguardando(ScrapePriority.INTERACTIVE)).isEqualTo(1);
+        fila.offer(slot());
+        assertThat(atualizacao.get(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(retry.isDone()).isFalse();
+        assertThat(fila.emUso(ScrapePriority.INTERACTIVE)).isEqualTo(1);
+    }
+
+    @Test
+    void elevacaoAntesDoPollValeParaQuemChegaDepois() throws Exception {
+        BrowserSlotQueue fila = fila(0, 0, 0, 1);
+        fila.elevar("chave", ScrapePriority.INTERACTIVE);
+
+        Future<BrowserInstance> retry = aguardar(fila, new AcquireRequest(ScrapePriority.RETRY, "a"));
+        Future<BrowserInstance> atualizacao = aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "a", "chave"));
+        fila.offer(slot());
+
+        assertThat(atualizacao.get(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(retry.isDone()).isFalse();
+
+        fila.encerrar("chave");
+        Future<BrowserInstance> outra = aguardar(fila, new AcquireRequest(ScrapePriority.BATCH, "a", "chave"));
+        assertThat(fila.aguardando(ScrapePriority.BATCH)).isEqualTo(1);
+        outra.cancel(true);
+    }
+
+    @Test
+    void elevarNaoRebaixa() throws Exception {
+        BrowserSlotQueue fila = fila(0, 0, 0, 1);
+        aguardar(fila, new AcquireRequest(ScrapePriority.INTERACTIVE, "a", "chave"));
+
+        fila.elevar("chave", ScrapePriority.BATCH);
+
+        assertThat(fila.aguardando(ScrapePriority.INTERACTIVE)).isEqualTo(1);
+        assertThat(fila.aguardando(ScrapePriority.BATCH)).isZero();
+    }
+
+    @Test
+    void prazoExpiradoDepoisDeElevadaSaiDaFilaNova() throws Exception {
+        BrowserSlotQueue fila = fila(0, 0, 0, 1);
+        Future<BrowserInstance> atualizacao = executor.submit(() -> fila.poll(
+            new AcquireRequest(ScrapePriority.BATCH, "a", "chave"), null,
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300), () -> { }));
+        while (fila.aguardando() == 0) {
+            Thread.sleep(1);
+        }
+
+        fila.elevar("chave", ScrapePriority.INTERACTIVE);
+
+        assertThat(atualizacao.get()).isNull();
+        assertThat(fila.aguardando()).isZero();
+        assertThat(fila.aguardando(ScrapePriority.INTERACTIVE)).isZero();
+    }
+}
@@ -0,0 +1,101 @@
+package br.com.poupacompra.scraping.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * O caminho de uma requisição com browser (admissão e chamada na
+ * {@link BrowserThread}) não pode prender o carrier da virtual thread.
+ */
+class BrowserThreadPinningTest {
+
+    private static final String EVENTO = "jdk.VirtualThreadPinned";
+    private static final int REQUISICOES = 64;
+
+    @Test
+    void admissaoEBrowserThreadNaoPrendemCarrier() throws Exception {
+        ScrapingProperties properties = new ScrapingProperties();
+        properties.getAdmission().setQueueDepth(REQUISICOES);
+        BrowserPoolService pool = mock(BrowserPoolService.class);
+        when(pool.getMaxPoolSize()).thenReturn(4);
+        AdmissionLimiter limiter = new AdmissionLimiter(properties, pool, new SimpleMeterRegistry());
+        BrowserThread thread = new BrowserThread("playwright-teste");
+        AtomicInteger executadas = new AtomicInteger();
+
+        List<RecordedEvent> eventos = gravar(() -> {
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < REQUISICOES; i++) {
+                    executor.submit(() -> {
+                        limiter.admitir();
+                        try {
+                            // Como uma chamada ao Playwright: bloqueia a thread de plataforma lendo o driver
+                            thread.executar(() -> {
+                                dormir(5);
+                                return executadas.incrementAndGet();
+                            });
+                        } finally {
+                            limiter.liberar();
+                        }
+                    });
+                }
+            }
+        });
+        thread.encerrar();
+
+        assertThat(executadas).hasValue(REQUISICOES);
+        assertThat(eventos).isEmpty();
+    }
+
+    @Test
+    void gravacaoDetectaPinning() throws Exception {
+        Object monitor = new Object();
+
+        List<RecordedEvent> eventos = gravar(() -> {
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                executor.submit(() -> {
+                    synchronized (monitor) {
+                        dormir(50);
+                    }
+                });
+            }
+        });
+
+        assertThat(eventos).isNotEmpty();
+    }
+
+    private static List<RecordedEvent> gravar(Runnable carga) {
+        List<RecordedEvent> eventos = new CopyOnWriteArrayList<>();
+        try (RecordingStream stream = new RecordingStream()) {
+            stream.enable(EVENTO).withThreshold(Duration.ofMillis(1)).withStackTrace();
+            stream.onEvent(EVENTO, eventos::add);
+            stream.startAsync();
+            carga.run();
+            // Entrega os eventos pendentes antes de retornar
+            stream.stop();
+        }
+        return eventos;
+    }
+
+    private static void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
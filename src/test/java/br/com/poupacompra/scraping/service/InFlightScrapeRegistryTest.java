@@ -0,0 +1,125 @@
+package br.com.poupacompra.scraping.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.exception.CapacidadeExcedidaException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class InFlightScrapeRegistryTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final BrowserPoolService pool = mock(BrowserPoolService.class);
+    private final InFlightScrapeRegistry registry = new InFlightScrapeRegistry(
+        new SimpleMeterRegistry(), mock(TieredNfeCache.class), new ScrapingProperties(), pool);
+
+    @AfterEach
+    void encerrar() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void requisicaoMaisPrioritariaElevaOScrapingEmAndamento() throws Exception {
+        CountDownLatch iniciado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        DadosNotaResponseDTO nota = new DadosNotaResponseDTO();
+
+        Future<DadosNotaResponseDTO> atualizacao = executor.submit(() -> registry.execute("chave", ScrapePriority.BATCH, () -> {
+            iniciado.countDown();
+            aguardar(liberar);
+            return nota;
+        }));
+        iniciado.await();
+        Future<DadosNotaResponseDTO> interativa = executor.submit(() ->
+            registry.execute("chave", ScrapePriority.INTERACTIVE, () -> {
+                throw new AssertionError("deveria aguardar o scraping em andamento");
+            }));
+
+        verify(pool, timeout(5000)).elevarPrioridade("chave", ScrapePriority.INTERACTIVE);
+        liberar.countDown();
+
+        assertThat(interativa.get(5, TimeUnit.SECONDS)).isSameAs(nota);
+        assertThat(atualizacao.get(5, TimeUnit.SECONDS)).isSameAs(nota);
+        verify(pool, timeout(5000)).encerrarPrioridade("chave");
+    }
+
+    @Test
+    void mesmaPrioridadeOuMenorNaoEleva() throws Exception {
+        CountDownLatch iniciado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+
+        Future<DadosNotaResponseDTO> primeira = executor.submit(() -> registry.execute("chave", ScrapePriority.RETRY, () -> {
+            iniciado.countDown();
+            aguardar(liberar);
+            return new DadosNotaResponseDTO();
+        }));
+        iniciado.await();
+        Future<DadosNotaResponseDTO> lote = executor.submit(() ->
+            registry.execute("chave", ScrapePriority.BATCH, DadosNotaResponseDTO::new));
+        Thread.sleep(50);
+        liberar.countDown();
+
+        primeira.get(5, TimeUnit.SECONDS);
+        lote.get(5, TimeUnit.SECONDS);
+        verify(pool, never()).elevarPrioridade(anyString(), any());
+        verify(pool, never()).encerrarPrioridade(anyString());
+    }
+
+    @Test
+    void esperaPorOutraReplicaDuraOLeaseENaoEntraNoCacheNegativo() {
+        SharedNotaStore compartilhado = mock(SharedNotaStore.class);
+        when(compartilhado.leaseAtivo("chave")).thenReturn(true);
+        TieredNfeCache nfeCache = mock(TieredNfeCache.class);
+        when(nfeCache.getCompartilhado()).thenReturn(compartilhado);
+        ScrapingProperties properties = new ScrapingProperties();
+        properties.getSharedCache().setLeaseMs(300);
+        properties.getSharedCache().setWaitMs(50);
+        properties.getSharedCache().setPollMs(10);
+        InFlightScrapeRegistry replica = new InFlightScrapeRegistry(
+            new SimpleMeterRegistry(), nfeCache, properties, pool);
+        NfeCachePolicy politica = new NfeCachePolicy(nfeCache, properties);
+        AtomicInteger tentativas = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            long inicio = System.nanoTime();
+            assertThatThrownBy(() -> politica.obter("chave", () -> {
+                tentativas.incrementAndGet();
+                return replica.execute("chave", ScrapePriority.INTERACTIVE, DadosNotaResponseDTO::new);
+            }, UnaryOperator.identity())).isInstanceOf(CapacidadeExcedidaException.class);
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio)).isGreaterThanOrEqualTo(300);
+        }
+
+        // A segunda chamada tentou de novo em vez de repetir a falha do cache negativo
+        assertThat(tentativas).hasValue(2);
+        verify(compartilhado, times(2)).adquirirLease(any(), any());
+    }
+
+    private static void aguardar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package br.com.poupacompra.scraping.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import br.com.poupacompra.scraping.service.NfceUrlParser.NfceUrl;
+
+class NfceUrlParserTest {
+
+    private static final String CHAVE_PR = "41250110433218196001650012347607391312272169";
+    private static final String CHAVE_SP = "35250225534192832764650019936312091858993138";
+    private static final String URL_V2 = "https://www.fazenda.pr.gov.br/nfce/qrcode?p=" + CHAVE_PR
+        + "|2|1|1|06D7E805DA846A32C3BB81E3C29B62179273C8EB";
+
+    private final NfceUrlParser parser = new NfceUrlParser();
+
+    @Test
+    void urlV2ComPipeTemUriCodificada() {
+        NfceUrl nfceUrl = parser.parse(URL_V2);
+
+        assertThat(nfceUrl.url()).isEqualTo(URL_V2);
+        assertThat(nfceUrl.uri().toString()).isEqualTo("https://www.fazenda.pr.gov.br/nfce/qrcode?p=" + CHAVE_PR
+            + "%7C2%7C1%7C1%7C06D7E805DA846A32C3BB81E3C29B62179273C8EB");
+        assertThat(nfceUrl.uri().getHost()).isEqualTo("www.fazenda.pr.gov.br");
+        assertThat(nfceUrl.uri().getQuery()).isEqualTo("p=" + CHAVE_PR + "|2|1|1|06D7E805DA846A32C3BB81E3C29B62179273C8EB");
+    }
+
+    @Test
+    void uriDeUrlComPipeServeParaHttpClient() {
+        HttpRequest request = HttpRequest.newBuilder(parser.parse(URL_V2).uri()).GET().build();
+
+        assertThat(request.uri().getRawQuery()).contains("%7C2%7C1");
+    }
+
+    @Test
+    void codificarMantemSequenciasExistentes() {
+        assertThat(NfceUrlParser.codificar("https://a.b/c?p=1%7C2|3")).isEqualTo("https://a.b/c?p=1%7C2%7C3");
+        assertThat(NfceUrlParser.codificar("https://a.b/c?p=100%")).isEqualTo("https://a.b/c?p=100%25");
+        assertThat(NfceUrlParser.codificar("https://a.b/ç?x=1 2")).isEqualTo("https://a.b/%C3%A7?x=1%202");
+        assertThat(NfceUrlParser.codificar("https://a.b/c?p=1&q=2")).isEqualTo("https://a.b/c?p=1&q=2");
+    }
+
+    @Test
+    void urlV2ExtraiChaveEUf() {
+        NfceUrl nfceUrl = parser.parse(URL_V2);
+
+        assertThat(nfceUrl.chaveAcesso()).isEqualTo(CHAVE_PR);
+        assertThat(nfceUrl.uf()).isEqualTo("PR");
+    }
+
+    @Test
+    void urlV1ComChNFeEmQualquerOrdem() {
+        NfceUrl nfceUrl = parser.parse(
+            "https://www.nfce.fazenda.sp.gov.br/NFCeConsultaPublica/Paginas/ConsultaQRCode.aspx?nVersao=100&chNFe="
+                + CHAVE_SP + "&tpAmb=1&cDest=&dhEmi=323032352d30322d3130");
+
+        assertThat(nfceUrl.chaveAcesso()).isEqualTo(CHAVE_SP);
+        assertThat(nfceUrl.uf()).isEqualTo("SP");
+    }
+
+    @Test
+    void v1EV2DaMesmaNotaTemAMesmaChave() {
+        NfceUrl v1 = parser.parse("https://www.fazenda.pr.gov.br/nfce/qrcode?chNFe=" + CHAVE_PR + "&nVersao=100");
+        NfceUrl v2 = parser.parse(URL_V2);
+
+        assertThat(v1.chaveAcesso()).isEqualTo(v2.chaveAcesso());
+    }
+
+    @Test
+    void pipeJaCodificadoNoParametro() {
+        NfceUrl nfceUrl = parser.parse("https://www.fazenda.pr.gov.br/nfce/qrcode?p=" + CHAVE_PR + "%7C2%7C1%7C1%7CABC");
+
+        assertThat(nfceUrl.chaveAcesso()).isEqualTo(CHAVE_PR);
+        assertThat(nfceUrl.uri().getRawQuery()).isEqualTo("p=" + CHAVE_PR + "%7C2%7C1%7C1%7CABC");
+    }
+
+    @Test
+    void normalizaEsquemaEHostSemMexerNoResto() {
+        NfceUrl nfceUrl = parser.parse("  HTTPS://WWW.Fazenda.PR.gov.br/NFCE/qrcode?p=" + CHAVE_PR + "|2|1|1|AbC  ");
+
+        assertThat(nfceUrl.url()).isEqualTo("https://www.fazenda.pr.gov.br/NFCE/qrcode?p=" + CHAVE_PR + "|2|1|1|AbC");
+    }
+
+    @Test
+    void chaveNoPath() {
+        assertThat(parser.parse("https://portal.exemplo.gov.br/nfce/" + CHAVE_SP).chaveAcesso()).isEqualTo(CHAVE_SP);
+    }
+
+    @Test
+    void digitoVerificadorErrado() {
+        String chaveErrada = CHAVE_PR.substring(0, 43) + ((CHAVE_PR.charAt(43) - '0' + 1) % 10);
+
+        assertThat(NfceUrlParser.digitoVerificadorValido(CHAVE_PR)).isTrue();
+        assertThat(NfceUrlParser.digitoVerificadorValido(chaveErrada)).isFalse();
+        assertThatThrownBy(() -> parser.parse("https://www.fazenda.pr.gov.br/nfce/qrcode?p=" + chaveErrada + "|2|1|1|X"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("dígito verificador");
+    }
+
+    @Test
+    void digitoVerificadorZeroQuandoRestoMenorQueDois() {
+        // Soma ponderada de 43 zeros é 0: resto 0, DV 0
+        assertThat(NfceUrlParser.digitoVerificadorValido("0".repeat(44))).isTrue();
+        assertThat(NfceUrlParser.digitoVerificadorValido("0".repeat(43) + "1")).isFalse();
+    }
+
+    @Test
+    void todasAsFixturesSaoValidas() throws Exception {
+        for (String url : Files.readAllLines(Path.of("src/test/resources/fixtures/urls.txt"))) {
+            if (!url.isBlank()) {
+                assertThat(parser.parse(url).uri()).as(url).isNotNull();
+            }
+        }
+    }
+
+    @Test
+    void urlsInvalidas() {
+        assertThatThrownBy(() -> parser.parse(null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parser.parse("  ")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parser.parse("https://www.fazenda.pr.gov.br/nfce/qrcode?p=123|2"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("44 dígitos");
+        assertThatThrownBy(() -> parser.parse("https://x.gov.br/?p=99" + CHAVE_PR.substring(2)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("UF");
+        // 45 dígitos: não é uma chave
+        assertThatThrownBy(() -> parser.parse("https://x.gov.br/?p=" + CHAVE_PR + "1"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,94 @@
+package br.com.poupacompra.scraping.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.com.poupacompra.scraping.client.PoupaCompraApiClient;
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OutboxServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PoupaCompraApiClient api = mock(PoupaCompraApiClient.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OutboxService outbox;
+
+    @AfterEach
+    void fechar() {
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    private OutboxService abrir(String conteudoLog) throws Exception {
+        Files.writeString(dir.resolve("outbox.log"), conteudoLog, StandardCharsets.UTF_8);
+        ScrapingProperties properties = new ScrapingProperties();
+        properties.getOutbox().setDirectory(dir.toString());
+        outbox = new OutboxService(properties, api, objectMapper, new ScrapingMetrics(meterRegistry), meterRegistry);
+        outbox.init();
+        return outbox;
+    }
+
+    private String linha() throws Exception {
+        return objectMapper.writeValueAsString(new DadosNotaResponseDTO()) + "\n";
+    }
+
+    @Test
+    void linhaCorrompidaEDescartadaEOEnvioContinua() throws Exception {
+        OutboxService outbox = abrir("{\"itensNota\": [tor\n" + linha() + "nao-e-json\n" + linha());
+
+        outbox.flush();
+
+        verify(api, times(2)).salvarNota(any());
+        assertThat(outbox.getStats())
+            .containsEntry("pendentes", 0L)
+            .containsEntry("enviadas", 2L)
+            .containsEntry("corrompidas", 2L);
+        assertThat(meterRegistry.counter("scraping.outbox.corrupted").count()).isEqualTo(2);
+        assertThat(Files.readString(dir.resolve("outbox.offset")).trim()).isEqualTo("0");
+    }
+
+    @Test
+    void linhaIncompletaNoFimEDescartadaAoAbrir() throws Exception {
+        OutboxService outbox = abrir(linha() + "{\"itensNota\": [");
+
+        outbox.enqueue(new DadosNotaResponseDTO());
+        outbox.flush();
+
+        // A nota nova não foi colada na linha interrompida
+        verify(api, times(2)).salvarNota(any());
+        assertThat(outbox.getStats())
+            .containsEntry("pendentes", 0L)
+            .containsEntry("enviadas", 2L)
+            .containsEntry("corrompidas", 1L);
+    }
+
+    @Test
+    void loteSoComLinhasCorrompidasAvancaOOffset() throws Exception {
+        OutboxService outbox = abrir("{quebrado\n{\"nota\": 1}x\n");
+
+        outbox.flush();
+
+        verify(api, times(0)).salvarNota(any());
+        assertThat(outbox.getStats()).containsEntry("pendentes", 0L).containsEntry("falhas", 0L);
+        assertThat(Files.size(dir.resolve("outbox.log"))).isZero();
+    }
+}
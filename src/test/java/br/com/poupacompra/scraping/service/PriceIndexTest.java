@@ -0,0 +1,206 @@
+package br.com.poupacompra.scraping.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import br.com.poupacompra.scraping.config.ScrapingProperties;
+import br.com.poupacompra.scraping.dto.DadosNotaResponseDTO;
+import br.com.poupacompra.scraping.dto.EstabelecimentoDTO;
+import br.com.poupacompra.scraping.dto.ItemNotaDTO;
+import br.com.poupacompra.scraping.dto.NotaDTO;
+import br.com.poupacompra.scraping.dto.OfertaPrecoDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PriceIndexTest {
+
+    private final ScrapingProperties properties = new ScrapingProperties();
+    private final PriceIndex indice = new PriceIndex(properties, new SimpleMeterRegistry());
+
+    @Test
+    void ordenaDoMaisBaratoParaOMaisCaro() {
+        registrar("11111111000111", "PR", item("Leite Integral 1L", 5.49), item("Café 500g", 18.90));
+        registrar("22222222000122", "PR", item("LEITE INTEGRAL 1L", 4.99));
+        registrar("33333333000133", "SP", item("leite integral 1l", 5.19));
+
+        assertThat(indice.maisBaratas("leite", null, 10))
+            .extracting(OfertaPrecoDTO::cnpj, OfertaPrecoDTO::valorUnitario)
+            .containsExactly(
+                tuple("22222222000122", 4.99),
+                tuple("33333333000133", 5.19),
+                tuple("11111111000111", 5.49));
+    }
+
+    @Test
+    void exigeTodosOsTermosDaConsultaSemAcentos() {
+        registrar("11111111000111", "PR", item("Café Pilão 500g", 18.90), item("Açúcar Cristal 1kg", 4.50),
+            item("Café Melitta 250g", 9.90));
+
+        assertThat(indice.maisBaratas("cafe pilao", null, 10))
+            .extracting(OfertaPrecoDTO::descricao)
+            .containsExactly("CAFE PILAO 500G");
+        assertThat(indice.maisBaratas("acucar", null, 10)).hasSize(1);
+        assertThat(indice.maisBaratas("cafe arroz", null, 10)).isEmpty();
+        assertThat(indice.maisBaratas("  ", null, 10)).isEmpty();
+    }
+
+    @Test
+    void filtraPorUf() {
+        registrar("11111111000111", "PR", item("Arroz 5kg", 19.90));
+        registrar("33333333000133", "SP", item("Arroz 5kg", 24.90));
+
+        assertThat(indice.maisBaratas("arroz", "sp", 10))
+            .extracting(OfertaPrecoDTO::uf, OfertaPrecoDTO::valorUnitario)
+            .containsExactly(tuple("SP", 24.90));
+        assertThat(indice.maisBaratas("arroz", "RJ", 10)).isEmpty();
+    }
+
+    @Test
+    void respeitaOLimiteEOMaximoConfigurado() {
+        for (int i = 0; i < 20; i++) {
+            registrar(String.format("%014d", i + 1), "PR", item("Feijão Preto 1kg", 8.00 + i));
+        }
+        properties.getPriceIndex().setMaxResults(5);
+
+        assertThat(indice.maisBaratas("feijao", null, 3))
+            .extracting(OfertaPrecoDTO::valorUnitario)
+            .containsExactly(8.00, 9.00, 10.00);
+        assertThat(indice.maisBaratas("feijao", null, 50)).hasSize(5);
+        assertThat(indice.maisBaratas("feijao", null, 0)).hasSize(1);
+    }
+
+    @Test
+    void paradaAntecipadaNaoPerdeOfertasDeOutrosProdutos() {
+        // O menor preço do produto A é de outra UF: a parada não pode usá-lo como se fosse de SP
+        registrar("11111111000111", "PR", item("Sabao A", 1.00));
+        registrar("22222222000122", "SP", item("Sabao A", 9.00), item("Sabao B", 3.00));
+        registrar("33333333000133", "SP", item("Sabao C", 2.00), item("Sabao A", 2.50));
+
+        assertThat(indice.maisBaratas("sabao", "SP", 2))
+            .extracting(OfertaPrecoDTO::descricao, OfertaPrecoDTO::valorUnitario)
+            .containsExactly(tuple("SABAO C", 2.00), tuple("SABAO A", 2.50));
+    }
+
+    @Test
+    void paradaAntecipadaEquivaleABuscaCompleta() {
+        Random random = new Random(42);
+        List<OfertaPrecoDTO> todas = new ArrayList<>();
+        String[] ufs = {"PR", "SP", "SC"};
+        for (int e = 0; e < 30; e++) {
+            String uf = ufs[e % ufs.length];
+            List<ItemNotaDTO> itens = new ArrayList<>();
+            for (int p = 0; p < 40; p++) {
+                if (random.nextInt(3) == 0) {
+                    double preco = 1 + random.nextInt(5000) / 100.0;
+                    itens.add(item("Biscoito Sabor " + p, preco));
+                    todas.add(new OfertaPrecoDTO(null, preco, null, null, null, null, uf, null));
+                }
+            }
+            registrar(String.format("%014d", e + 1), uf, itens.toArray(ItemNotaDTO[]::new));
+        }
+
+        for (String uf : new String[] {null, "SP"}) {
+            for (int limite : new int[] {1, 7, 25}) {
+                List<Double> esperado = todas.stream()
+                    .filter(o -> uf == null || uf.equals(o.uf()))
+                    .map(OfertaPrecoDTO::valorUnitario)
+                    .sorted(Comparator.naturalOrder())
+                    .limit(limite)
+                    .toList();
+                assertThat(indice.maisBaratas("biscoito", uf, limite))
+                    .extracting(OfertaPrecoDTO::valorUnitario)
+                    .containsExactlyElementsOf(esperado);
+            }
+        }
+    }
+
+    @Test
+    void precoNovoSubstituiOAnteriorNoMesmoEstabelecimento() {
+        registrar("11111111000111", "PR", item("Oleo de Soja 900ml", 6.00));
+        registrar("22222222000122", "PR", item("Oleo de Soja 900ml", 7.00));
+        registrar("11.111.111/0001-11", "PR", item("Oleo de Soja 900ml", 8.00));
+
+        assertThat(indice.maisBaratas("oleo soja", null, 10))
+            .extracting(OfertaPrecoDTO::cnpj, OfertaPrecoDTO::valorUnitario)
+            .containsExactly(
+                tuple("22222222000122", 7.00),
+                tuple("11111111000111", 8.00));
+    }
+
+    @Test
+    void ignoraItensSemDescricaoOuSemValor() {
+        registrar("11111111000111", "PR", item("", 3.00), item("Macarrao 500g", 0), item("Macarrao 1kg", 7.50));
+
+        assertThat(indice.doEstabelecimento("11111111000111", null, 10))
+            .extracting(OfertaPrecoDTO::descricao)
+            .containsExactly("MACARRAO 1KG");
+    }
+
+    @Test
+    void listaOsPrecosDoEstabelecimento() {
+        registrar("11111111000111", "PR", item("Banana Prata kg", 6.99), item("Maca Gala kg", 9.49),
+            item("Banana Nanica kg", 4.99));
+        registrar("22222222000122", "PR", item("Banana Nanica kg", 3.99));
+
+        assertThat(indice.doEstabelecimento("11.111.111/0001-11", null, 10))
+            .extracting(OfertaPrecoDTO::valorUnitario)
+            .containsExactly(4.99, 6.99, 9.49);
+        assertThat(indice.doEstabelecimento("11111111000111", "banana", 1))
+            .extracting(OfertaPrecoDTO::descricao)
+            .containsExactly("BANANA NANICA KG");
+        assertThat(indice.doEstabelecimento("11111111000111", "uva", 10)).isEmpty();
+        assertThat(indice.doEstabelecimento("99999999000199", null, 10)).isEmpty();
+    }
+
+    @Test
+    void snapshotRestauraAsMesmasOfertas(@TempDir Path diretorio) {
+        properties.getPriceIndex().setSnapshotFile(diretorio.resolve("indice.bin").toString());
+        registrar("11111111000111", "PR", item("Leite Integral 1L", 5.49));
+        registrar("33333333000133", "SP", item("Leite Integral 1L", 5.19), item("Cafe 500g", 18.90));
+        indice.salvar();
+
+        PriceIndex restaurado = new PriceIndex(properties, new SimpleMeterRegistry());
+        restaurado.restaurar();
+
+        assertThat(restaurado.maisBaratas("leite", null, 10)).isEqualTo(indice.maisBaratas("leite", null, 10));
+        assertThat(restaurado.doEstabelecimento("33333333000133", null, 10))
+            .isEqualTo(indice.doEstabelecimento("33333333000133", null, 10));
+    }
+
+    @Test
+    void normalizaETokeniza() {
+        assertThat(PriceIndex.normalizar("  Pão   de Açúcar\t1kg ")).isEqualTo("PAO DE ACUCAR 1KG");
+        assertThat(PriceIndex.normalizar(null)).isEmpty();
+        assertThat(PriceIndex.tokens("LEITE UHT 1 L LEITE")).containsExactly("LEITE", "UHT", "1");
+    }
+
+    private void registrar(String cnpj, String uf, ItemNotaDTO... itens) {
+        indice.registrar(DadosNotaResponseDTO.builder()
+            .estabelecimento(EstabelecimentoDTO.builder()
+                .nomeEstabelecimento("Mercado " + cnpj)
+                .cpfCnpj(cnpj)
+                .endereco("Rua " + cnpj)
+                .build())
+            .itensNota(List.of(itens))
+            .nota(NotaDTO.builder().ufCfe(uf).build())
+            .build());
+    }
+
+    private static ItemNotaDTO item(String descricao, double valorUnitario) {
+        return ItemNotaDTO.builder()
+            .descricao(descricao)
+            .quantidade(1)
+            .tipoUnidade("UN")
+            .valorUnitario(valorUnitario)
+            .valorTotal(valorUnitario)
+            .build();
+    }
+}